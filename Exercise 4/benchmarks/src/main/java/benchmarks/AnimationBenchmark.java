@@ -0,0 +1,84 @@
+package benchmarks;
+
+import ascii_art.AnimationConverter;
+import ascii_output.AsciiFrameWriter;
+import image_char_matching.SubImgCharMatcher;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks converting a whole animated GIF, with and without reusing the work of the frame before for
+ * the parts of a frame that did not change.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+public class AnimationBenchmark {
+    private static final int FRAMES = 60;
+
+    @Param({"640x480", "1920x1080"})
+    private String size;
+
+    @Param({"64", "256"})
+    private int resolution;
+
+    @Param({"true", "false"})
+    private boolean reuse;
+
+    private String path;
+    private AnimationConverter animationConverter;
+
+    /**
+     * Writes the synthetic animation and prepares the conversion of it.
+     *
+     * @throws IOException If the animation cannot be written.
+     */
+    @Setup
+    public void setUp() throws IOException {
+        int[] dimensions = SyntheticImages.parseSize(this.size);
+        this.path = SyntheticImages.writeAnimationToFile(dimensions[0], dimensions[1], FRAMES);
+        this.animationConverter = new AnimationConverter(new SubImgCharMatcher(SyntheticImages.charset(10)),
+                this.resolution);
+        this.animationConverter.setReuseEnabled(this.reuse);
+    }
+
+    /**
+     * Converts every frame of the animation, handing the frames to the blackhole instead of writing them.
+     *
+     * @param blackhole The blackhole that takes the frames.
+     * @throws IOException If the animation cannot be read.
+     */
+    @Benchmark
+    public void convert(Blackhole blackhole) throws IOException {
+        this.animationConverter.convert(this.path, new AsciiFrameWriter() {
+            @Override
+            public void writeHeader(int rows, int cols) {
+            }
+
+            @Override
+            public void writeFrame(char[][] frame, int delayMillis) {
+                blackhole.consume(frame);
+            }
+
+            @Override
+            public void close() {
+            }
+        });
+    }
+}
@@ -0,0 +1,165 @@
+package benchmarks;
+
+import ascii_art.AsciiArtAlgorithm;
+import image.ImageProcessor;
+import image_char_matching.SubImgCharMatcher;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks the conversion algorithm on a prepared image, and the whole path from an image file to
+ * ASCII art.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+public class AsciiArtBenchmark {
+    @Param({"2048x1536"})
+    private String size;
+
+    @Param({"16", "128", "512", "2048"})
+    private int resolution;
+
+    @Param({"10", "95"})
+    private int charsetSize;
+
+    private String path;
+    private ImageProcessor imageProcessor;
+    private AsciiArtAlgorithm asciiArtAlgorithm;
+    private AsciiArtAlgorithm shapeAsciiArtAlgorithm;
+    private AsciiArtAlgorithm ditheredAsciiArtAlgorithm;
+    private AsciiArtAlgorithm cachedAsciiArtAlgorithm;
+    private SubImgCharMatcher subImgCharMatcher;
+    private SubImgCharMatcher tweakedCharMatcher;
+    private AsciiArtAlgorithm tweakedAsciiArtAlgorithm;
+    private char tweakedChar;
+
+    /**
+     * Writes the synthetic image and prepares the conversion over it.
+     *
+     * @throws IOException If the image cannot be written or read, or the resolution does not fit.
+     */
+    @Setup
+    public void setUp() throws IOException {
+        int[] dimensions = SyntheticImages.parseSize(this.size);
+        this.path = SyntheticImages.writeToFile(dimensions[0], dimensions[1]);
+        this.imageProcessor = new ImageProcessor(this.path);
+        this.imageProcessor.setResolution(this.resolution);
+        char[] charset = SyntheticImages.charset(this.charsetSize);
+        this.subImgCharMatcher = new SubImgCharMatcher(charset);
+        this.cachedAsciiArtAlgorithm = new AsciiArtAlgorithm(this.subImgCharMatcher, this.imageProcessor);
+        this.cachedAsciiArtAlgorithm.setCacheBudget(Long.MAX_VALUE);
+        // a character from the middle of the charset, so toggling it does not renormalize the levels
+        this.tweakedChar = charset[charset.length / 2];
+        this.tweakedCharMatcher = new SubImgCharMatcher(charset);
+        this.tweakedAsciiArtAlgorithm = new AsciiArtAlgorithm(this.tweakedCharMatcher, this.imageProcessor);
+        this.tweakedAsciiArtAlgorithm.setCacheBudget(0);
+        this.tweakedAsciiArtAlgorithm.run();
+    }
+
+    /**
+     * Makes a new algorithm with no last result and no cache, so every run has to match all the
+     * sub-images instead of reusing the last result.
+     */
+    @Setup(Level.Invocation)
+    public void forgetLastResult() {
+        this.asciiArtAlgorithm = new AsciiArtAlgorithm(this.subImgCharMatcher, this.imageProcessor);
+        this.asciiArtAlgorithm.setCacheBudget(0);
+        this.shapeAsciiArtAlgorithm = new AsciiArtAlgorithm(this.subImgCharMatcher, this.imageProcessor);
+        this.shapeAsciiArtAlgorithm.setCacheBudget(0);
+        this.shapeAsciiArtAlgorithm.setShapeMatchingEnabled(true);
+        this.ditheredAsciiArtAlgorithm = new AsciiArtAlgorithm(this.subImgCharMatcher, this.imageProcessor);
+        this.ditheredAsciiArtAlgorithm.setCacheBudget(0);
+        this.ditheredAsciiArtAlgorithm.setDitheringEnabled(true);
+    }
+
+    /**
+     * Removes a character from the charset or adds it back, and runs the algorithm again, which only
+     * matches the sub-images affected by the change.
+     *
+     * @return The ASCII art.
+     * @throws IOException Never, the charset is not empty.
+     */
+    @Benchmark
+    public char[][] charsetTweak() throws IOException {
+        if (this.tweakedCharMatcher.toString().indexOf(this.tweakedChar) >= 0) {
+            this.tweakedCharMatcher.removeChar(this.tweakedChar);
+        } else {
+            this.tweakedCharMatcher.addChar(this.tweakedChar);
+        }
+        return this.tweakedAsciiArtAlgorithm.run();
+    }
+
+    /**
+     * Runs the algorithm again with nothing changed, which is answered from the results cache.
+     *
+     * @return The ASCII art.
+     * @throws IOException Never, the charset is not empty.
+     */
+    @Benchmark
+    public char[][] cachedRun() throws IOException {
+        return this.cachedAsciiArtAlgorithm.run();
+    }
+
+    /**
+     * Runs the algorithm on the already prepared image.
+     *
+     * @return The ASCII art.
+     * @throws IOException Never, the charset is not empty.
+     */
+    @Benchmark
+    public char[][] run() throws IOException {
+        return this.asciiArtAlgorithm.run();
+    }
+
+    /**
+     * Runs the algorithm on the already prepared image, matching the sub-images by shape.
+     *
+     * @return The ASCII art.
+     * @throws IOException Never, the charset is not empty.
+     */
+    @Benchmark
+    public char[][] shapeRun() throws IOException {
+        return this.shapeAsciiArtAlgorithm.run();
+    }
+
+    /**
+     * Runs the algorithm on the already prepared image, dithering the sub-images.
+     *
+     * @return The ASCII art.
+     * @throws IOException Never, the charset is not empty.
+     */
+    @Benchmark
+    public char[][] ditheredRun() throws IOException {
+        return this.ditheredAsciiArtAlgorithm.run();
+    }
+
+    /**
+     * Loads the image from its file and converts it.
+     *
+     * @return The ASCII art.
+     * @throws IOException If the image cannot be read.
+     */
+    @Benchmark
+    public char[][] endToEnd() throws IOException {
+        this.imageProcessor.setImage(this.path);
+        this.imageProcessor.setResolution(this.resolution);
+        return this.asciiArtAlgorithm.run();
+    }
+}
@@ -0,0 +1,97 @@
+package benchmarks;
+
+import exceptions.EmptyCharsetException;
+import image_char_matching.SubImgCharMatcher;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks matching brightness values to characters, and editing the charset.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CharMatcherBenchmark {
+    private static final int BRIGHTNESS_VALUES = 1 << 16;
+    private static final long SEED = 7;
+
+    @Param({"10", "26", "95"})
+    private int charsetSize;
+
+    private SubImgCharMatcher subImgCharMatcher;
+    private final double[] brightnessValues = new double[BRIGHTNESS_VALUES];
+
+    /**
+     * Creates the matcher and the brightness values to match.
+     */
+    @Setup
+    public void setUp() {
+        this.subImgCharMatcher = new SubImgCharMatcher(SyntheticImages.charset(this.charsetSize));
+        Random random = new Random(SEED);
+        for (int i = 0; i < BRIGHTNESS_VALUES; i++) {
+            this.brightnessValues[i] = random.nextDouble();
+        }
+    }
+
+    /**
+     * Matches every brightness value to a character; the score is per match.
+     *
+     * @return A value depending on all the matched characters.
+     * @throws EmptyCharsetException Never, the charset is not empty.
+     */
+    @Benchmark
+    @OperationsPerInvocation(BRIGHTNESS_VALUES)
+    public int getCharByImageBrightness() throws EmptyCharsetException {
+        int sum = 0;
+        for (double brightness : this.brightnessValues) {
+            sum += this.subImgCharMatcher.getCharByImageBrightness(brightness);
+        }
+        return sum;
+    }
+
+    /**
+     * Removes and adds back a character from the middle of the charset, then matches once so that
+     * any lazily rebuilt state is rebuilt.
+     *
+     * @return The matched character.
+     * @throws Exception Never, the character is legal.
+     */
+    @Benchmark
+    public char toggleChar() throws Exception {
+        char c = (char) (' ' + this.charsetSize / 2);
+        this.subImgCharMatcher.removeChar(c);
+        this.subImgCharMatcher.addChar(c);
+        return this.subImgCharMatcher.getCharByImageBrightness(this.brightnessValues[0]);
+    }
+
+    /**
+     * Removes and adds back the whole charset as a range, like "remove all" and "add all" do, then
+     * matches once so that any lazily rebuilt state is rebuilt.
+     *
+     * @return The matched character.
+     * @throws Exception Never, the characters are legal.
+     */
+    @Benchmark
+    public char toggleRange() throws Exception {
+        char last = (char) (' ' + this.charsetSize - 1);
+        this.subImgCharMatcher.removeChars(' ', last);
+        this.subImgCharMatcher.addChars(' ', last);
+        return this.subImgCharMatcher.getCharByImageBrightness(this.brightnessValues[0]);
+    }
+}
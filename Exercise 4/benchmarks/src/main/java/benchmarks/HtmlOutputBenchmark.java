@@ -0,0 +1,82 @@
+package benchmarks;
+
+import ascii_output.HtmlAsciiOutput;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.OutputStream;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks writing ASCII art as an HTML page, black or in color, to a stream that discards it so only
+ * the formatting and escaping are measured.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class HtmlOutputBenchmark {
+    private static final String FONT = "Courier New";
+    private static final long SEED = 11;
+
+    @Param({"128", "512", "2048"})
+    private int resolution;
+
+    @Param({"10", "95"})
+    private int charsetSize;
+
+    private char[][] asciiArt;
+    private int[][] colors;
+
+    /**
+     * Creates random ASCII art over the charset, as tall as it is wide, with colors that change smoothly
+     * across it like the colors of a photo's sub-images do.
+     */
+    @Setup
+    public void setUp() {
+        char[] charset = SyntheticImages.charset(this.charsetSize);
+        Random random = new Random(SEED);
+        this.asciiArt = new char[this.resolution][this.resolution];
+        for (char[] row : this.asciiArt) {
+            for (int col = 0; col < row.length; col++) {
+                row[col] = charset[random.nextInt(charset.length)];
+            }
+        }
+        this.colors = new int[this.resolution][this.resolution];
+        for (int row = 0; row < this.resolution; row++) {
+            for (int col = 0; col < this.resolution; col++) {
+                int red = 255 * row / this.resolution;
+                int green = 255 * col / this.resolution;
+                this.colors[row][col] = red << 16 | green << 8 | (red + green) / 2;
+            }
+        }
+    }
+
+    /**
+     * Writes the whole page.
+     */
+    @Benchmark
+    public void out() {
+        new HtmlAsciiOutput(OutputStream.nullOutputStream(), FONT).out(this.asciiArt);
+    }
+
+    /**
+     * Writes the whole page in color.
+     */
+    @Benchmark
+    public void coloredOut() {
+        new HtmlAsciiOutput(OutputStream.nullOutputStream(), FONT).out(this.asciiArt, this.colors);
+    }
+}
@@ -0,0 +1,94 @@
+package benchmarks;
+
+import image.Image;
+import image.ImageProcessor;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks loading an image from a file, reading the luminance of all its pixels and preparing it
+ * for conversion (decoding, padding and indexing it).
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+public class ImageBenchmark {
+    @Param({"512x384", "2048x1536", "4096x3072"})
+    private String size;
+
+    @Param({"scalar", "vector"})
+    private String engine;
+
+    private String path;
+    private Image image;
+    private ImageProcessor imageProcessor;
+
+    /**
+     * Writes the synthetic image and loads it once for the luminance benchmark.
+     *
+     * @throws IOException If the image cannot be written or read.
+     */
+    @Setup
+    public void setUp() throws IOException {
+        int[] dimensions = SyntheticImages.parseSize(this.size);
+        this.path = SyntheticImages.writeToFile(dimensions[0], dimensions[1]);
+        this.image = new Image(this.path);
+        this.imageProcessor = new ImageProcessor(this.path);
+        this.imageProcessor.setVectorLuminanceEnabled(this.engine.equals("vector"));
+    }
+
+    /**
+     * Decodes the image file into packed pixels.
+     *
+     * @return The loaded image.
+     * @throws IOException If the image cannot be read.
+     */
+    @Benchmark
+    public Image load() throws IOException {
+        return new Image(this.path);
+    }
+
+    /**
+     * Sums the luminance of every pixel.
+     *
+     * @return The total luminance.
+     */
+    @Benchmark
+    public double luminance() {
+        double sum = 0;
+        for (int row = 0; row < this.image.getHeight(); row++) {
+            for (int col = 0; col < this.image.getWidth(); col++) {
+                sum += this.image.getLuminance(row, col);
+            }
+        }
+        return sum;
+    }
+
+    /**
+     * Loads, pads and indexes the image in an image processor, converting its pixels into luminance
+     * with the benchmark's engine (the vector engine falls back to the scalar one when it is missing).
+     *
+     * @return The processor holding the image.
+     * @throws IOException If the image cannot be read.
+     */
+    @Benchmark
+    public ImageProcessor prepare() throws IOException {
+        this.imageProcessor.setImage(this.path);
+        return this.imageProcessor;
+    }
+}
@@ -0,0 +1,71 @@
+package benchmarks;
+
+import image.BrightnessGrid;
+import image.ImageProcessor;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks creating the sub-images of an image at every resolution, sequentially and in parallel,
+ * with and without their average colors.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+public class ImageProcessorBenchmark {
+    @Param({"2048x1536", "4096x3072"})
+    private String size;
+
+    @Param({"16", "64", "256", "1024", "2048"})
+    private int resolution;
+
+    @Param({"1", "4"})
+    private int parallelism;
+
+    @Param({"false", "true"})
+    private boolean colored;
+
+    private String path;
+    private ImageProcessor imageProcessor;
+
+    /**
+     * Writes the synthetic image and prepares a processor over it.
+     *
+     * @throws IOException If the image cannot be written or read, or the resolution does not fit.
+     */
+    @Setup
+    public void setUp() throws IOException {
+        int[] dimensions = SyntheticImages.parseSize(this.size);
+        this.path = SyntheticImages.writeToFile(dimensions[0], dimensions[1]);
+        this.imageProcessor = new ImageProcessor(this.path);
+        this.imageProcessor.setParallelism(this.parallelism);
+        this.imageProcessor.setColorEnabled(this.colored);
+        this.imageProcessor.setImage(this.path);
+        this.imageProcessor.setResolution(this.resolution);
+    }
+
+    /**
+     * Creates the sub-images of the prepared image at the current resolution.
+     *
+     * @return The brightness of the sub-images.
+     */
+    @Benchmark
+    public BrightnessGrid createSubImages() {
+        return this.imageProcessor.createSubImages();
+    }
+}
@@ -0,0 +1,159 @@
+package benchmarks;
+
+import javax.imageio.IIOImage;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageTypeSpecifier;
+import javax.imageio.ImageWriteParam;
+import javax.imageio.ImageWriter;
+import javax.imageio.metadata.IIOMetadata;
+import javax.imageio.metadata.IIOMetadataNode;
+import javax.imageio.stream.ImageOutputStream;
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+import java.util.Random;
+
+/**
+ * Creates the synthetic images the benchmarks run on: a diagonal gradient with some noise, so that
+ * neighbouring sub-images differ and every charset level gets used.
+ */
+final class SyntheticImages {
+    private static final String FORMAT = "jpg";
+    private static final long SEED = 42;
+    private static final int NOISE = 32;
+    private static final char SIZE_SEPARATOR = 'x';
+    private static final String ANIMATION_FORMAT = "gif";
+    private static final int SPRITE_SIZE = 64;
+    private static final int SPRITE_STEP = 8;
+    private static final String FRAME_DELAY = "4";
+
+    private SyntheticImages() {}
+
+    /**
+     * Parses a size parameter of the form WIDTHxHEIGHT.
+     *
+     * @param size The size parameter.
+     * @return The width and the height.
+     */
+    static int[] parseSize(String size) {
+        int separator = size.indexOf(SIZE_SEPARATOR);
+        return new int[]{Integer.parseInt(size.substring(0, separator)),
+                Integer.parseInt(size.substring(separator + 1))};
+    }
+
+    /**
+     * Creates the packed ARGB pixels of a synthetic image.
+     *
+     * @param width  The width of the image.
+     * @param height The height of the image.
+     * @return The pixels, row-major.
+     */
+    static int[] pixels(int width, int height) {
+        Random random = new Random(SEED);
+        int[] pixels = new int[width * height];
+        for (int row = 0; row < height; row++) {
+            for (int col = 0; col < width; col++) {
+                int gradient = (int) (255L * (row + col) / (width + height));
+                int red = clamp(gradient + random.nextInt(NOISE) - NOISE / 2);
+                int green = clamp(255 - gradient + random.nextInt(NOISE) - NOISE / 2);
+                int blue = clamp(gradient / 2 + random.nextInt(NOISE));
+                pixels[row * width + col] = 0xFF000000 | (red << 16) | (green << 8) | blue;
+            }
+        }
+        return pixels;
+    }
+
+    /**
+     * Writes a synthetic image to a temporary file, deleted when the JVM exits.
+     *
+     * @param width  The width of the image.
+     * @param height The height of the image.
+     * @return The path of the image file.
+     * @throws IOException If the file cannot be written.
+     */
+    static String writeToFile(int width, int height) throws IOException {
+        BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+        image.setRGB(0, 0, width, height, pixels(width, height), 0, width);
+        File file = File.createTempFile("synthetic-" + width + SIZE_SEPARATOR + height + "-", "." + FORMAT);
+        file.deleteOnExit();
+        ImageIO.write(image, FORMAT, file);
+        return file.getPath();
+    }
+
+    /**
+     * Writes a synthetic animated GIF to a temporary file, deleted when the JVM exits: the synthetic image,
+     * and then a small sprite moving over it diagonally, which is all that every later frame changes.
+     *
+     * @param width  The width of the animation.
+     * @param height The height of the animation.
+     * @param frames The number of frames, the first one included.
+     * @return The path of the animation file.
+     * @throws IOException If the file cannot be written.
+     */
+    static String writeAnimationToFile(int width, int height, int frames) throws IOException {
+        File file = File.createTempFile("synthetic-" + width + SIZE_SEPARATOR + height + "-",
+                "." + ANIMATION_FORMAT);
+        file.deleteOnExit();
+        ImageWriter writer = ImageIO.getImageWritersByFormatName(ANIMATION_FORMAT).next();
+        try (ImageOutputStream output = ImageIO.createImageOutputStream(file)) {
+            writer.setOutput(output);
+            writer.prepareWriteSequence(null);
+            BufferedImage background = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+            background.setRGB(0, 0, width, height, pixels(width, height), 0, width);
+            writer.writeToSequence(frame(writer, background, 0, 0), null);
+            BufferedImage sprite = new BufferedImage(SPRITE_SIZE, SPRITE_SIZE, BufferedImage.TYPE_INT_RGB);
+            for (int i = 1; i < frames; i++) {
+                for (int row = 0; row < SPRITE_SIZE; row++) {
+                    for (int col = 0; col < SPRITE_SIZE; col++) {
+                        sprite.setRGB(col, row, (row + col + i) % SPRITE_STEP == 0 ? 0xFFFFFF : i * 0x0A0A0A);
+                    }
+                }
+                int offset = i * SPRITE_STEP;
+                writer.writeToSequence(frame(writer, sprite, offset % (width - SPRITE_SIZE),
+                        offset % (height - SPRITE_SIZE)), null);
+            }
+            writer.endWriteSequence();
+        } finally {
+            writer.dispose();
+        }
+        return file.getPath();
+    }
+
+    private static IIOImage frame(ImageWriter writer, BufferedImage image, int left, int top)
+            throws IOException {
+        ImageWriteParam param = writer.getDefaultWriteParam();
+        IIOMetadata metadata = writer.getDefaultImageMetadata(new ImageTypeSpecifier(image), param);
+        String format = metadata.getNativeMetadataFormatName();
+        IIOMetadataNode root = (IIOMetadataNode) metadata.getAsTree(format);
+        IIOMetadataNode descriptor = (IIOMetadataNode) root.getElementsByTagName("ImageDescriptor").item(0);
+        descriptor.setAttribute("imageLeftPosition", Integer.toString(left));
+        descriptor.setAttribute("imageTopPosition", Integer.toString(top));
+        IIOMetadataNode control = new IIOMetadataNode("GraphicControlExtension");
+        control.setAttribute("disposalMethod", "doNotDispose");
+        control.setAttribute("userInputFlag", "FALSE");
+        control.setAttribute("transparentColorFlag", "FALSE");
+        control.setAttribute("delayTime", FRAME_DELAY);
+        control.setAttribute("transparentColorIndex", "0");
+        root.appendChild(control);
+        metadata.setFromTree(format, root);
+        return new IIOImage(image, null, metadata);
+    }
+
+    /**
+     * Creates a charset of the given size, taking the printable ASCII characters from the space on.
+     *
+     * @param size The number of characters, at most 95.
+     * @return The charset.
+     */
+    static char[] charset(int size) {
+        char[] charset = new char[size];
+        for (int i = 0; i < size; i++) {
+            charset[i] = (char) (' ' + i);
+        }
+        return charset;
+    }
+
+    private static int clamp(int channel) {
+        return Math.max(0, Math.min(255, channel));
+    }
+}
@@ -0,0 +1,151 @@
+package ascii_art;
+
+import ascii_output.AsciiFrameWriter;
+import image.ImageProcessor;
+import image.TestAnimations;
+import image_char_matching.SubImgCharMatcher;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+public class AnimationConverterTest {
+    private static final int WIDTH = 257;
+    private static final int HEIGHT = 129;
+    private static final int FRAMES = 12;
+    private static final char[] CHARSET = " .:-=+*#%@".toCharArray();
+    private static final Duration TIMEOUT = Duration.ofSeconds(30);
+
+    @TempDir
+    Path directory;
+
+    /**
+     * Keeps a copy of every frame it is given, and fails once it was given a number of frames.
+     */
+    private static class CollectingWriter implements AsciiFrameWriter {
+        private final List<String> frames = new ArrayList<>();
+        private final int failAfter;
+
+        private CollectingWriter(int failAfter) {
+            this.failAfter = failAfter;
+        }
+
+        @Override
+        public void writeHeader(int rows, int cols) {}
+
+        @Override
+        public void writeFrame(char[][] frame, int delayMillis) throws IOException {
+            if (this.frames.size() == this.failAfter) {
+                throw new IOException("No space left on device");
+            }
+            StringBuilder art = new StringBuilder();
+            for (char[] row : frame) {
+                art.append(row).append('\n');
+            }
+            this.frames.add(art.toString());
+        }
+
+        @Override
+        public void close() {}
+    }
+
+    private File frameDirectory() throws IOException {
+        // a square moving over a gradient
+        File frames = this.directory.resolve("frames").toFile();
+        Assertions.assertTrue(frames.mkdir());
+        for (int k = 0; k < FRAMES; k++) {
+            BufferedImage image = TestAnimations.gradient(WIDTH, HEIGHT, 9);
+            for (int y = 0; y < 20; y++) {
+                for (int x = 0; x < 20; x++) {
+                    image.setRGB(5 + k * 9 + x, 40 + y, 0);
+                }
+            }
+            ImageIO.write(image, "png", new File(frames, "frame" + k + ".png"));
+        }
+        return frames;
+    }
+
+    private List<String> stillArt(File frames, int resolution) throws IOException {
+        List<String> art = new ArrayList<>();
+        File[] files = frames.listFiles();
+        Arrays.sort(files, (first, second) -> first.getName().length() != second.getName().length() ?
+                first.getName().length() - second.getName().length() : first.compareTo(second));
+        for (File file : files) {
+            ImageProcessor imageProcessor = new ImageProcessor(file.getPath());
+            imageProcessor.setResolution(resolution);
+            StringBuilder frame = new StringBuilder();
+            for (char[] row : new AsciiArtAlgorithm(new SubImgCharMatcher(CHARSET), imageProcessor).run()) {
+                frame.append(row).append('\n');
+            }
+            art.add(frame.toString());
+        }
+        return art;
+    }
+
+    private static boolean hasStageThreads() {
+        // any other thread still running the converter's code is a stage that was left behind
+        for (Map.Entry<Thread, StackTraceElement[]> thread : Thread.getAllStackTraces().entrySet()) {
+            for (StackTraceElement element : thread.getValue()) {
+                if (thread.getKey() != Thread.currentThread() &&
+                        element.getClassName().startsWith(AnimationConverter.class.getName())) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    @Test
+    public void test_same_as_still_images() throws IOException {
+        File frames = frameDirectory();
+        for (int resolution = 16; resolution <= 128; resolution *= 2) {
+            List<String> expected = stillArt(frames, resolution);
+            for (boolean reuse : new boolean[]{true, false}) {
+                AnimationConverter converter = new AnimationConverter(new SubImgCharMatcher(CHARSET),
+                        resolution);
+                converter.setReuseEnabled(reuse);
+                converter.setQueueCapacity(1);
+                CollectingWriter writer = new CollectingWriter(-1);
+                converter.convert(frames.getPath(), writer);
+                Assertions.assertEquals(expected, writer.frames);
+            }
+        }
+    }
+
+    @Test
+    public void test_failed_writer_stops_the_stages() throws IOException {
+        File frames = frameDirectory();
+        AnimationConverter converter = new AnimationConverter(new SubImgCharMatcher(CHARSET), 64);
+        converter.setQueueCapacity(1);
+        CollectingWriter writer = new CollectingWriter(2);
+        Assertions.assertTimeoutPreemptively(TIMEOUT, () -> {
+            Assertions.assertThrows(IOException.class, () -> converter.convert(frames.getPath(), writer));
+        });
+        Assertions.assertEquals(2, writer.frames.size());
+        Assertions.assertFalse(hasStageThreads());
+    }
+
+    @Test
+    public void test_failed_decoding_fails_the_conversion() throws IOException {
+        File frames = frameDirectory();
+        Files.write(new File(frames, "frame" + FRAMES / 2 + ".png").toPath(), new byte[]{1, 2, 3});
+        AnimationConverter converter = new AnimationConverter(new SubImgCharMatcher(CHARSET), 64);
+        CollectingWriter writer = new CollectingWriter(-1);
+        Assertions.assertTimeoutPreemptively(TIMEOUT, () -> {
+            Assertions.assertThrows(IOException.class, () -> converter.convert(frames.getPath(), writer));
+        });
+        Assertions.assertEquals(FRAMES / 2, writer.frames.size());
+        Assertions.assertFalse(hasStageThreads());
+    }
+}
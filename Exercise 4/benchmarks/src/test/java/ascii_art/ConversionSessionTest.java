@@ -0,0 +1,80 @@
+package ascii_art;
+
+import image.ImageLibrary;
+import image.ImageProcessor;
+import image.TestAnimations;
+import image_char_matching.SubImgCharMatcher;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import javax.imageio.ImageIO;
+import java.io.File;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+public class ConversionSessionTest {
+    private static final int WIDTH = 257;
+    private static final int HEIGHT = 129;
+    private static final int SESSIONS = 48;
+    private static final int THREADS = 16;
+    private static final String[] CHARSETS = {"0123456789", " .:-=+*#%@", "@#"};
+
+    @TempDir
+    Path directory;
+
+    @Test
+    public void test_concurrent_sessions_same_as_alone() throws Exception {
+        String[] imagePaths = new String[3];
+        for (int i = 0; i < imagePaths.length; i++) {
+            File file = this.directory.resolve("image" + i + ".png").toFile();
+            ImageIO.write(TestAnimations.gradient(WIDTH, HEIGHT, i), "png", file);
+            imagePaths[i] = file.getPath();
+        }
+        ImageLibrary library = new ImageLibrary(1L << 24);
+        library.setPyramidEnabled(true);
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        try {
+            // every session switches images, characters and resolutions on its own while the others run
+            List<Future<List<char[][]>>> results = new ArrayList<>();
+            for (int s = 0; s < SESSIONS; s++) {
+                int session = s;
+                results.add(executor.submit(() -> {
+                    ConversionSession conversionSession = new ConversionSession(library,
+                            imagePaths[session % imagePaths.length], CHARSETS[0].toCharArray());
+                    List<char[][]> arts = new ArrayList<>();
+                    for (int step = 0; step < CHARSETS.length; step++) {
+                        conversionSession.getImageProcessor().setImage(imagePaths[(session + step) %
+                                imagePaths.length]);
+                        conversionSession.getImageProcessor().setResolution(4 << ((session + step) % 5));
+                        SubImgCharMatcher matcher = conversionSession.getCharMatcher();
+                        for (char c : CHARSETS[step].toCharArray()) {
+                            matcher.addChar(c);
+                        }
+                        arts.add(conversionSession.run());
+                    }
+                    return arts;
+                }));
+            }
+            for (int session = 0; session < SESSIONS; session++) {
+                List<char[][]> arts = results.get(session).get();
+                StringBuilder charset = new StringBuilder();
+                for (int step = 0; step < CHARSETS.length; step++) {
+                    charset.append(CHARSETS[step]);
+                    String imagePath = imagePaths[(session + step) % imagePaths.length];
+                    ImageProcessor alone = new ImageProcessor(imagePath);
+                    alone.setResolution(4 << ((session + step) % 5));
+                    char[][] expected = new AsciiArtAlgorithm(
+                            new SubImgCharMatcher(charset.toString().toCharArray()), alone).run();
+                    Assertions.assertArrayEquals(expected, arts.get(step));
+                }
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+}
@@ -0,0 +1,155 @@
+package image;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import javax.imageio.ImageIO;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+public class AnimationReaderTest {
+    private static final int WIDTH = 40;
+    private static final int HEIGHT = 30;
+    private static final int WHITE = 0xFFFFFFFF;
+    private static final int BLUE = 0xFF0000FF;
+    private static final int RED = 0xFFFF0000;
+    private static final int GREEN = 0xFF00FF00;
+    private static final int BLACK = 0xFF000000;
+
+    @TempDir
+    Path directory;
+
+    private List<AnimationFrame> readAll(String path) throws IOException {
+        List<AnimationFrame> frames = new ArrayList<>();
+        try (AnimationReader reader = new AnimationReader(path)) {
+            for (AnimationFrame frame = reader.readFrame(); frame != null; frame = reader.readFrame()) {
+                frames.add(frame);
+            }
+        }
+        return frames;
+    }
+
+    private String disposalGif() throws IOException {
+        List<TestAnimations.GifFrame> frames = new ArrayList<>();
+        frames.add(new TestAnimations.GifFrame(TestAnimations.solid(WIDTH, HEIGHT, BLUE), 0, 0,
+                TestAnimations.NO_DISPOSAL, 5));
+        frames.add(new TestAnimations.GifFrame(TestAnimations.solid(10, 10, RED), 5, 5,
+                TestAnimations.RESTORE_TO_BACKGROUND, 5));
+        frames.add(new TestAnimations.GifFrame(TestAnimations.checkered(10, 10, GREEN), 20, 10,
+                TestAnimations.RESTORE_TO_PREVIOUS, 5));
+        frames.add(new TestAnimations.GifFrame(TestAnimations.solid(4, 4, BLACK), 0, 0,
+                TestAnimations.NO_DISPOSAL, 5));
+        frames.add(new TestAnimations.GifFrame(TestAnimations.solid(1, 1, BLACK), 0, 0,
+                TestAnimations.NO_DISPOSAL, 0));
+        File file = this.directory.resolve("disposal.gif").toFile();
+        TestAnimations.writeGif(file, frames);
+        return file.getPath();
+    }
+
+    private static boolean inside(int row, int col, int top, int left, int size) {
+        return row >= top && row < top + size && col >= left && col < left + size;
+    }
+
+    private static void assertChangeCovers(AnimationFrame previous, AnimationFrame frame) {
+        // every pixel that differs from the frame before lies in the changed rectangle
+        for (int row = 0; row < HEIGHT; row++) {
+            for (int col = 0; col < WIDTH; col++) {
+                if (previous.getImage().getRGB(row, col) != frame.getImage().getRGB(row, col)) {
+                    Assertions.assertTrue(frame.hasChanges());
+                    Assertions.assertTrue(row >= frame.getChangedTop() && row < frame.getChangedBottom());
+                    Assertions.assertTrue(col >= frame.getChangedLeft() && col < frame.getChangedRight());
+                }
+            }
+        }
+    }
+
+    @Test
+    public void test_disposal_and_transparency() throws IOException {
+        List<AnimationFrame> frames = readAll(disposalGif());
+        Assertions.assertEquals(5, frames.size());
+        for (int row = 0; row < HEIGHT; row++) {
+            for (int col = 0; col < WIDTH; col++) {
+                Assertions.assertEquals(BLUE, frames.get(0).getImage().getRGB(row, col));
+                // the red square is drawn over the background
+                Assertions.assertEquals(inside(row, col, 5, 5, 10) ? RED : BLUE,
+                        frames.get(1).getImage().getRGB(row, col));
+                // the red square is restored to the background color; the blue shows through the
+                // transparent pixels of the green square
+                int expected = inside(row, col, 5, 5, 10) ? WHITE : BLUE;
+                if (inside(row, col, 10, 20, 10) && (row - 10 + col - 20) % 2 == 0) {
+                    expected = GREEN;
+                }
+                Assertions.assertEquals(expected, frames.get(2).getImage().getRGB(row, col));
+                // the green square is restored to what was there before it, and the black one is kept
+                expected = inside(row, col, 0, 0, 4) ? BLACK : inside(row, col, 5, 5, 10) ? WHITE : BLUE;
+                Assertions.assertEquals(expected, frames.get(3).getImage().getRGB(row, col));
+                Assertions.assertEquals(expected, frames.get(4).getImage().getRGB(row, col));
+            }
+        }
+    }
+
+    @Test
+    public void test_changed_rectangles() throws IOException {
+        List<AnimationFrame> frames = readAll(disposalGif());
+        AnimationFrame first = frames.get(0);
+        Assertions.assertTrue(first.hasChanges());
+        Assertions.assertEquals(0, first.getChangedTop());
+        Assertions.assertEquals(HEIGHT, first.getChangedBottom());
+        for (int i = 1; i < frames.size(); i++) {
+            assertChangeCovers(frames.get(i - 1), frames.get(i));
+        }
+        // the last frame draws a black pixel over a black pixel
+        Assertions.assertFalse(frames.get(4).hasChanges());
+    }
+
+    @Test
+    public void test_delays() throws IOException {
+        List<AnimationFrame> frames = readAll(disposalGif());
+        Assertions.assertEquals(50, frames.get(0).getDelayMillis());
+        Assertions.assertEquals(AnimationReader.DEFAULT_DELAY_MILLIS, frames.get(4).getDelayMillis());
+    }
+
+    @Test
+    public void test_frame_directory_in_numeric_order() throws IOException {
+        File frameDirectory = this.directory.resolve("frames").toFile();
+        Assertions.assertTrue(frameDirectory.mkdir());
+        int[] numbers = {10, 2, 1};
+        for (int number : numbers) {
+            ImageIO.write(TestAnimations.solid(WIDTH, HEIGHT, BLACK | number), "png",
+                    new File(frameDirectory, "frame" + number + ".png"));
+        }
+        List<AnimationFrame> frames;
+        try (AnimationReader reader = new AnimationReader(frameDirectory.getPath())) {
+            reader.setSequenceDelayMillis(40);
+            frames = new ArrayList<>();
+            for (AnimationFrame frame = reader.readFrame(); frame != null; frame = reader.readFrame()) {
+                frames.add(frame);
+            }
+        }
+        Assertions.assertEquals(3, frames.size());
+        Assertions.assertEquals(BLACK | 1, frames.get(0).getImage().getRGB(0, 0));
+        Assertions.assertEquals(BLACK | 2, frames.get(1).getImage().getRGB(0, 0));
+        Assertions.assertEquals(BLACK | 10, frames.get(2).getImage().getRGB(0, 0));
+        Assertions.assertEquals(40, frames.get(2).getDelayMillis());
+        for (int i = 1; i < frames.size(); i++) {
+            assertChangeCovers(frames.get(i - 1), frames.get(i));
+        }
+    }
+
+    @Test
+    public void test_frame_of_another_size_fails() throws IOException {
+        File frameDirectory = this.directory.resolve("sizes").toFile();
+        Assertions.assertTrue(frameDirectory.mkdir());
+        ImageIO.write(TestAnimations.solid(WIDTH, HEIGHT, BLUE), "png", new File(frameDirectory, "1.png"));
+        ImageIO.write(TestAnimations.solid(WIDTH, HEIGHT + 1, BLUE), "png",
+                new File(frameDirectory, "2.png"));
+        try (AnimationReader reader = new AnimationReader(frameDirectory.getPath())) {
+            Assertions.assertNotNull(reader.readFrame());
+            Assertions.assertThrows(IOException.class, reader::readFrame);
+        }
+    }
+}
@@ -0,0 +1,94 @@
+package image;
+
+import exceptions.OutOfBoundariesException;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import javax.imageio.IIOImage;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageWriteParam;
+import javax.imageio.ImageWriter;
+import javax.imageio.stream.ImageOutputStream;
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Path;
+
+public class BrightnessBandReaderTest {
+    // odd sizes, so that the image is padded on every side and the sub-images cross its edges
+    private static final int[][] SIZES = {{301, 203}, {97, 250}};
+    private static final long[] READ_AHEAD_PIXELS = {1, 1000, 1L << 22};
+
+    @TempDir
+    Path directory;
+
+    private String write(BufferedImage image, String format, boolean progressive) throws IOException {
+        // progressive PNGs are interlaced, which is decoded in regions rather than in a single pass
+        String name = String.format("%dx%d-%b.%s", image.getWidth(), image.getHeight(), progressive, format);
+        File file = this.directory.resolve(name).toFile();
+        ImageWriter writer = ImageIO.getImageWritersByFormatName(format).next();
+        try (ImageOutputStream output = ImageIO.createImageOutputStream(file)) {
+            ImageWriteParam param = writer.getDefaultWriteParam();
+            if (progressive) {
+                param.setProgressiveMode(ImageWriteParam.MODE_DEFAULT);
+            }
+            writer.setOutput(output);
+            writer.write(null, new IIOImage(image, null, null), param);
+        } finally {
+            writer.dispose();
+        }
+        return file.getPath();
+    }
+
+    private static void assertSameAsImageProcessor(String path) throws IOException {
+        ImageProcessor imageProcessor = new ImageProcessor(path);
+        for (int resolution = 1; resolution <= 512; resolution *= 2) {
+            try {
+                imageProcessor.setResolution(resolution);
+            } catch (OutOfBoundariesException e) {
+                continue;
+            }
+            BrightnessGrid expected = imageProcessor.createSubImages();
+            for (long readAheadPixels : READ_AHEAD_PIXELS) {
+                try (BrightnessBandReader reader = new BrightnessBandReader(path, resolution)) {
+                    reader.setReadAheadPixels(readAheadPixels);
+                    Assertions.assertEquals(expected.getRows(), reader.getRows());
+                    Assertions.assertEquals(expected.getCols(), reader.getCols());
+                    double[] band = new double[reader.getCols()];
+                    for (int i = 0; i < expected.getRows(); i++) {
+                        Assertions.assertTrue(reader.readBand(band));
+                        for (int j = 0; j < expected.getCols(); j++) {
+                            Assertions.assertEquals(expected.get(i, j), band[j]);
+                        }
+                    }
+                    Assertions.assertFalse(reader.readBand(band));
+                }
+            }
+        }
+    }
+
+    @Test
+    public void test_png_same_as_image_processor() throws IOException {
+        for (int[] size : SIZES) {
+            BufferedImage image = TestAnimations.gradient(size[0], size[1], 1);
+            assertSameAsImageProcessor(write(image, "png", false));
+            assertSameAsImageProcessor(write(image, "png", true));
+        }
+    }
+
+    @Test
+    public void test_jpeg_same_as_image_processor() throws IOException {
+        for (int[] size : SIZES) {
+            BufferedImage image = TestAnimations.gradient(size[0], size[1], 2);
+            assertSameAsImageProcessor(write(image, "jpeg", false));
+            assertSameAsImageProcessor(write(image, "jpeg", true));
+        }
+    }
+
+    @Test
+    public void test_translucent_png_same_as_image_processor() throws IOException {
+        BufferedImage image = TestAnimations.checkered(SIZES[0][0], SIZES[0][1], 0xFF3366CC);
+        assertSameAsImageProcessor(write(image, "png", false));
+    }
+}
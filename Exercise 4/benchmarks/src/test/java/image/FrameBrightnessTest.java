@@ -0,0 +1,93 @@
+package image;
+
+import exceptions.OutOfBoundariesException;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+public class FrameBrightnessTest {
+    private static final int WIDTH = 301;
+    private static final int HEIGHT = 203;
+    private static final int SPRITES = 8;
+
+    @TempDir
+    Path directory;
+
+    private String spriteGif() throws IOException {
+        // sprites of every disposal method moving over a gradient, at odd sizes so that the padding
+        // of the image and the edges of the sub-images are crossed
+        List<TestAnimations.GifFrame> frames = new ArrayList<>();
+        frames.add(new TestAnimations.GifFrame(TestAnimations.gradient(WIDTH, HEIGHT, 1), 0, 0,
+                TestAnimations.NO_DISPOSAL, 5));
+        String[] disposals = {TestAnimations.RESTORE_TO_BACKGROUND, TestAnimations.RESTORE_TO_PREVIOUS,
+                TestAnimations.NO_DISPOSAL};
+        for (int k = 0; k < SPRITES; k++) {
+            frames.add(new TestAnimations.GifFrame(TestAnimations.checkered(37, 29, 0xFF000000 | k * 0x1F0A),
+                    10 + k * 31, 5 + k * 23, disposals[k % disposals.length], 5));
+        }
+        File file = this.directory.resolve("sprites.gif").toFile();
+        TestAnimations.writeGif(file, frames);
+        return file.getPath();
+    }
+
+    private BrightnessGrid processorGrid(AnimationFrame frame, int resolution)
+            throws IOException, OutOfBoundariesException {
+        Image image = frame.getImage();
+        BufferedImage picture = new BufferedImage(image.getWidth(), image.getHeight(),
+                BufferedImage.TYPE_INT_RGB);
+        picture.setRGB(0, 0, image.getWidth(), image.getHeight(), image.getPixels(), 0, image.getWidth());
+        File file = this.directory.resolve("frame.png").toFile();
+        ImageIO.write(picture, "png", file);
+        ImageProcessor imageProcessor = new ImageProcessor(file.getPath());
+        imageProcessor.setResolution(resolution);
+        return imageProcessor.createSubImages();
+    }
+
+    private static void assertSameGrid(BrightnessGrid expected, BrightnessGrid actual) {
+        Assertions.assertEquals(expected.getRows(), actual.getRows());
+        Assertions.assertEquals(expected.getCols(), actual.getCols());
+        for (int i = 0; i < expected.getRows(); i++) {
+            for (int j = 0; j < expected.getCols(); j++) {
+                Assertions.assertEquals(expected.get(i, j), actual.get(i, j));
+            }
+        }
+    }
+
+    @Test
+    public void test_reuse_same_as_image_processor() throws IOException, OutOfBoundariesException {
+        String path = spriteGif();
+        for (int resolution = 2; resolution <= 256; resolution *= 4) {
+            FrameBrightness reused = new FrameBrightness(WIDTH, HEIGHT, resolution);
+            FrameBrightness computed = new FrameBrightness(WIDTH, HEIGHT, resolution);
+            computed.setReuseEnabled(false);
+            try (AnimationReader reader = new AnimationReader(path)) {
+                for (AnimationFrame frame = reader.readFrame(); frame != null; frame = reader.readFrame()) {
+                    BrightnessGrid expected = processorGrid(frame, resolution);
+                    assertSameGrid(expected, reused.next(frame));
+                    assertSameGrid(expected, computed.next(frame));
+                }
+            }
+            Assertions.assertEquals(0, computed.getReusedSubImages());
+            Assertions.assertEquals(computed.getComputedSubImages(),
+                    reused.getComputedSubImages() + reused.getReusedSubImages());
+            if (resolution >= 32) {
+                Assertions.assertTrue(reused.getReusedSubImages() > reused.getComputedSubImages());
+            }
+        }
+    }
+
+    @Test
+    public void test_resolution_must_fit() {
+        Assertions.assertThrows(OutOfBoundariesException.class, () -> new FrameBrightness(WIDTH, HEIGHT, 3));
+        Assertions.assertThrows(OutOfBoundariesException.class,
+                () -> new FrameBrightness(WIDTH, HEIGHT, 1024));
+    }
+}
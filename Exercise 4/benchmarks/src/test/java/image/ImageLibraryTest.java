@@ -0,0 +1,106 @@
+package image;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import javax.imageio.ImageIO;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+public class ImageLibraryTest {
+    private static final int WIDTH = 301;
+    private static final int HEIGHT = 203;
+    private static final int SESSIONS = 32;
+
+    @TempDir
+    Path directory;
+
+    private String writeImage(String name, long seed) throws IOException {
+        File file = this.directory.resolve(name).toFile();
+        ImageIO.write(TestAnimations.gradient(WIDTH, HEIGHT, seed), "png", file);
+        return file.getPath();
+    }
+
+    @Test
+    public void test_concurrent_loads_decode_once() throws Exception {
+        ImageLibrary library = new ImageLibrary(1L << 24);
+        String first = writeImage("first.png", 1);
+        String second = writeImage("second.png", 2);
+        ExecutorService executor = Executors.newFixedThreadPool(SESSIONS);
+        try {
+            // all the sessions ask at once, so that most of them ask while the first load is running
+            CountDownLatch start = new CountDownLatch(1);
+            List<Future<LoadedImage>> loads = new ArrayList<>();
+            for (int i = 0; i < SESSIONS; i++) {
+                String imagePath = i % 2 == 0 ? first : second;
+                loads.add(executor.submit(() -> {
+                    start.await();
+                    return library.load(imagePath);
+                }));
+            }
+            start.countDown();
+            // every load of an image creates a loaded image of its own, so sharing one means one decode
+            for (int i = 2; i < SESSIONS; i++) {
+                Assertions.assertSame(loads.get(i % 2).get(), loads.get(i).get());
+            }
+            Assertions.assertNotSame(loads.get(0).get(), loads.get(1).get());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    public void test_shared_image_same_as_own() throws Exception {
+        ImageLibrary library = new ImageLibrary(1L << 24);
+        String imagePath = writeImage("image.png", 3);
+        ImageProcessor own = new ImageProcessor(imagePath);
+        ImageProcessor shared = new ImageProcessor(library, imagePath);
+        ImageProcessor sharedAgain = new ImageProcessor(library, imagePath);
+        for (int resolution = 2; resolution <= 256; resolution *= 2) {
+            own.setResolution(resolution);
+            shared.setResolution(resolution);
+            sharedAgain.setResolution(resolution);
+            BrightnessGrid expected = own.createSubImages();
+            for (BrightnessGrid actual : new BrightnessGrid[]{shared.createSubImages(),
+                    sharedAgain.createSubImages()}) {
+                for (int i = 0; i < expected.getRows(); i++) {
+                    for (int j = 0; j < expected.getCols(); j++) {
+                        Assertions.assertEquals(expected.get(i, j), actual.get(i, j));
+                    }
+                }
+            }
+        }
+    }
+
+    @Test
+    public void test_least_recently_used_forgotten() throws IOException {
+        // room for a single image, so loading another one forgets it
+        ImageLibrary library = new ImageLibrary((long) WIDTH * HEIGHT);
+        String first = writeImage("first.png", 1);
+        String second = writeImage("second.png", 2);
+        LoadedImage firstImage = library.load(first);
+        Assertions.assertSame(firstImage, library.load(first));
+        LoadedImage secondImage = library.load(second);
+        Assertions.assertNotSame(firstImage, library.load(first));
+        Assertions.assertNotSame(secondImage, library.load(second));
+    }
+
+    @Test
+    public void test_changed_file_loaded_again() throws IOException {
+        ImageLibrary library = new ImageLibrary(1L << 24);
+        String imagePath = writeImage("image.png", 1);
+        LoadedImage before = library.load(imagePath);
+        writeImage("image.png", 2);
+        File file = new File(imagePath);
+        Assertions.assertTrue(file.setLastModified(file.lastModified() + 1000));
+        Assertions.assertNotSame(before, library.load(imagePath));
+    }
+}
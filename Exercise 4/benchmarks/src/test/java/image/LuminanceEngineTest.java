@@ -0,0 +1,77 @@
+package image;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Assumptions;
+import org.junit.jupiter.api.Test;
+
+import java.util.Random;
+
+public class LuminanceEngineTest {
+    private static final double EPSILON = 1e-12;
+    private static final String VECTOR_ENGINE = "image.VectorLuminanceEngine";
+    // set by the vector profile, which compiles the vector engine in and adds the module it needs
+    private static final boolean IS_VECTOR_ENGINE_COMPILED = Boolean.getBoolean("vectorEngineCompiled");
+
+    private Image randomImage(int width, int height, long seed) {
+        Random random = new Random(seed);
+        int[] pixels = new int[width * height];
+        for (int i = 0; i < pixels.length; i++) {
+            pixels[i] = random.nextInt();
+        }
+        return new Image(pixels, width, height);
+    }
+
+    private BrightnessGrid brightnessGrid(Image image, LuminanceEngine engine, int resolution) {
+        PaddedImage paddedImage = new PaddedImage(image, new LuminanceTable(image, engine, null));
+        int size = paddedImage.getWidth() / resolution;
+        int rows = paddedImage.getHeight() / size;
+        double[] brightnessValues = new double[rows * resolution];
+        for (int i = 0; i < rows; i++) {
+            for (int j = 0; j < resolution; j++) {
+                brightnessValues[i * resolution + j] = paddedImage.brightness(i * size, j * size, size);
+            }
+        }
+        return new BrightnessGrid(rows, resolution, brightnessValues);
+    }
+
+    @Test
+    public void test_fastest_is_vector_engine() {
+        // otherwise the comparisons below would compare the scalar engine with itself
+        Assumptions.assumeTrue(IS_VECTOR_ENGINE_COMPILED);
+        Assertions.assertEquals(VECTOR_ENGINE, LuminanceEngine.FASTEST.getClass().getName());
+        Assertions.assertNotSame(LuminanceEngine.SCALAR, LuminanceEngine.FASTEST);
+    }
+
+    @Test
+    public void test_rows_same_as_scalar() {
+        // lengths around the register widths, so both the vector loop and the tail are exercised
+        for (int width = 1; width <= 67; width++) {
+            Image image = randomImage(width, 3, width);
+            int[] scalar = new int[width];
+            int[] fastest = new int[width];
+            for (int row = 0; row < image.getHeight(); row++) {
+                LuminanceEngine.SCALAR.luminanceRow(image.getPixels(), row * width, scalar, width);
+                LuminanceEngine.FASTEST.luminanceRow(image.getPixels(), row * width, fastest, width);
+                Assertions.assertArrayEquals(scalar, fastest);
+            }
+        }
+    }
+
+    @Test
+    public void test_brightness_grid_same_as_scalar() {
+        int[][] sizes = {{640, 480}, {333, 517}, {1024, 64}};
+        for (int[] size : sizes) {
+            Image image = randomImage(size[0], size[1], size[0] * 31L + size[1]);
+            for (int resolution = 1; resolution <= 512; resolution *= 2) {
+                BrightnessGrid scalar = brightnessGrid(image, LuminanceEngine.SCALAR, resolution);
+                BrightnessGrid fastest = brightnessGrid(image, LuminanceEngine.FASTEST, resolution);
+                Assertions.assertEquals(scalar.getRows(), fastest.getRows());
+                for (int i = 0; i < scalar.getRows(); i++) {
+                    for (int j = 0; j < scalar.getCols(); j++) {
+                        Assertions.assertEquals(scalar.get(i, j), fastest.get(i, j), EPSILON);
+                    }
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,118 @@
+package image;
+
+import javax.imageio.IIOImage;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageTypeSpecifier;
+import javax.imageio.ImageWriteParam;
+import javax.imageio.ImageWriter;
+import javax.imageio.metadata.IIOMetadata;
+import javax.imageio.metadata.IIOMetadataNode;
+import javax.imageio.stream.ImageOutputStream;
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Makes small animations for the tests.
+ */
+public final class TestAnimations {
+    public static final String NO_DISPOSAL = "doNotDispose";
+    public static final String RESTORE_TO_BACKGROUND = "restoreToBackgroundColor";
+    public static final String RESTORE_TO_PREVIOUS = "restoreToPrevious";
+    private static final String GIF = "gif";
+    private static final int TRANSPARENT = 0;
+
+    /**
+     * One frame of a GIF: a picture drawn at a position of the canvas, and how it is disposed of.
+     */
+    public static final class GifFrame {
+        private final BufferedImage image;
+        private final int left;
+        private final int top;
+        private final String disposal;
+        private final int delayCentis;
+
+        public GifFrame(BufferedImage image, int left, int top, String disposal, int delayCentis) {
+            this.image = image;
+            this.left = left;
+            this.top = top;
+            this.disposal = disposal;
+            this.delayCentis = delayCentis;
+        }
+    }
+
+    private TestAnimations() {}
+
+    public static void writeGif(File file, List<GifFrame> frames) throws IOException {
+        ImageWriter writer = ImageIO.getImageWritersByFormatName(GIF).next();
+        try (ImageOutputStream output = ImageIO.createImageOutputStream(file)) {
+            writer.setOutput(output);
+            writer.prepareWriteSequence(null);
+            for (GifFrame frame : frames) {
+                ImageWriteParam param = writer.getDefaultWriteParam();
+                IIOMetadata metadata = writer.getDefaultImageMetadata(new ImageTypeSpecifier(frame.image),
+                        param);
+                String format = metadata.getNativeMetadataFormatName();
+                IIOMetadataNode root = (IIOMetadataNode) metadata.getAsTree(format);
+                IIOMetadataNode control = child(root, "GraphicControlExtension");
+                control.setAttribute("disposalMethod", frame.disposal);
+                control.setAttribute("delayTime", Integer.toString(frame.delayCentis));
+                IIOMetadataNode descriptor = child(root, "ImageDescriptor");
+                descriptor.setAttribute("imageLeftPosition", Integer.toString(frame.left));
+                descriptor.setAttribute("imageTopPosition", Integer.toString(frame.top));
+                metadata.setFromTree(format, root);
+                writer.writeToSequence(new IIOImage(frame.image, null, metadata), param);
+            }
+            writer.endWriteSequence();
+        } finally {
+            writer.dispose();
+        }
+    }
+
+    private static IIOMetadataNode child(IIOMetadataNode root, String name) {
+        for (int i = 0; i < root.getLength(); i++) {
+            if (root.item(i).getNodeName().equals(name)) {
+                return (IIOMetadataNode) root.item(i);
+            }
+        }
+        IIOMetadataNode node = new IIOMetadataNode(name);
+        root.appendChild(node);
+        return node;
+    }
+
+    public static BufferedImage solid(int width, int height, int rgb) {
+        BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB);
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                image.setRGB(x, y, rgb);
+            }
+        }
+        return image;
+    }
+
+    public static BufferedImage checkered(int width, int height, int rgb) {
+        // every other pixel is transparent
+        BufferedImage image = solid(width, height, rgb);
+        for (int y = 0; y < height; y++) {
+            for (int x = (y + 1) % 2; x < width; x += 2) {
+                image.setRGB(x, y, TRANSPARENT);
+            }
+        }
+        return image;
+    }
+
+    public static BufferedImage gradient(int width, int height, long seed) {
+        // a horizontal gradient with a little noise, so that the art uses many characters
+        Random random = new Random(seed);
+        BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                int gray = Math.min(255, x * 255 / width + random.nextInt(32));
+                image.setRGB(x, y, (gray << 16) | ((255 - gray) << 8) | (gray / 2));
+            }
+        }
+        return image;
+    }
+}
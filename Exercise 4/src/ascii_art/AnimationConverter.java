@@ -0,0 +1,393 @@
+package ascii_art;
+
+import ascii_output.AnsiConsoleOutput;
+import ascii_output.AsciiFrameWriter;
+import ascii_output.HtmlFrameWriter;
+import ascii_output.TextFrameWriter;
+import exceptions.IncorrectFormatException;
+import image.AnimationFrame;
+import image.AnimationReader;
+import image.BrightnessGrid;
+import image.FrameBrightness;
+import image_char_matching.SubImgCharMatcher;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.Optional;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Converts an animation (an animated GIF, or a directory of numbered frames, see AnimationReader) to
+ * ASCII art frame by frame, in three stages that run at once on threads of their own: decoding the
+ * frames, computing the brightness of their sub-images, and matching and writing them out. The stages
+ * hand the frames over through bounded queues, so a slow stage holds the ones before it back instead of
+ * letting decoded frames pile up in memory.
+ * Consecutive frames are mostly alike, so only the sub-images under the part of a frame that changed are
+ * computed again (see FrameBrightness), and every sub-image whose brightness did not change keeps the
+ * character it had in the frame before, without matching it again; rows that did not change at all are
+ * the very same arrays in both frames.
+ * A failure in any stage cancels the others and fails the whole conversion; a conversion never ends
+ * early without failing.
+ * Every frame is the same art AsciiArtAlgorithm makes of the frame's picture at the same resolution.
+ * Usage: AnimationConverter [--chars CHARS] [--res RESOLUTION] [--output html|text|ansi] [--delay MILLIS]
+ * [--reuse on|off] ANIMATION [OUTPUT_FILE]
+ * The ansi output plays the animation in the terminal (see AnsiConsoleOutput) instead of writing a file.
+ */
+public class AnimationConverter {
+    private static final char[] DEFAULT_CHARACTER_SET = {'0', '1', '2', '3', '4', '5', '6', '7', '8', '9'};
+    private static final int DEFAULT_RESOLUTION = 128;
+    private static final int DEFAULT_QUEUE_CAPACITY = 4;
+    private static final int STAGE_THREADS = 2;
+    private static final String OUTPUT_FONT = "Courier New";
+    private static final String CHARS_OPTION = "--chars";
+    private static final String RES_OPTION = "--res";
+    private static final String OUTPUT_OPTION = "--output";
+    private static final String DELAY_OPTION = "--delay";
+    private static final String REUSE_OPTION = "--reuse";
+    private static final String OPTION_PREFIX = "--";
+    private static final String HTML = "html";
+    private static final String TEXT = "text";
+    private static final String ANSI = "ansi";
+    private static final String ON = "on";
+    private static final String OFF = "off";
+    private static final String FORMAT_ERR = "convert animation";
+    private static final String USAGE = "Usage: AnimationConverter [--chars CHARS] [--res RESOLUTION] " +
+            "[--output html|text|ansi] [--delay MILLIS] [--reuse on|off] ANIMATION [OUTPUT_FILE]";
+    private static final String INTERRUPTED_ERROR = "Animation conversion was interrupted.";
+    private static final String QUEUE_CAPACITY_ERROR = "Queue capacity must be at least 1, got %d.";
+    private static final String STATISTICS = "Converted %d frames in %.2f s (%.2f frames/sec): " +
+            "%.1f%% of the sub-images kept their brightness and %.1f%% kept their character.";
+    private static final double NANOS_IN_SECOND = 1e9;
+    private static final double PERCENT = 100;
+
+    private final SubImgCharMatcher subImgCharMatcher;
+    private final int resolution;
+    private int queueCapacity = DEFAULT_QUEUE_CAPACITY;
+    private boolean isReuseEnabled = true;
+    private int sequenceDelayMillis = AnimationReader.DEFAULT_DELAY_MILLIS;
+    private int frames;
+    private long subImages;
+    private long reusedBrightness;
+    private long reusedChars;
+    private long conversionNanos;
+
+    /**
+     * A frame on its way from the brightness stage to the matching stage.
+     */
+    private static final class BrightnessFrame {
+        private final BrightnessGrid grid;
+        private final int delayMillis;
+
+        private BrightnessFrame(BrightnessGrid grid, int delayMillis) {
+            this.grid = grid;
+            this.delayMillis = delayMillis;
+        }
+    }
+
+    /**
+     * The work of a stage that runs on a thread of its own.
+     */
+    private interface Stage {
+        void run() throws Exception;
+    }
+
+    /**
+     * Initializes the AnimationConverter.
+     *
+     * @param subImgCharMatcher The SubImgCharMatcher used to match image brightness to characters.
+     * @param resolution        The number of characters in every row of the art.
+     */
+    public AnimationConverter(SubImgCharMatcher subImgCharMatcher, int resolution) {
+        this.subImgCharMatcher = subImgCharMatcher;
+        this.resolution = resolution;
+    }
+
+    /**
+     * Sets how many frames every stage may get ahead of the next one.
+     *
+     * @param capacity The capacity of the queues between the stages, at least 1.
+     * @throws IllegalArgumentException If the capacity is less than 1.
+     */
+    public void setQueueCapacity(int capacity) {
+        if (capacity < 1) {
+            throw new IllegalArgumentException(String.format(QUEUE_CAPACITY_ERROR, capacity));
+        }
+        this.queueCapacity = capacity;
+    }
+
+    /**
+     * Enables or disables reusing the brightness and the characters of the sub-images a frame did not
+     * change. When disabled, every frame is converted from scratch, as if it were a still image of its
+     * own; the art is the same either way.
+     *
+     * @param enabled Whether to reuse the previous frame's work.
+     */
+    public void setReuseEnabled(boolean enabled) {
+        this.isReuseEnabled = enabled;
+    }
+
+    /**
+     * Sets how long every frame of a directory of frames is shown (see AnimationReader).
+     *
+     * @param delayMillis The delay between frames, in milliseconds.
+     */
+    public void setSequenceDelayMillis(int delayMillis) {
+        this.sequenceDelayMillis = delayMillis;
+    }
+
+    /**
+     * Converts an animation, writing the art out frame by frame. The writer is not closed.
+     *
+     * @param animationPath The path of the animation file, or of the directory of its frames.
+     * @param writer        The writer to write the art to.
+     * @throws IOException If the animation cannot be read, the resolution does not fit it, the character
+     *                     set is empty, writing fails or the conversion is interrupted.
+     */
+    public void convert(String animationPath, AsciiFrameWriter writer) throws IOException {
+        long start = System.nanoTime();
+        try (AnimationReader reader = new AnimationReader(animationPath)) {
+            reader.setSequenceDelayMillis(this.sequenceDelayMillis);
+            FrameBrightness frameBrightness = new FrameBrightness(reader.getWidth(), reader.getHeight(),
+                    this.resolution);
+            frameBrightness.setVectorLuminanceEnabled(true);
+            frameBrightness.setReuseEnabled(this.isReuseEnabled);
+            this.frames = 0;
+            this.subImages = 0;
+            this.reusedChars = 0;
+            writer.writeHeader(frameBrightness.getRows(), frameBrightness.getCols());
+            BlockingQueue<Optional<AnimationFrame>> decoded = new ArrayBlockingQueue<>(this.queueCapacity);
+            BlockingQueue<Optional<BrightnessFrame>> measured = new ArrayBlockingQueue<>(this.queueCapacity);
+            AtomicReference<Throwable> failure = new AtomicReference<>();
+            ExecutorService stages = Executors.newFixedThreadPool(STAGE_THREADS,
+                    AnimationConverter::newStageThread);
+            try {
+                stages.execute(() -> runStage(() -> decode(reader, decoded), decoded, failure));
+                stages.execute(() -> runStage(() -> measure(frameBrightness, decoded, measured), measured,
+                        failure));
+                this.match(measured, writer);
+            } catch (InterruptedException interruptedException) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException(INTERRUPTED_ERROR);
+            } finally {
+                // the stages give up as soon as they are interrupted, without handing anything over, so
+                // none of them is left blocked on a queue that nothing takes from anymore. they are joined
+                // however long the frame being decoded takes, so the reader is only closed, and the
+                // brightness only read, once they are done with them.
+                stages.shutdownNow();
+                awaitStages(stages);
+            }
+            rethrow(failure.get());
+            this.reusedBrightness = frameBrightness.getReusedSubImages();
+        }
+        this.conversionNanos = System.nanoTime() - start;
+    }
+
+    /**
+     * Describes the last conversion: how many frames it had, how fast they were converted and how much
+     * of the work was reused from the frames before.
+     *
+     * @return A String describing the last conversion.
+     */
+    public String getStatistics() {
+        double seconds = this.conversionNanos / NANOS_IN_SECOND;
+        long total = Math.max(this.subImages, 1);
+        return String.format(STATISTICS, this.frames, seconds, this.frames / seconds,
+                this.reusedBrightness * PERCENT / total, this.reusedChars * PERCENT / total);
+    }
+
+    private static <T> void runStage(Stage stage, BlockingQueue<Optional<T>> output,
+                                     AtomicReference<Throwable> failure) {
+        try {
+            stage.run();
+        } catch (InterruptedException interruptedException) {
+            // the conversion was cancelled, and nothing takes from the queue anymore
+            return;
+        } catch (Throwable throwable) {
+            failure.compareAndSet(null, throwable);
+        }
+        try {
+            // the empty item ends the animation, whether it was handed over to its end or not
+            output.put(Optional.empty());
+        } catch (InterruptedException interruptedException) {
+            // cancelled while the next stage was behind, which no longer matters
+        }
+    }
+
+    private static void decode(AnimationReader reader, BlockingQueue<Optional<AnimationFrame>> decoded)
+            throws IOException, InterruptedException {
+        for (AnimationFrame frame = reader.readFrame(); frame != null; frame = reader.readFrame()) {
+            decoded.put(Optional.of(frame));
+        }
+    }
+
+    private static void measure(FrameBrightness frameBrightness,
+                                BlockingQueue<Optional<AnimationFrame>> decoded,
+                                BlockingQueue<Optional<BrightnessFrame>> measured)
+            throws InterruptedException {
+        for (Optional<AnimationFrame> frame = decoded.take(); frame.isPresent(); frame = decoded.take()) {
+            measured.put(Optional.of(new BrightnessFrame(frameBrightness.next(frame.get()),
+                    frame.get().getDelayMillis())));
+        }
+    }
+
+    private static void awaitStages(ExecutorService stages) {
+        boolean isInterrupted = false;
+        while (!stages.isTerminated()) {
+            try {
+                stages.awaitTermination(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+            } catch (InterruptedException interruptedException) {
+                // the stages were already interrupted, so they stop soon anyway
+                isInterrupted = true;
+            }
+        }
+        if (isInterrupted) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static void rethrow(Throwable failure) throws IOException {
+        if (failure instanceof IOException) {
+            throw (IOException) failure;
+        }
+        if (failure instanceof RuntimeException) {
+            throw (RuntimeException) failure;
+        }
+        if (failure instanceof Error) {
+            throw (Error) failure;
+        }
+        if (failure != null) {
+            throw new IOException(failure);
+        }
+    }
+
+    private static Thread newStageThread(Runnable runnable) {
+        // a stage that does not stop in time must not keep the process alive
+        Thread thread = new Thread(runnable);
+        thread.setDaemon(true);
+        return thread;
+    }
+
+    private void match(BlockingQueue<Optional<BrightnessFrame>> measured, AsciiFrameWriter writer)
+            throws IOException, InterruptedException {
+        BrightnessGrid previousGrid = null;
+        char[][] previousArt = null;
+        for (Optional<BrightnessFrame> frame = measured.take(); frame.isPresent(); frame = measured.take()) {
+            BrightnessGrid grid = frame.get().grid;
+            char[][] asciiArt = new char[grid.getRows()][];
+            for (int i = 0; i < grid.getRows(); i++) {
+                char[] previousRow = this.isReuseEnabled && previousArt != null ? previousArt[i] : null;
+                // the row is only copied once one of its characters turns out to be different
+                char[] row = null;
+                for (int j = 0; j < grid.getCols(); j++) {
+                    double brightness = grid.get(i, j);
+                    if (previousRow != null && brightness == previousGrid.get(i, j)) {
+                        this.reusedChars++;
+                        continue;
+                    }
+                    char c = this.subImgCharMatcher.getCharByImageBrightness(brightness);
+                    if (row == null && previousRow != null && c == previousRow[j]) {
+                        continue;
+                    }
+                    if (row == null) {
+                        row = previousRow == null ? new char[grid.getCols()] : previousRow.clone();
+                    }
+                    row[j] = c;
+                }
+                asciiArt[i] = row == null ? previousRow : row;
+            }
+            writer.writeFrame(asciiArt, frame.get().delayMillis);
+            this.frames++;
+            this.subImages += (long) grid.getRows() * grid.getCols();
+            previousGrid = grid;
+            previousArt = asciiArt;
+        }
+    }
+
+    /**
+     * The entry point of the animation conversion: converts one animation into one file, or plays it in
+     * the terminal, and prints how long it took.
+     *
+     * @param args The options followed by the animation and the output file, if there is one.
+     */
+    public static void main(String[] args) {
+        try {
+            char[] charset = DEFAULT_CHARACTER_SET;
+            int resolution = DEFAULT_RESOLUTION;
+            String outputFormat = HTML;
+            boolean isReuseEnabled = true;
+            int delayMillis = AnimationReader.DEFAULT_DELAY_MILLIS;
+            int i = 0;
+            try {
+                for (; i < args.length && args[i].startsWith(OPTION_PREFIX); i += 2) {
+                    if (i + 1 == args.length) {
+                        throw new IncorrectFormatException(FORMAT_ERR);
+                    }
+                    String value = args[i + 1];
+                    switch (args[i]) {
+                        case CHARS_OPTION:
+                            charset = CharsetParser.parse(value, FORMAT_ERR);
+                            break;
+                        case RES_OPTION:
+                            resolution = Integer.parseInt(value);
+                            break;
+                        case OUTPUT_OPTION:
+                            if (!value.equals(HTML) && !value.equals(TEXT) && !value.equals(ANSI)) {
+                                throw new IncorrectFormatException(FORMAT_ERR);
+                            }
+                            outputFormat = value;
+                            break;
+                        case DELAY_OPTION:
+                            delayMillis = Integer.parseInt(value);
+                            break;
+                        case REUSE_OPTION:
+                            if (!value.equals(ON) && !value.equals(OFF)) {
+                                throw new IncorrectFormatException(FORMAT_ERR);
+                            }
+                            isReuseEnabled = value.equals(ON);
+                            break;
+                        default:
+                            throw new IncorrectFormatException(FORMAT_ERR);
+                    }
+                }
+            } catch (NumberFormatException numberFormatException) {
+                throw new IncorrectFormatException(FORMAT_ERR);
+            }
+            if (args.length - i != (outputFormat.equals(ANSI) ? 1 : 2)) {
+                throw new IncorrectFormatException(FORMAT_ERR);
+            }
+            AnimationConverter converter = new AnimationConverter(new SubImgCharMatcher(charset),
+                    resolution);
+            converter.setReuseEnabled(isReuseEnabled);
+            converter.setSequenceDelayMillis(delayMillis);
+            if (outputFormat.equals(ANSI)) {
+                try (AsciiFrameWriter writer = new AnsiConsoleOutput()) {
+                    converter.convert(args[i], writer);
+                }
+                System.out.println(converter.getStatistics());
+                return;
+            }
+            File output = new File(args[i + 1]);
+            try (FileOutputStream outputStream = new FileOutputStream(output);
+                 AsciiFrameWriter writer = outputFormat.equals(HTML) ?
+                         new HtmlFrameWriter(outputStream, OUTPUT_FONT) :
+                         new TextFrameWriter(outputStream)) {
+                converter.convert(args[i], writer);
+            } catch (IOException | RuntimeException exception) {
+                // the frames are written as they are made, so a failure leaves a partial file behind
+                output.delete();
+                throw exception;
+            }
+            System.out.println(converter.getStatistics());
+        } catch (IOException ioException) {
+            System.out.println(ioException.getMessage());
+            System.out.println(USAGE);
+        }
+    }
+}
@@ -1,20 +1,45 @@
 package ascii_art;
 
 import exceptions.EmptyCharsetException;
+import image.BrightnessGrid;
 import image.ImageProcessor;
 import image_char_matching.SubImgCharMatcher;
 
-import java.util.LinkedList;
+import java.util.Arrays;
 
 /**
  * Represents an algorithm to convert an image into ASCII art.
+ * After a small change to the character set, only the sub-images whose brightness lies in the
+ * interval affected by the change are matched again, and the rest of the last result is kept.
+ * The sub-images can also be matched by shape instead, to the character whose glyph is closest to the
+ * sub-image's light and dark areas, which keeps edges and lines. Sub-images with no clear shape are
+ * still matched by brightness.
+ * When matching by brightness, the sub-images can be dithered: the error between every sub-image's
+ * brightness and the level of its character is diffused to the sub-images after it (Floyd-Steinberg),
+ * so gradients come out as a mix of neighbouring characters rather than as bands of one.
  */
 public class AsciiArtAlgorithm {
+    private static final long DEFAULT_CACHE_BUDGET_BYTES = 32L * 1024 * 1024;
+    private static final String CACHE_BUDGET_ERROR = "Cache budget must not be negative, got %d.";
+    private static final double RIGHT_ERROR_WEIGHT = 7.0 / 16;
+    private static final double BELOW_BEHIND_ERROR_WEIGHT = 3.0 / 16;
+    private static final double BELOW_ERROR_WEIGHT = 5.0 / 16;
+    private static final double BELOW_AHEAD_ERROR_WEIGHT = 1.0 / 16;
     private final SubImgCharMatcher subImgCharMatcher;
     private final ImageProcessor imageProcessor;
     private int lastResolution;
-    private LinkedList<Double> currentSubImages;
+    private BrightnessGrid currentSubImages;
     private int curImageCounter = 0;
+    private final AsciiArtCache resultsCache = new AsciiArtCache(DEFAULT_CACHE_BUDGET_BYTES);
+    // the result for the current sub-images, and the charset version it was matched with
+    private char[][] lastAsciiArt;
+    private int lastCharsetVersion;
+    // the sub-images sorted by brightness, built the first time only some of them are matched again
+    private long[] subImagesByBrightness;
+    private boolean isShapeMatching = false;
+    private boolean isDithering = false;
+    // the shapes of the current sub-images, created the first time they are matched by shape
+    private long[] currentShapes;
 
     /**
      * Initializes the AsciiArtAlgorithm with the provided SubImgCharMatcher and ImageProcessor.
@@ -30,16 +55,150 @@ public class AsciiArtAlgorithm {
     }
 
     /**
-     * Runs the ASCII art conversion algorithm on the provided image.
+     * Runs the ASCII art conversion algorithm on the provided image. Results are cached by image,
+     * resolution and character set, so running again with none of them changed returns the last
+     * result without matching again.
      *
-     * @return A 2D char array representing the ASCII art version of the image.
+     * @return A 2D char array representing the ASCII art version of the image. The array may be shared
+     * with later runs, so it must not be modified.
      * @throws EmptyCharsetException If the character set used for matching is empty.
      */
     public char[][] run() throws EmptyCharsetException {
-        int cols = this.imageProcessor.getResolution();
-        int rows = this.imageProcessor.getColSize(); // col size == amount of rows
+        AsciiArtCache.Key key = new AsciiArtCache.Key(this.imageProcessor.getLastImageCounter(),
+                this.imageProcessor.getResolution(), this.subImgCharMatcher.getCharsetFingerprint(),
+                this.isShapeMatching, this.isDithering && !this.isShapeMatching);
+        int charsetVersion = this.subImgCharMatcher.getCharsetVersion();
+        char[][] asciiArt = this.resultsCache.get(key);
+        // the character of a sub-image matched by shape or dithered does not depend on its brightness
+        // alone, so these results are never patched after a charset change
+        if (this.isShapeMatching || this.isDithering) {
+            if (asciiArt == null) {
+                this.checkSubImages();
+                asciiArt = this.isShapeMatching ? this.createShapeAsciiArr() : this.createDitheredAsciiArr();
+                this.resultsCache.put(key, asciiArt);
+            }
+            return asciiArt;
+        }
+        if (asciiArt != null) {
+            if (this.imageProcessor.getResolution() == this.lastResolution &&
+                    this.imageProcessor.getLastImageCounter() == this.curImageCounter) {
+                this.lastAsciiArt = asciiArt;
+                this.lastCharsetVersion = charsetVersion;
+            }
+            return asciiArt;
+        }
+        this.checkSubImages();
+        asciiArt = this.lastAsciiArt == null ? null : this.updateAsciiArr();
+        if (asciiArt == null) {
+            asciiArt = this.createAsciiArr();
+        }
+        this.lastAsciiArt = asciiArt;
+        this.lastCharsetVersion = charsetVersion;
+        this.resultsCache.put(key, asciiArt);
+        return asciiArt;
+    }
+
+    /**
+     * Switches between matching the sub-images by brightness and by shape. Matching by shape compares
+     * every sub-image with the glyph of every character in the set, so it is slower, and a change to the
+     * set matches all the sub-images again.
+     *
+     * @param enabled Whether to match the sub-images by shape.
+     */
+    public void setShapeMatchingEnabled(boolean enabled) {
+        this.isShapeMatching = enabled;
+    }
+
+    /**
+     * Returns whether the sub-images are matched by shape.
+     *
+     * @return True if the sub-images are matched by shape, false if by brightness.
+     */
+    public boolean isShapeMatchingEnabled() {
+        return this.isShapeMatching;
+    }
+
+    /**
+     * Enables or disables dithering the sub-images when they are matched by brightness. Dithering reads
+     * the sub-images in a single pass, keeping the errors of two rows of sub-images only.
+     *
+     * @param enabled Whether to diffuse the brightness errors to the neighbouring sub-images.
+     */
+    public void setDitheringEnabled(boolean enabled) {
+        this.isDithering = enabled;
+    }
+
+    /**
+     * Returns whether the sub-images are dithered when they are matched by brightness.
+     *
+     * @return True if dithering is enabled, false otherwise.
+     */
+    public boolean isDitheringEnabled() {
+        return this.isDithering;
+    }
+
+    /**
+     * Returns the average color of every sub-image of the current image at the current resolution, laid
+     * out like the result of run, when the image processor has colors enabled. The colors come from the
+     * same pass over the image as the brightness the characters are matched by, so asking for them after
+     * run costs nothing more.
+     *
+     * @return The packed RGB colors of the sub-images, row by row, or null if colors are disabled or the
+     * image has none.
+     */
+    public int[][] getColors() {
+        if (!this.imageProcessor.isColorEnabled()) {
+            return null;
+        }
         this.checkSubImages();
-        return this.createAsciiArr(rows, cols);
+        if (!this.currentSubImages.hasColors()) {
+            // the sub-images were created before colors were enabled, and their brightness is the same
+            this.currentSubImages = this.imageProcessor.createSubImages();
+            if (!this.currentSubImages.hasColors()) {
+                return null;
+            }
+        }
+        int rows = this.currentSubImages.getRows();
+        int cols = this.currentSubImages.getCols();
+        int[][] colors = new int[rows][cols];
+        for (int i = 0; i < rows; i++) {
+            for (int j = 0; j < cols; j++) {
+                colors[i][j] = this.currentSubImages.getColor(i, j);
+            }
+        }
+        return colors;
+    }
+
+    /**
+     * Sets the memory budget of the results cache, dropping the least recently used results if they no
+     * longer fit in it.
+     *
+     * @param budgetBytes The estimated memory the cached results may take, 0 to cache nothing.
+     * @throws IllegalArgumentException If the budget is negative.
+     */
+    public void setCacheBudget(long budgetBytes) {
+        if (budgetBytes < 0) {
+            throw new IllegalArgumentException(String.format(CACHE_BUDGET_ERROR, budgetBytes));
+        }
+        this.resultsCache.setBudget(budgetBytes);
+    }
+
+    /**
+     * Returns how many runs were answered from the results cache.
+     *
+     * @return The number of cache hits.
+     */
+    public long getCacheHits() {
+        return this.resultsCache.getHits();
+    }
+
+    /**
+     * Returns how many runs had to match the sub-images.
+     *
+     * @return The number of cache misses.
+     */
+    public long getCacheMisses() {
+        return this.resultsCache.getMisses();
     }
 
     private void checkSubImages() {
@@ -50,28 +209,142 @@ public class AsciiArtAlgorithm {
             this.lastResolution = this.imageProcessor.getResolution();
             this.curImageCounter = this.imageProcessor.getLastImageCounter();
             this.currentSubImages = this.imageProcessor.createSubImages();
+            this.lastAsciiArt = null;
+            this.subImagesByBrightness = null;
+            this.currentShapes = null;
         }
     }
 
-    private char[][] createAsciiArr(int rows, int cols)
-            throws EmptyCharsetException {
+    private char[][] createShapeAsciiArr() throws EmptyCharsetException {
+        if (this.currentShapes == null) {
+            this.currentShapes = this.imageProcessor.createSubImageShapes(SubImgCharMatcher.SHAPE_RESOLUTION);
+        }
+        int rows = this.currentSubImages.getRows();
+        int cols = this.currentSubImages.getCols();
+        int words = this.currentShapes.length / (rows * cols);
+        char[][] asciiArt = new char[rows][cols];
+        for (int i = 0; i < rows; i++) {
+            for (int j = 0; j < cols; j++) {
+                int offset = (i * cols + j) * words;
+                asciiArt[i][j] = isEmptyShape(this.currentShapes, offset, words) ?
+                        this.subImgCharMatcher.getCharByImageBrightness(this.currentSubImages.get(i, j)) :
+                        this.subImgCharMatcher.getCharByShape(this.currentShapes, offset);
+            }
+        }
+        return asciiArt;
+    }
 
+    private static boolean isEmptyShape(long[] shapes, int offset, int words) {
+        for (int word = offset; word < offset + words; word++) {
+            if (shapes[word] != 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private char[][] createAsciiArr() throws EmptyCharsetException {
+        int rows = this.currentSubImages.getRows();
+        int cols = this.currentSubImages.getCols();
         char[][] asciiArt = new char[rows][cols];
-        int i = 0;
-        int j = 0;
-        for (Double brightness : currentSubImages) {
-            asciiArt[i][j] = this.subImgCharMatcher.getCharByImageBrightness(brightness);
-            j++;
-            if (j == cols) {
-                j = 0;
-                i++;
+        for (int i = 0; i < rows; i++) {
+            for (int j = 0; j < cols; j++) {
+                asciiArt[i][j] = this.subImgCharMatcher.getCharByImageBrightness(
+                        this.currentSubImages.get(i, j));
             }
         }
         return asciiArt;
     }
 
-}
+    private char[][] createDitheredAsciiArr() throws EmptyCharsetException {
+        int rows = this.currentSubImages.getRows();
+        int cols = this.currentSubImages.getCols();
+        char[][] asciiArt = new char[rows][cols];
+        // the errors carried into the current row and into the next one, with a slot on each side that
+        // takes the errors falling off the edges
+        double[] rowErrors = new double[cols + 2];
+        double[] nextRowErrors = new double[cols + 2];
+        for (int i = 0; i < rows; i++) {
+            // every other row is read right to left, so the errors do not all drift the same way
+            int step = i % 2 == 0 ? 1 : -1;
+            // the error carried to the next sub-image in the row, and the errors gathered so far for the
+            // sub-images below the current one and below the next one, are kept in locals and every slot
+            // of the next row is written once
+            double aheadError = 0;
+            double belowError = 0;
+            double belowAheadError = 0;
+            for (int k = 0, j = step > 0 ? 0 : cols - 1; k < cols; k++, j += step) {
+                double brightness = this.currentSubImages.get(i, j) + rowErrors[j + 1] + aheadError;
+                brightness = brightness < 0 ? 0 : brightness > 1 ? 1 : brightness;
+                char c = this.subImgCharMatcher.getCharByImageBrightness(brightness);
+                double error = brightness - this.subImgCharMatcher.getCharLevel(c);
+                aheadError = error * RIGHT_ERROR_WEIGHT;
+                nextRowErrors[j + 1 - step] = belowError + error * BELOW_BEHIND_ERROR_WEIGHT;
+                belowError = belowAheadError + error * BELOW_ERROR_WEIGHT;
+                belowAheadError = error * BELOW_AHEAD_ERROR_WEIGHT;
+                asciiArt[i][j] = c;
+            }
+            nextRowErrors[step > 0 ? cols : 1] = belowError;
+            double[] doneRowErrors = rowErrors;
+            rowErrors = nextRowErrors;
+            nextRowErrors = doneRowErrors;
+        }
+        return asciiArt;
+    }
 
+    private char[][] updateAsciiArr() throws EmptyCharsetException {
+        double[] changedInterval = this.subImgCharMatcher.getChangedInterval(this.lastCharsetVersion);
+        if (changedInterval == null) {
+            return null;
+        }
+        if (changedInterval[0] > changedInterval[1]) {
+            return this.lastAsciiArt;
+        }
+        if (this.subImagesByBrightness == null) {
+            this.sortSubImages();
+        }
+        // the last result may be cached, so it is copied before it is patched
+        char[][] asciiArt = new char[this.lastAsciiArt.length][];
+        for (int i = 0; i < asciiArt.length; i++) {
+            asciiArt[i] = this.lastAsciiArt[i].clone();
+        }
+        int cols = this.currentSubImages.getCols();
+        // the keys of all the sub-images in the interval are from the lower end's first key up to the
+        // first key after the upper end's
+        int from = lowerBound(this.subImagesByBrightness, sortKeyOf(Math.max(changedInterval[0], 0), 0));
+        int to = lowerBound(this.subImagesByBrightness,
+                sortKeyOf(Math.min(changedInterval[1], 1), 0) + (1L << Integer.SIZE));
+        for (int k = from; k < to; k++) {
+            int index = (int) this.subImagesByBrightness[k];
+            int i = index / cols;
+            int j = index % cols;
+            asciiArt[i][j] = this.subImgCharMatcher.getCharByImageBrightness(this.currentSubImages.get(i, j));
+        }
+        return asciiArt;
+    }
 
+    private void sortSubImages() {
+        int rows = this.currentSubImages.getRows();
+        int cols = this.currentSubImages.getCols();
+        this.subImagesByBrightness = new long[rows * cols];
+        for (int i = 0; i < rows; i++) {
+            for (int j = 0; j < cols; j++) {
+                this.subImagesByBrightness[i * cols + j] = sortKeyOf(this.currentSubImages.get(i, j), 0) |
+                        (i * cols + j);
+            }
+        }
+        Arrays.sort(this.subImagesByBrightness);
+    }
 
+    private static long sortKeyOf(double brightness, int index) {
+        // the bits of a non-negative float grow with it, so the keys sort by the brightness rounded to
+        // a float and then by the sub-image's index. rounding never reorders values, so the sub-images
+        // whose brightness is in an interval are all between the keys of its rounded ends.
+        return (long) Float.floatToIntBits((float) brightness) << Integer.SIZE | index;
+    }
 
+    private static int lowerBound(long[] keys, long key) {
+        int position = Arrays.binarySearch(keys, key);
+        return position >= 0 ? position : -position - 1;
+    }
+}
@@ -0,0 +1,158 @@
+package ascii_art;
+
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * A least-recently-used cache of finished ASCII art, keyed by the image, the resolution, the character
+ * set and the matching modes it was made with. The cache is bounded by an estimate of the memory its
+ * arrays take: whenever it goes over its budget, the least recently used results are dropped until it
+ * fits again.
+ */
+class AsciiArtCache {
+    // the estimated size of an array's header, and of a reference to it
+    private static final long ARRAY_OVERHEAD_BYTES = 16;
+    private static final long REFERENCE_BYTES = 8;
+
+    private final LinkedHashMap<Key, char[][]> results = new LinkedHashMap<>(16, 0.75f, true);
+    private long budgetBytes;
+    private long usedBytes = 0;
+    private long hits = 0;
+    private long misses = 0;
+
+    /**
+     * The parameters that fully determine a result.
+     */
+    static final class Key {
+        private final int imageCounter;
+        private final int resolution;
+        private final long[] charsetFingerprint;
+        private final boolean isShapeMatched;
+        private final boolean isDithered;
+
+        /**
+         * Constructs a key.
+         *
+         * @param imageCounter       The counter of the image in its ImageProcessor.
+         * @param resolution         The resolution of the result.
+         * @param charsetFingerprint The fingerprint of the character set, as given by the matcher.
+         * @param isShapeMatched     Whether the sub-images are matched by shape rather than brightness.
+         * @param isDithered         Whether the brightness errors are diffused to the neighbouring
+         *                           sub-images.
+         */
+        Key(int imageCounter, int resolution, long[] charsetFingerprint, boolean isShapeMatched,
+            boolean isDithered) {
+            this.imageCounter = imageCounter;
+            this.resolution = resolution;
+            this.charsetFingerprint = charsetFingerprint;
+            this.isShapeMatched = isShapeMatched;
+            this.isDithered = isDithered;
+        }
+
+        @Override
+        public boolean equals(Object other) {
+            if (!(other instanceof Key)) {
+                return false;
+            }
+            Key key = (Key) other;
+            return this.imageCounter == key.imageCounter && this.resolution == key.resolution &&
+                    Arrays.equals(this.charsetFingerprint, key.charsetFingerprint) &&
+                    this.isShapeMatched == key.isShapeMatched && this.isDithered == key.isDithered;
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * (31 * (31 * this.imageCounter + this.resolution) +
+                    Arrays.hashCode(this.charsetFingerprint)) + 2 * Boolean.hashCode(this.isShapeMatched) +
+                    Boolean.hashCode(this.isDithered);
+        }
+    }
+
+    /**
+     * Constructs an empty cache.
+     *
+     * @param budgetBytes The estimated memory the cached results may take, 0 to cache nothing.
+     */
+    AsciiArtCache(long budgetBytes) {
+        this.budgetBytes = budgetBytes;
+    }
+
+    /**
+     * Looks up a result, counting a hit or a miss.
+     *
+     * @param key The parameters of the result.
+     * @return The cached result, or null if there is none.
+     */
+    char[][] get(Key key) {
+        char[][] result = this.results.get(key);
+        if (result == null) {
+            this.misses++;
+        } else {
+            this.hits++;
+        }
+        return result;
+    }
+
+    /**
+     * Caches a result, unless it alone is larger than the whole budget.
+     *
+     * @param key    The parameters of the result.
+     * @param result The result.
+     */
+    void put(Key key, char[][] result) {
+        long resultBytes = sizeOf(result);
+        if (resultBytes > this.budgetBytes) {
+            return;
+        }
+        char[][] previous = this.results.put(key, result);
+        if (previous != null) {
+            this.usedBytes -= sizeOf(previous);
+        }
+        this.usedBytes += resultBytes;
+        this.evict();
+    }
+
+    /**
+     * Changes the memory budget, dropping the least recently used results if they no longer fit.
+     *
+     * @param budgetBytes The estimated memory the cached results may take, 0 to cache nothing.
+     */
+    void setBudget(long budgetBytes) {
+        this.budgetBytes = budgetBytes;
+        this.evict();
+    }
+
+    /**
+     * Returns how many lookups found a cached result.
+     *
+     * @return The number of hits.
+     */
+    long getHits() {
+        return this.hits;
+    }
+
+    /**
+     * Returns how many lookups did not find a cached result.
+     *
+     * @return The number of misses.
+     */
+    long getMisses() {
+        return this.misses;
+    }
+
+    private void evict() {
+        Iterator<Map.Entry<Key, char[][]>> eldest = this.results.entrySet().iterator();
+        while (this.usedBytes > this.budgetBytes && eldest.hasNext()) {
+            this.usedBytes -= sizeOf(eldest.next().getValue());
+            eldest.remove();
+        }
+    }
+
+    private static long sizeOf(char[][] result) {
+        long rowBytes = result.length == 0 ? 0 :
+                ARRAY_OVERHEAD_BYTES + (long) result[0].length * Character.BYTES + REFERENCE_BYTES;
+        return ARRAY_OVERHEAD_BYTES + result.length * rowBytes;
+    }
+}
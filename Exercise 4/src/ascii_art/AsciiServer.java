@@ -0,0 +1,407 @@
+package ascii_art;
+
+import ascii_output.AsciiRowWriter;
+import ascii_output.HtmlAsciiWriter;
+import ascii_output.TextAsciiWriter;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import exceptions.IncorrectFormatException;
+import image_char_matching.GlyphCache;
+import image_char_matching.SubImgCharMatcher;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+
+/**
+ * Serves ASCII art conversion over HTTP on the local machine. An image is converted by posting its file
+ * to /convert, and the art is streamed back as an HTML page or as text row by row while it is made (see
+ * StreamingConverter), so a request never holds the whole image or the whole art in memory.
+ * Every request is handled on a virtual thread where the JDK has them (21 and later), and on a pooled
+ * platform thread otherwise. The number of conversions in flight is bounded: a request beyond the bound
+ * is answered with 503 as soon as its image is uploaded instead of queueing, so the latency of the
+ * admitted ones stays predictable. Uploads are not bounded by it, so that slow ones cannot hold every
+ * conversion back. GET /stats reports the latency percentiles of the recent conversions, which are also
+ * printed when the server stops.
+ * Usage: AsciiServer [--host HOST] [--port PORT] [--max-in-flight COUNT] [--max-upload MEGABYTES]
+ * Requests: POST /convert?res=RESOLUTION&amp;chars=CHARS&amp;output=html|text with the image as the body.
+ */
+public class AsciiServer {
+    private static final String DEFAULT_HOST = "127.0.0.1";
+    private static final int DEFAULT_PORT = 8080;
+    private static final int DEFAULT_MAX_UPLOAD_MB = 64;
+    private static final String DEFAULT_CHARSET = "0-9";
+    private static final int DEFAULT_RESOLUTION = 128;
+    private static final String OUTPUT_FONT = "Courier New";
+    private static final String HOST_OPTION = "--host";
+    private static final String PORT_OPTION = "--port";
+    private static final String MAX_IN_FLIGHT_OPTION = "--max-in-flight";
+    private static final String MAX_UPLOAD_OPTION = "--max-upload";
+    private static final String RES_PARAMETER = "res";
+    private static final String CHARS_PARAMETER = "chars";
+    private static final String OUTPUT_PARAMETER = "output";
+    private static final String HTML = "html";
+    private static final String TEXT = "text";
+    private static final String CONVERT_PATH = "/convert";
+    private static final String STATS_PATH = "/stats";
+    private static final String POST = "POST";
+    private static final String GET = "GET";
+    private static final String ALLOW_HEADER = "Allow";
+    private static final String CONTENT_TYPE_HEADER = "Content-Type";
+    private static final String RETRY_AFTER_HEADER = "Retry-After";
+    private static final String RETRY_AFTER_SECONDS = "1";
+    private static final String HTML_CONTENT_TYPE = "text/html; charset=UTF-8";
+    private static final String TEXT_CONTENT_TYPE = "text/plain; charset=" + Charset.defaultCharset().name();
+    private static final String PLAIN_CONTENT_TYPE = "text/plain; charset=UTF-8";
+    private static final String UPLOAD_PREFIX = "ascii_upload";
+    private static final String VIRTUAL_THREADS_FACTORY = "newVirtualThreadPerTaskExecutor";
+    private static final String VIRTUAL_THREADS = "virtual";
+    private static final String PLATFORM_THREADS = "platform";
+    private static final char PARAMETER_SEPARATOR = '&';
+    private static final char VALUE_SEPARATOR = '=';
+    private static final char STARTING_CHAR = 32;
+    private static final char ENDING_CHAR = 126;
+    private static final int OK = 200;
+    private static final int BAD_REQUEST = 400;
+    private static final int NOT_FOUND = 404;
+    private static final int METHOD_NOT_ALLOWED = 405;
+    private static final int PAYLOAD_TOO_LARGE = 413;
+    private static final int INTERNAL_ERROR = 500;
+    private static final int SERVICE_UNAVAILABLE = 503;
+    // a length of 0 streams the body chunked, -1 sends none
+    private static final long CHUNKED = 0;
+    private static final int LATENCY_SAMPLES = 1 << 14;
+    private static final int COPY_BUFFER_BYTES = 1 << 16;
+    private static final long BYTES_IN_MB = 1024 * 1024;
+    private static final String FORMAT_ERR = "start the server";
+    private static final String REQUEST_FORMAT_ERR = "convert the image";
+    private static final String USAGE = "Usage: AsciiServer [--host HOST] [--port PORT] " +
+            "[--max-in-flight COUNT] [--max-upload MEGABYTES]";
+    private static final String LISTENING = "Listening on http://%s:%d%s (at most %d conversions " +
+            "in flight, on %s threads).";
+    private static final String NOT_FOUND_MESSAGE = "No such endpoint.";
+    private static final String METHOD_MESSAGE = "Method not allowed.";
+    private static final String BUSY_MESSAGE = "Too many conversions in flight, try again later.";
+    private static final String TOO_LARGE_MESSAGE = "The image is larger than %d MB.";
+    private static final String INTERNAL_MESSAGE = "Conversion failed.";
+
+    private String host = DEFAULT_HOST;
+    private int port = DEFAULT_PORT;
+    private int maxInFlight = Runtime.getRuntime().availableProcessors();
+    private long maxUploadBytes = DEFAULT_MAX_UPLOAD_MB * BYTES_IN_MB;
+    private final LatencyRecorder latencies = new LatencyRecorder(LATENCY_SAMPLES);
+    private Semaphore inFlight;
+    private HttpServer server;
+    private ExecutorService executor;
+
+    /**
+     * Initializes the AsciiServer from command-line arguments.
+     *
+     * @param args The options.
+     * @throws IOException If the arguments are not in the expected format.
+     */
+    public AsciiServer(String[] args) throws IOException {
+        for (int i = 0; i < args.length; i += 2) {
+            if (i + 1 == args.length) {
+                throw new IncorrectFormatException(FORMAT_ERR);
+            }
+            this.parseOption(args[i], args[i + 1]);
+        }
+    }
+
+    /**
+     * Starts serving. The requests are handled on the server's own threads, so this method returns
+     * once the server is listening.
+     *
+     * @throws IOException If the server cannot listen on its address.
+     */
+    public void start() throws IOException {
+        // rendering the glyphs once up front, instead of the first requests racing to render them
+        for (char c = STARTING_CHAR; c <= ENDING_CHAR; c++) {
+            GlyphCache.getMask(c);
+        }
+        this.inFlight = new Semaphore(this.maxInFlight);
+        this.server = HttpServer.create(new InetSocketAddress(this.host, this.port), 0);
+        this.server.createContext(CONVERT_PATH, this::handleConvert);
+        this.server.createContext(STATS_PATH, this::handleStats);
+        this.server.createContext("/", exchange -> {
+            try {
+                sendMessage(exchange, NOT_FOUND, NOT_FOUND_MESSAGE);
+            } finally {
+                exchange.close();
+            }
+        });
+        String threadsKind = VIRTUAL_THREADS;
+        try {
+            this.executor = (ExecutorService) Executors.class.getMethod(VIRTUAL_THREADS_FACTORY).invoke(null);
+        } catch (ReflectiveOperationException reflectiveOperationException) {
+            // the limiter bounds the conversions, so a cached pool only grows with idle connections
+            this.executor = Executors.newCachedThreadPool();
+            threadsKind = PLATFORM_THREADS;
+        }
+        this.server.setExecutor(this.executor);
+        this.server.start();
+        System.out.println(String.format(LISTENING, this.host, this.server.getAddress().getPort(),
+                CONVERT_PATH, this.maxInFlight, threadsKind));
+    }
+
+    /**
+     * Stops serving, letting the exchanges in progress finish for up to a second, and prints the latency
+     * summary.
+     */
+    public void stop() {
+        this.server.stop(1);
+        this.executor.shutdown();
+        System.out.println(this.latencies.summary());
+    }
+
+    private void parseOption(String option, String value) throws IOException {
+        try {
+            switch (option) {
+                case HOST_OPTION:
+                    this.host = value;
+                    break;
+                case PORT_OPTION:
+                    this.port = Integer.parseInt(value);
+                    break;
+                case MAX_IN_FLIGHT_OPTION:
+                    this.maxInFlight = Integer.parseInt(value);
+                    if (this.maxInFlight < 1) {
+                        throw new IncorrectFormatException(FORMAT_ERR);
+                    }
+                    break;
+                case MAX_UPLOAD_OPTION:
+                    this.maxUploadBytes = Integer.parseInt(value) * BYTES_IN_MB;
+                    if (this.maxUploadBytes < 1) {
+                        throw new IncorrectFormatException(FORMAT_ERR);
+                    }
+                    break;
+                default:
+                    throw new IncorrectFormatException(FORMAT_ERR);
+            }
+        } catch (NumberFormatException numberFormatException) {
+            throw new IncorrectFormatException(FORMAT_ERR);
+        }
+    }
+
+    private void handleConvert(HttpExchange exchange) throws IOException {
+        long start = System.nanoTime();
+        try {
+            if (!exchange.getRequestMethod().equals(POST)) {
+                exchange.getResponseHeaders().set(ALLOW_HEADER, POST);
+                sendMessage(exchange, METHOD_NOT_ALLOWED, METHOD_MESSAGE);
+                return;
+            }
+            this.convert(exchange, start);
+        } finally {
+            exchange.close();
+        }
+    }
+
+    private void convert(HttpExchange exchange, long start) throws IOException {
+        SubImgCharMatcher subImgCharMatcher;
+        int resolution;
+        boolean isHtmlOutput;
+        try {
+            Map<String, String> parameters = parseQuery(exchange.getRequestURI().getRawQuery());
+            subImgCharMatcher = new SubImgCharMatcher(CharsetParser.parse(
+                    parameters.getOrDefault(CHARS_PARAMETER, DEFAULT_CHARSET), REQUEST_FORMAT_ERR));
+            resolution = Integer.parseInt(parameters.getOrDefault(RES_PARAMETER,
+                    String.valueOf(DEFAULT_RESOLUTION)));
+            String output = parameters.getOrDefault(OUTPUT_PARAMETER, HTML);
+            if (!output.equals(HTML) && !output.equals(TEXT)) {
+                throw new IncorrectFormatException(REQUEST_FORMAT_ERR);
+            }
+            isHtmlOutput = output.equals(HTML);
+        } catch (IOException malformedException) {
+            this.latencies.recordFailure();
+            sendMessage(exchange, BAD_REQUEST, malformedException.getMessage());
+            return;
+        } catch (NumberFormatException numberFormatException) {
+            this.latencies.recordFailure();
+            sendMessage(exchange, BAD_REQUEST, new IncorrectFormatException(REQUEST_FORMAT_ERR).getMessage());
+            return;
+        }
+
+        Path upload = Files.createTempFile(UPLOAD_PREFIX, null);
+        try {
+            // the upload is read before a conversion is admitted, so that it holds no permit while it lasts
+            if (!saveUpload(exchange.getRequestBody(), upload, this.maxUploadBytes)) {
+                this.latencies.recordFailure();
+                sendMessage(exchange, PAYLOAD_TOO_LARGE,
+                        String.format(TOO_LARGE_MESSAGE, this.maxUploadBytes / BYTES_IN_MB));
+                return;
+            }
+            if (!this.inFlight.tryAcquire()) {
+                this.latencies.recordRejection();
+                exchange.getResponseHeaders().set(RETRY_AFTER_HEADER, RETRY_AFTER_SECONDS);
+                sendMessage(exchange, SERVICE_UNAVAILABLE, BUSY_MESSAGE);
+                return;
+            }
+            try {
+                if (streamArt(exchange, upload, subImgCharMatcher, resolution, isHtmlOutput)) {
+                    this.latencies.record(System.nanoTime() - start);
+                } else {
+                    this.latencies.recordFailure();
+                }
+            } finally {
+                this.inFlight.release();
+            }
+        } finally {
+            Files.deleteIfExists(upload);
+        }
+    }
+
+    private static boolean streamArt(HttpExchange exchange, Path upload, SubImgCharMatcher subImgCharMatcher,
+                                     int resolution, boolean isHtmlOutput) throws IOException {
+        ResponseStream body = new ResponseStream(exchange,
+                isHtmlOutput ? HTML_CONTENT_TYPE : TEXT_CONTENT_TYPE);
+        AsciiRowWriter writer = isHtmlOutput ? new HtmlAsciiWriter(body, OUTPUT_FONT) :
+                new TextAsciiWriter(body);
+        try {
+            new StreamingConverter(subImgCharMatcher, resolution).convert(upload.toString(), writer);
+            writer.close();
+            return true;
+        } catch (IOException | RuntimeException conversionException) {
+            if (body.isCommitted()) {
+                // the art is already on its way, so the response can only be cut short
+                return false;
+            }
+            if (conversionException instanceof IOException) {
+                sendMessage(exchange, BAD_REQUEST, conversionException.getMessage());
+            } else {
+                sendMessage(exchange, INTERNAL_ERROR, INTERNAL_MESSAGE);
+            }
+            return false;
+        }
+    }
+
+    private void handleStats(HttpExchange exchange) throws IOException {
+        try {
+            if (!exchange.getRequestMethod().equals(GET)) {
+                exchange.getResponseHeaders().set(ALLOW_HEADER, GET);
+                sendMessage(exchange, METHOD_NOT_ALLOWED, METHOD_MESSAGE);
+                return;
+            }
+            sendMessage(exchange, OK, this.latencies.summary());
+        } finally {
+            exchange.close();
+        }
+    }
+
+    private static Map<String, String> parseQuery(String query) {
+        Map<String, String> parameters = new HashMap<>();
+        if (query == null) {
+            return parameters;
+        }
+        for (String parameter : query.split(String.valueOf(PARAMETER_SEPARATOR))) {
+            int separator = parameter.indexOf(VALUE_SEPARATOR);
+            if (separator > 0) {
+                parameters.put(URLDecoder.decode(parameter.substring(0, separator), StandardCharsets.UTF_8),
+                        URLDecoder.decode(parameter.substring(separator + 1), StandardCharsets.UTF_8));
+            }
+        }
+        return parameters;
+    }
+
+    private static boolean saveUpload(InputStream inputStream, Path file, long maxBytes) throws IOException {
+        byte[] buffer = new byte[COPY_BUFFER_BYTES];
+        long total = 0;
+        try (OutputStream outputStream = Files.newOutputStream(file)) {
+            for (int read = inputStream.read(buffer); read >= 0; read = inputStream.read(buffer)) {
+                total += read;
+                if (total > maxBytes) {
+                    return false;
+                }
+                outputStream.write(buffer, 0, read);
+            }
+        }
+        return true;
+    }
+
+    private static void sendMessage(HttpExchange exchange, int status, String message) throws IOException {
+        byte[] bytes = (message + System.lineSeparator()).getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set(CONTENT_TYPE_HEADER, PLAIN_CONTENT_TYPE);
+        exchange.sendResponseHeaders(status, bytes.length);
+        try (OutputStream body = exchange.getResponseBody()) {
+            body.write(bytes);
+        }
+    }
+
+    /**
+     * The body of a successful response, whose headers are only sent with its first byte. Until then
+     * the exchange can still be answered with an error instead.
+     */
+    private static final class ResponseStream extends OutputStream {
+        private final HttpExchange exchange;
+        private final String contentType;
+        private OutputStream body;
+
+        private ResponseStream(HttpExchange exchange, String contentType) {
+            this.exchange = exchange;
+            this.contentType = contentType;
+        }
+
+        private boolean isCommitted() {
+            return this.body != null;
+        }
+
+        private OutputStream commit() throws IOException {
+            if (this.body == null) {
+                this.exchange.getResponseHeaders().set(CONTENT_TYPE_HEADER, this.contentType);
+                this.exchange.sendResponseHeaders(OK, CHUNKED);
+                this.body = this.exchange.getResponseBody();
+            }
+            return this.body;
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            this.commit().write(b);
+        }
+
+        @Override
+        public void write(byte[] bytes, int offset, int length) throws IOException {
+            this.commit().write(bytes, offset, length);
+        }
+
+        @Override
+        public void flush() throws IOException {
+            if (this.body != null) {
+                this.body.flush();
+            }
+        }
+
+        @Override
+        public void close() throws IOException {
+            this.commit().close();
+        }
+    }
+
+    /**
+     * The entry point of the server, which serves until the process is stopped.
+     *
+     * @param args The options.
+     */
+    public static void main(String[] args) {
+        try {
+            AsciiServer asciiServer = new AsciiServer(args);
+            asciiServer.start();
+            Runtime.getRuntime().addShutdownHook(new Thread(asciiServer::stop));
+        } catch (IOException ioException) {
+            System.out.println(ioException.getMessage());
+            System.out.println(USAGE);
+        }
+    }
+}
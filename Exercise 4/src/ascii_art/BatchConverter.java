@@ -0,0 +1,322 @@
+package ascii_art;
+
+import ascii_output.AsciiRowWriter;
+import ascii_output.HtmlAsciiWriter;
+import ascii_output.TextAsciiWriter;
+import exceptions.IncorrectFormatException;
+import image.ImageProcessor;
+import image_char_matching.GlyphCache;
+import image_char_matching.SubImgCharMatcher;
+
+import javax.imageio.ImageIO;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Converts many images to ASCII art without any interaction, on a bounded pool of worker threads.
+ * Every worker owns its own SubImgCharMatcher, ImageProcessor and AsciiArtAlgorithm and takes the next
+ * image as soon as it is done with the previous one, and every result is written out as soon as it is
+ * ready.
+ * Every image is written to a file named after it, in the output directory. Images with the same base
+ * name keep their extension in it (x.png.html, x.jpg.html), and images with the same name from different
+ * directories are numbered (x.png.html, x.png-2.html), so no two images are written to the same file.
+ * In the stream mode, every image is read and written out one row of characters at a time (see
+ * StreamingConverter), so images larger than the heap can be converted.
+ * Usage: BatchConverter [--chars CHARS] [--res RESOLUTION] [--output html|text] [--out DIRECTORY]
+ * [--threads COUNT] [--mode memory|stream] IMAGE_OR_DIRECTORY...
+ */
+public class BatchConverter {
+    private static final char[] DEFAULT_CHARACTER_SET = {'0', '1', '2', '3', '4', '5', '6', '7', '8', '9'};
+    private static final int DEFAULT_RESOLUTION = 128;
+    private static final String DEFAULT_OUTPUT_DIRECTORY = "ascii_out";
+    private static final String OUTPUT_FONT = "Courier New";
+    private static final String CHARS_OPTION = "--chars";
+    private static final String RES_OPTION = "--res";
+    private static final String OUTPUT_OPTION = "--output";
+    private static final String OUT_DIRECTORY_OPTION = "--out";
+    private static final String THREADS_OPTION = "--threads";
+    private static final String MODE_OPTION = "--mode";
+    private static final String OPTION_PREFIX = "--";
+    private static final String HTML = "html";
+    private static final String TEXT = "text";
+    private static final String MEMORY_MODE = "memory";
+    private static final String STREAM_MODE = "stream";
+    private static final String HTML_SUFFIX = ".html";
+    private static final String TEXT_SUFFIX = ".txt";
+    private static final char EXTENSION_DOT = '.';
+    private static final String NUMBER_SEPARATOR = "-";
+    private static final String FORMAT_ERR = "run batch conversion";
+    private static final String USAGE = "Usage: BatchConverter [--chars CHARS] [--res RESOLUTION] " +
+            "[--output html|text] [--out DIRECTORY] [--threads COUNT] [--mode memory|stream] " +
+            "IMAGE_OR_DIRECTORY...";
+    private static final String IMAGE_FAILED = "Did not convert %s: %s";
+    private static final String DIRECTORY_ERROR = "Did not create output directory %s.";
+    private static final String SUMMARY = "Converted %d images (%d failed) in %.2f s: %.2f images/sec, " +
+            "%.2f MB/sec.";
+    private static final double NANOS_IN_SECOND = 1e9;
+    private static final double BYTES_IN_MB = 1024 * 1024;
+
+    private char[] charset = DEFAULT_CHARACTER_SET;
+    private int resolution = DEFAULT_RESOLUTION;
+    private boolean isHtmlOutput = true;
+    private boolean isStreaming = false;
+    private File outputDirectory = new File(DEFAULT_OUTPUT_DIRECTORY);
+    private int threads = Runtime.getRuntime().availableProcessors();
+    private final List<File> images = new ArrayList<>();
+    private final List<String> outputPaths = new ArrayList<>();
+    private final AtomicInteger nextImage = new AtomicInteger();
+    private final AtomicInteger convertedCounter = new AtomicInteger();
+    private final AtomicInteger failedCounter = new AtomicInteger();
+    private final AtomicLong bytesCounter = new AtomicLong();
+
+    /**
+     * Initializes the BatchConverter from command-line arguments.
+     *
+     * @param args The options followed by the images and directories of images to convert.
+     * @throws IOException If the arguments are not in the expected format.
+     */
+    public BatchConverter(String[] args) throws IOException {
+        for (int i = 0; i < args.length; i++) {
+            if (!args[i].startsWith(OPTION_PREFIX)) {
+                this.addImages(new File(args[i]));
+                continue;
+            }
+            if (i + 1 == args.length) {
+                throw new IncorrectFormatException(FORMAT_ERR);
+            }
+            this.parseOption(args[i], args[++i]);
+        }
+        if (this.images.isEmpty()) {
+            throw new IncorrectFormatException(FORMAT_ERR);
+        }
+        this.assignOutputPaths();
+    }
+
+    /**
+     * Converts all the images, printing a line for every image that failed and a throughput summary
+     * at the end.
+     *
+     * @throws IOException If the output directory cannot be created.
+     */
+    public void run() throws IOException {
+        if (!this.outputDirectory.isDirectory() && !this.outputDirectory.mkdirs()) {
+            throw new IOException(String.format(DIRECTORY_ERROR, this.outputDirectory));
+        }
+        // rendering the glyphs once up front, instead of every worker racing to render them
+        for (char c : this.charset) {
+            GlyphCache.getMask(c);
+        }
+        long start = System.nanoTime();
+        int workersCount = Math.min(this.threads, this.images.size());
+        ExecutorService workers = Executors.newFixedThreadPool(workersCount);
+        try {
+            List<Callable<Void>> tasks = new ArrayList<>();
+            for (int i = 0; i < workersCount; i++) {
+                tasks.add(new Worker());
+            }
+            for (Future<Void> worker : workers.invokeAll(tasks)) {
+                worker.get();
+            }
+        } catch (InterruptedException interruptedException) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException executionException) {
+            throw new IllegalStateException(executionException.getCause());
+        } finally {
+            workers.shutdown();
+        }
+        double seconds = (System.nanoTime() - start) / NANOS_IN_SECOND;
+        int converted = this.convertedCounter.get();
+        System.out.println(String.format(SUMMARY, converted, this.failedCounter.get(), seconds,
+                converted / seconds, this.bytesCounter.get() / BYTES_IN_MB / seconds));
+    }
+
+    private void parseOption(String option, String value) throws IOException {
+        try {
+            switch (option) {
+                case CHARS_OPTION:
+                    this.charset = CharsetParser.parse(value, FORMAT_ERR);
+                    break;
+                case RES_OPTION:
+                    this.resolution = Integer.parseInt(value);
+                    break;
+                case OUTPUT_OPTION:
+                    if (!value.equals(HTML) && !value.equals(TEXT)) {
+                        throw new IncorrectFormatException(FORMAT_ERR);
+                    }
+                    this.isHtmlOutput = value.equals(HTML);
+                    break;
+                case OUT_DIRECTORY_OPTION:
+                    this.outputDirectory = new File(value);
+                    break;
+                case MODE_OPTION:
+                    if (!value.equals(MEMORY_MODE) && !value.equals(STREAM_MODE)) {
+                        throw new IncorrectFormatException(FORMAT_ERR);
+                    }
+                    this.isStreaming = value.equals(STREAM_MODE);
+                    break;
+                case THREADS_OPTION:
+                    this.threads = Integer.parseInt(value);
+                    if (this.threads < 1) {
+                        throw new IncorrectFormatException(FORMAT_ERR);
+                    }
+                    break;
+                default:
+                    throw new IncorrectFormatException(FORMAT_ERR);
+            }
+        } catch (NumberFormatException numberFormatException) {
+            throw new IncorrectFormatException(FORMAT_ERR);
+        }
+    }
+
+    private void addImages(File file) {
+        if (!file.isDirectory()) {
+            this.images.add(file);
+            return;
+        }
+        Set<String> suffixes = new HashSet<>(Arrays.asList(ImageIO.getReaderFileSuffixes()));
+        File[] children = file.listFiles();
+        if (children == null) {
+            return;
+        }
+        Arrays.sort(children);
+        for (File child : children) {
+            String name = child.getName();
+            int dot = name.lastIndexOf(EXTENSION_DOT);
+            if (child.isFile() && dot >= 0 &&
+                    suffixes.contains(name.substring(dot + 1).toLowerCase(Locale.ROOT))) {
+                this.images.add(child);
+            }
+        }
+    }
+
+    private void assignOutputPaths() {
+        // the names are compared ignoring case, since so do the file systems of some platforms
+        Map<String, Integer> baseNameCounts = new HashMap<>();
+        for (File image : this.images) {
+            baseNameCounts.merge(baseNameOf(image).toLowerCase(Locale.ROOT), 1, Integer::sum);
+        }
+        Set<String> usedNames = new HashSet<>();
+        String suffix = this.isHtmlOutput ? HTML_SUFFIX : TEXT_SUFFIX;
+        for (File image : this.images) {
+            String baseName = baseNameOf(image);
+            boolean isSharedBaseName = baseNameCounts.get(baseName.toLowerCase(Locale.ROOT)) > 1;
+            String name = isSharedBaseName ? image.getName() : baseName;
+            String uniqueName = name;
+            for (int number = 2; !usedNames.add(uniqueName.toLowerCase(Locale.ROOT)); number++) {
+                uniqueName = name + NUMBER_SEPARATOR + number;
+            }
+            this.outputPaths.add(new File(this.outputDirectory, uniqueName + suffix).getPath());
+        }
+    }
+
+    private static String baseNameOf(File image) {
+        String name = image.getName();
+        int dot = name.lastIndexOf(EXTENSION_DOT);
+        return dot > 0 ? name.substring(0, dot) : name;
+    }
+
+    /**
+     * Converts images one after the other until none are left, with conversion state that no other
+     * worker touches.
+     */
+    private class Worker implements Callable<Void> {
+        private final SubImgCharMatcher subImgCharMatcher = new SubImgCharMatcher(charset);
+        private ImageProcessor imageProcessor;
+        private AsciiArtAlgorithm asciiArtAlgorithm;
+
+        @Override
+        public Void call() {
+            for (int i = nextImage.getAndIncrement(); i < images.size(); i = nextImage.getAndIncrement()) {
+                File image = images.get(i);
+                try {
+                    this.convert(image, outputPaths.get(i));
+                    convertedCounter.incrementAndGet();
+                    bytesCounter.addAndGet(image.length());
+                } catch (IOException | RuntimeException exception) {
+                    // one bad image fails alone, and the next one starts with fresh conversion state
+                    this.imageProcessor = null;
+                    failedCounter.incrementAndGet();
+                    System.out.println(String.format(IMAGE_FAILED, image, exception instanceof IOException ?
+                            exception.getMessage() : exception.toString()));
+                }
+            }
+            return null;
+        }
+
+        private void convert(File image, String outputPath) throws IOException {
+            if (isStreaming) {
+                this.stream(image, outputPath);
+                return;
+            }
+            if (this.imageProcessor == null) {
+                // the engine is chosen before the first image is loaded, so that it converts that one too
+                this.imageProcessor = new ImageProcessor();
+                this.imageProcessor.setVectorLuminanceEnabled(true);
+                this.imageProcessor.setImage(image.getPath());
+                this.asciiArtAlgorithm = new AsciiArtAlgorithm(this.subImgCharMatcher, this.imageProcessor);
+            } else {
+                this.imageProcessor.setImage(image.getPath());
+            }
+            this.imageProcessor.setResolution(resolution);
+            char[][] asciiArt = this.asciiArtAlgorithm.run();
+            File output = new File(outputPath);
+            // written through a row writer, which reports a failed write instead of only logging it
+            try (AsciiRowWriter writer = openWriter(output)) {
+                writer.writeHeader(asciiArt.length == 0 ? 0 : asciiArt[0].length);
+                for (char[] row : asciiArt) {
+                    writer.writeRow(row);
+                }
+            } catch (IOException | RuntimeException exception) {
+                output.delete();
+                throw exception;
+            }
+        }
+
+        private void stream(File image, String outputPath) throws IOException {
+            File output = new File(outputPath);
+            try (AsciiRowWriter writer = openWriter(output)) {
+                new StreamingConverter(this.subImgCharMatcher, resolution).convert(image.getPath(), writer);
+            } catch (IOException | RuntimeException exception) {
+                // the rows are written as they are made, so a failure leaves a partial file behind
+                output.delete();
+                throw exception;
+            }
+        }
+
+        private AsciiRowWriter openWriter(File output) throws IOException {
+            FileOutputStream outputStream = new FileOutputStream(output);
+            return isHtmlOutput ? new HtmlAsciiWriter(outputStream, OUTPUT_FONT) :
+                    new TextAsciiWriter(outputStream);
+        }
+    }
+
+    /**
+     * The entry point of the batch conversion.
+     *
+     * @param args The options followed by the images and directories of images to convert.
+     */
+    public static void main(String[] args) {
+        try {
+            new BatchConverter(args).run();
+        } catch (IOException ioException) {
+            System.out.println(ioException.getMessage());
+            System.out.println(USAGE);
+        }
+    }
+}
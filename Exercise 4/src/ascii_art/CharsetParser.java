@@ -0,0 +1,63 @@
+package ascii_art;
+
+import exceptions.IncorrectFormatException;
+
+import java.io.IOException;
+
+/**
+ * Parses a character set given as text, the way the non-interactive front ends take it: "all" for every
+ * printable ASCII character, "space" for the space alone, a range such as "a-z", or the characters
+ * themselves.
+ */
+final class CharsetParser {
+    private static final String ALL_CHARACTERS = "all";
+    private static final String SPACE_CHARACTER = "space";
+    private static final int RANGE_OF_CHARACTERS = 3;
+    private static final char DASH = '-';
+    private static final char STARTING_CHAR = 32;
+    private static final char ENDING_CHAR = 126;
+
+    private CharsetParser() {
+    }
+
+    /**
+     * Parses a character set.
+     *
+     * @param value  The character set as text.
+     * @param action The action that is not done if the value is malformed, for the error message.
+     * @return The characters of the set, never empty.
+     * @throws IOException If the value is empty or has characters that are not printable ASCII.
+     */
+    static char[] parse(String value, String action) throws IOException {
+        if (value.equals(ALL_CHARACTERS)) {
+            return rangeOf(STARTING_CHAR, ENDING_CHAR, action);
+        }
+        if (value.equals(SPACE_CHARACTER)) {
+            return new char[]{STARTING_CHAR};
+        }
+        if (value.length() == RANGE_OF_CHARACTERS && value.charAt(1) == DASH) {
+            return rangeOf((char) Math.min(value.charAt(0), value.charAt(2)),
+                    (char) Math.max(value.charAt(0), value.charAt(2)), action);
+        }
+        if (value.isEmpty()) {
+            throw new IncorrectFormatException(action);
+        }
+        for (char c : value.toCharArray()) {
+            if (c < STARTING_CHAR || c > ENDING_CHAR) {
+                throw new IncorrectFormatException(action);
+            }
+        }
+        return value.toCharArray();
+    }
+
+    private static char[] rangeOf(char start, char end, String action) throws IOException {
+        if (start < STARTING_CHAR || end > ENDING_CHAR) {
+            throw new IncorrectFormatException(action);
+        }
+        char[] chars = new char[end - start + 1];
+        for (char c = start; c <= end; c++) {
+            chars[c - start] = c;
+        }
+        return chars;
+    }
+}
@@ -0,0 +1,69 @@
+package ascii_art;
+
+import exceptions.EmptyCharsetException;
+import image.ImageLibrary;
+import image.ImageProcessor;
+import image_char_matching.SubImgCharMatcher;
+
+import java.io.IOException;
+
+/**
+ * The conversion state of a single client of a multi-user ASCII art service: its own character set,
+ * image and resolution, and its own results cache. The images are taken from an ImageLibrary and the
+ * glyphs from the GlyphCache, both shared read-only by all the sessions, so a session costs little
+ * more than its state and any number of them can convert at once.
+ * A session is not thread-safe itself: it is meant to be confined to one thread at a time, such as a
+ * (virtual) thread per session.
+ */
+public class ConversionSession {
+    private static final long SESSION_CACHE_BUDGET_BYTES = 1024 * 1024;
+
+    private final SubImgCharMatcher subImgCharMatcher;
+    private final ImageProcessor imageProcessor;
+    private final AsciiArtAlgorithm asciiArtAlgorithm;
+
+    /**
+     * Opens a session.
+     *
+     * @param library   The library shared by all the sessions.
+     * @param imagePath The path of the session's first image.
+     * @param charset   The session's initial character set.
+     * @throws IOException If there's an issue with the image file.
+     */
+    public ConversionSession(ImageLibrary library, String imagePath, char[] charset) throws IOException {
+        this.subImgCharMatcher = new SubImgCharMatcher(charset);
+        this.imageProcessor = new ImageProcessor(library, imagePath);
+        this.asciiArtAlgorithm = new AsciiArtAlgorithm(this.subImgCharMatcher, this.imageProcessor);
+        // hundreds of sessions may be open at once, so each only keeps its last few results
+        this.asciiArtAlgorithm.setCacheBudget(SESSION_CACHE_BUDGET_BYTES);
+    }
+
+    /**
+     * Returns the session's character matcher, for changing its character set.
+     *
+     * @return The session's SubImgCharMatcher.
+     */
+    public SubImgCharMatcher getCharMatcher() {
+        return this.subImgCharMatcher;
+    }
+
+    /**
+     * Returns the session's image processor, for changing its image and resolution.
+     *
+     * @return The session's ImageProcessor.
+     */
+    public ImageProcessor getImageProcessor() {
+        return this.imageProcessor;
+    }
+
+    /**
+     * Converts the session's image with its current character set and resolution.
+     *
+     * @return A 2D char array representing the ASCII art version of the image. The array must not be
+     * modified.
+     * @throws EmptyCharsetException If the session's character set is empty.
+     */
+    public char[][] run() throws EmptyCharsetException {
+        return this.asciiArtAlgorithm.run();
+    }
+}
@@ -0,0 +1,87 @@
+package ascii_art;
+
+import java.util.Arrays;
+
+/**
+ * Records the latencies of requests and reports their percentiles. Only the most recent samples are
+ * kept, in a ring, so the percentiles follow the current load and the memory taken is fixed.
+ * The recorder is safe to use from any number of threads at once.
+ */
+class LatencyRecorder {
+    private static final String SUMMARY = "%d requests (%d failed, %d rejected), latency over the last %d: " +
+            "p50 %.2f ms, p90 %.2f ms, p99 %.2f ms, max %.2f ms";
+    private static final double NANOS_IN_MILLI = 1e6;
+    private static final double[] PERCENTILES = {0.5, 0.9, 0.99, 1};
+
+    private final long[] samples;
+    private long recorded = 0;
+    private long failed = 0;
+    private long rejected = 0;
+
+    /**
+     * Constructs an empty recorder.
+     *
+     * @param maxSamples The number of most recent latencies the percentiles are computed over.
+     */
+    LatencyRecorder(int maxSamples) {
+        this.samples = new long[maxSamples];
+    }
+
+    /**
+     * Records the latency of a request that was served.
+     *
+     * @param nanos The time from receiving the request to sending the last byte of its response.
+     */
+    synchronized void record(long nanos) {
+        this.samples[(int) (this.recorded++ % this.samples.length)] = nanos;
+    }
+
+    /**
+     * Counts a request that was accepted but failed.
+     */
+    synchronized void recordFailure() {
+        this.failed++;
+    }
+
+    /**
+     * Counts a request that was turned away because too many were in flight.
+     */
+    synchronized void recordRejection() {
+        this.rejected++;
+    }
+
+    /**
+     * Summarizes the requests so far and the percentiles of the recent latencies.
+     *
+     * @return A one-line summary.
+     */
+    String summary() {
+        long[] recent;
+        long served;
+        long failedCount;
+        long rejectedCount;
+        synchronized (this) {
+            served = this.recorded;
+            failedCount = this.failed;
+            rejectedCount = this.rejected;
+            recent = Arrays.copyOf(this.samples, (int) Math.min(served, this.samples.length));
+        }
+        Arrays.sort(recent);
+        Object[] values = new Object[4 + PERCENTILES.length];
+        // every request that got an answer: served, failed, or rejected before it was converted
+        values[0] = served + failedCount + rejectedCount;
+        values[1] = failedCount;
+        values[2] = rejectedCount;
+        values[3] = recent.length;
+        for (int i = 0; i < PERCENTILES.length; i++) {
+            values[4 + i] = recent.length == 0 ? 0.0 : recent[indexOf(PERCENTILES[i], recent.length)] /
+                    NANOS_IN_MILLI;
+        }
+        return String.format(SUMMARY, values);
+    }
+
+    private static int indexOf(double percentile, int length) {
+        // the nearest-rank percentile
+        return Math.max((int) Math.ceil(percentile * length) - 1, 0);
+    }
+}
@@ -1,12 +1,15 @@
 package ascii_art;
 
+import ascii_output.AnsiConsoleOutput;
 import ascii_output.AsciiOutput;
 import ascii_output.ConsoleAsciiOutput;
 import ascii_output.HtmlAsciiOutput;
 import image.ImageProcessor;
+import image_char_matching.GlyphCache;
 import image_char_matching.SubImgCharMatcher;
 import exceptions.*;
 
+import java.io.File;
 import java.io.IOException;
 
 /**
@@ -16,11 +19,18 @@ public class Shell {
     private static final String DEFAULT_PATH = "cat.jpeg";
     private static final char[] DEFAULT_CHARACTER_SET = {'0', '1', '2', '3', '4', '5', '6', '7', '8', '9'};
     private static final String CHANGED_RESOLUTION = "Resolution set to %s.";
+    private static final String CACHE_STATISTICS = "ASCII art cache: %d hits, %d misses.";
     private static final String RES_FORMAT_ERR = "change resolution";
     private static final String OUTPUT_ERR = "change output method";
+    private static final String COLOR_ERR = "change color mode";
+    private static final String MATCH_ERR = "change matching mode";
+    private static final String DITHER_ERR = "change dithering mode";
+    private static final String CACHE_ERR = "change image cache mode";
     private static final String SPLIT_DELIMITER = " ";
     private static final String OUTPUT_PATH = "out.html";
     private static final String OUTPUT_FONT = "Courier New";
+    private static final String GLYPH_CACHE_PATH = "glyphs.cache";
+    private static final String IMAGE_CACHE_DIRECTORY = "image_cache";
     private static final String EMPTY_STRING = "";
     private static final char DASH = '-';
     private static final String INPUT_PREFIX = ">>> ";
@@ -32,10 +42,20 @@ public class Shell {
     private static final String IMAGE_COMMAND = "image";
     private static final String OUTPUT_COMMAND = "output";
     private static final String ASCII_COMMAND = "asciiArt";
+    private static final String TIMINGS_COMMAND = "timings";
+    private static final String COLOR_COMMAND = "color";
+    private static final String MODE_ON = "on";
+    private static final String MODE_OFF = "off";
+    private static final String MATCH_COMMAND = "match";
+    private static final String DITHER_COMMAND = "dither";
+    private static final String CACHE_COMMAND = "cache";
+    private static final String MATCH_BRIGHTNESS = "brightness";
+    private static final String MATCH_SHAPE = "shape";
     private static final String INCREASE_RESOLUTION = "up";
     private static final String DECREASE_RESOLUTION = "down";
     private static final String HTML = "html";
     private static final String CONSOLE = "console";
+    private static final String ANSI = "ansi";
     private static final String ADD_ALL_CHARACTERS = "all";
     private static final String ADD_SPACE_CHARACTER = "space";
     private static final int ADD_RANGE_OF_CHARACTERS = 3;
@@ -47,6 +67,8 @@ public class Shell {
     private final ImageProcessor imageProcessor;
     private AsciiOutput output;
     private boolean isHtmlOutput = false;
+    // the console output chosen with "output ansi", which only redraws what changed between arts
+    private AnsiConsoleOutput terminalOutput;
 
 
     /**
@@ -55,9 +77,13 @@ public class Shell {
      * @throws IOException If there's an issue with the image file.
      */
     public Shell() throws IOException {
+        loadGlyphCache();
         this.imageCharMatcher = new SubImgCharMatcher(DEFAULT_CHARACTER_SET);
         this.output = new ConsoleAsciiOutput();
         this.imageProcessor = new ImageProcessor(DEFAULT_PATH);
+        this.imageProcessor.setParallelism(Runtime.getRuntime().availableProcessors());
+        this.imageProcessor.setPyramidEnabled(true);
+        this.imageProcessor.setVectorLuminanceEnabled(true);
         this.asciiAlgo = new AsciiArtAlgorithm(this.imageCharMatcher, this.imageProcessor);
     }
 
@@ -75,6 +101,47 @@ public class Shell {
                 System.out.println(ioException.getMessage());
             }
         }
+        this.releaseTerminal();
+        saveGlyphCache();
+    }
+
+    private AsciiOutput consoleOutput() {
+        return this.terminalOutput == null ? new ConsoleAsciiOutput() : this.terminalOutput;
+    }
+
+    private void releaseTerminal() {
+        if (this.terminalOutput == null) {
+            return;
+        }
+        try {
+            this.terminalOutput.close();
+        } catch (IOException ioException) {
+            System.out.println(ioException.getMessage());
+        }
+        this.terminalOutput = null;
+    }
+
+    private static void loadGlyphCache() {
+        // the cache file only saves rendering time, so a missing or broken one is simply ignored
+        if (!new File(GLYPH_CACHE_PATH).isFile()) {
+            return;
+        }
+        try {
+            GlyphCache.load(GLYPH_CACHE_PATH);
+        } catch (IOException ioException) {
+            System.out.println(ioException.getMessage());
+        }
+    }
+
+    private static void saveGlyphCache() {
+        if (!GlyphCache.hasUnsavedGlyphs()) {
+            return;
+        }
+        try {
+            GlyphCache.save(GLYPH_CACHE_PATH);
+        } catch (IOException ioException) {
+            System.out.println(ioException.getMessage());
+        }
     }
 
     private void checkInput(String userInput) throws IOException {
@@ -102,6 +169,21 @@ public class Shell {
             case ASCII_COMMAND:
                 this.asciiCommand();
                 break;
+            case TIMINGS_COMMAND:
+                this.timingsCommand();
+                break;
+            case COLOR_COMMAND:
+                this.colorCommand(tokens);
+                break;
+            case MATCH_COMMAND:
+                this.matchCommand(tokens);
+                break;
+            case DITHER_COMMAND:
+                this.ditherCommand(tokens);
+                break;
+            case CACHE_COMMAND:
+                this.cacheCommand(tokens);
+                break;
             case EXIT_COMMAND:
                 break;
             default:
@@ -153,10 +235,17 @@ public class Shell {
     }
 
     private void outputCommand(String[] tokens) throws IOException {
-        if (tokens.length != 2 || (!tokens[1].equals(HTML) && !tokens[1].equals(CONSOLE))) {
+        if (tokens.length != 2 || (!tokens[1].equals(HTML) && !tokens[1].equals(CONSOLE) &&
+                !tokens[1].equals(ANSI))) {
             throw new IncorrectFormatException(OUTPUT_ERR);
         }
         this.isHtmlOutput = tokens[1].equals(HTML);
+        if (!tokens[1].equals(ANSI)) {
+            // the art on the terminal is not redrawn anymore, so the screen goes back to scrolling
+            this.releaseTerminal();
+        } else if (this.terminalOutput == null) {
+            this.terminalOutput = new AnsiConsoleOutput();
+        }
     }
 
     private void asciiCommand() throws IOException {
@@ -164,9 +253,48 @@ public class Shell {
         if (this.isHtmlOutput) {
             this.output = new HtmlAsciiOutput(OUTPUT_PATH, OUTPUT_FONT);
         } else {
-            this.output = new ConsoleAsciiOutput();
+            this.output = this.consoleOutput();
+        }
+        int[][] colors = this.asciiAlgo.getColors();
+        if (colors == null) {
+            this.output.out(newImage);
+        } else {
+            this.output.out(newImage, colors);
+        }
+    }
+
+    private void colorCommand(String[] tokens) throws IOException {
+        if (tokens.length != 2 || (!tokens[1].equals(MODE_ON) && !tokens[1].equals(MODE_OFF))) {
+            throw new IncorrectFormatException(COLOR_ERR);
+        }
+        this.imageProcessor.setColorEnabled(tokens[1].equals(MODE_ON));
+    }
+
+    private void matchCommand(String[] tokens) throws IOException {
+        if (tokens.length != 2 || (!tokens[1].equals(MATCH_BRIGHTNESS) && !tokens[1].equals(MATCH_SHAPE))) {
+            throw new IncorrectFormatException(MATCH_ERR);
+        }
+        this.asciiAlgo.setShapeMatchingEnabled(tokens[1].equals(MATCH_SHAPE));
+    }
+
+    private void ditherCommand(String[] tokens) throws IOException {
+        if (tokens.length != 2 || (!tokens[1].equals(MODE_ON) && !tokens[1].equals(MODE_OFF))) {
+            throw new IncorrectFormatException(DITHER_ERR);
+        }
+        this.asciiAlgo.setDitheringEnabled(tokens[1].equals(MODE_ON));
+    }
+
+    private void cacheCommand(String[] tokens) throws IOException {
+        if (tokens.length != 2 || (!tokens[1].equals(MODE_ON) && !tokens[1].equals(MODE_OFF))) {
+            throw new IncorrectFormatException(CACHE_ERR);
         }
-        this.output.out(newImage);
+        this.imageProcessor.setCacheDirectory(tokens[1].equals(MODE_ON) ? IMAGE_CACHE_DIRECTORY : null);
+    }
+
+    private void timingsCommand() {
+        System.out.println(this.imageProcessor.getLoadTimings());
+        System.out.println(String.format(CACHE_STATISTICS, this.asciiAlgo.getCacheHits(),
+                this.asciiAlgo.getCacheMisses()));
     }
 
     private void changeSingleCharacter(char c, String command) throws IOException {
@@ -178,12 +306,10 @@ public class Shell {
     }
 
     private void changeAll(String command) throws IOException {
-        for (char i = STARTING_CHAR; i <= ENDING_CHAR; i++) {
-            if (command.equals(ADD_COMMAND)) {
-                this.imageCharMatcher.addChar(i);
-                continue;
-            }
-            this.imageCharMatcher.removeChar(i);
+        if (command.equals(ADD_COMMAND)) {
+            this.imageCharMatcher.addChars(STARTING_CHAR, ENDING_CHAR);
+        } else {
+            this.imageCharMatcher.removeChars(STARTING_CHAR, ENDING_CHAR);
         }
     }
 
@@ -210,12 +336,10 @@ public class Shell {
                     new IncorrectFormatException(REMOVE_COMMAND);
         }
 
-        for (char i = start; i <= end; i++) {
-            if (command.equals(ADD_COMMAND)) {
-                this.imageCharMatcher.addChar(i);
-                continue;
-            }
-            this.imageCharMatcher.removeChar(i);
+        if (command.equals(ADD_COMMAND)) {
+            this.imageCharMatcher.addChars(start, end);
+        } else {
+            this.imageCharMatcher.removeChars(start, end);
         }
     }
 
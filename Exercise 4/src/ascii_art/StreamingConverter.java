@@ -0,0 +1,57 @@
+package ascii_art;
+
+import ascii_output.AsciiRowWriter;
+import exceptions.EmptyCharsetException;
+import image.BrightnessBandReader;
+import image_char_matching.SubImgCharMatcher;
+
+import java.io.IOException;
+
+/**
+ * Converts an image to ASCII art without ever holding the whole image, or the whole art, in memory.
+ * The image is read one band of sub-images at a time, and every band is matched and written out as a
+ * row of characters before the next one is read, so images far larger than the heap can be converted.
+ * The art is the same as AsciiArtAlgorithm makes of the same image at the same resolution.
+ */
+public class StreamingConverter {
+    private final SubImgCharMatcher subImgCharMatcher;
+    private final int resolution;
+
+    /**
+     * Initializes the StreamingConverter.
+     *
+     * @param subImgCharMatcher The SubImgCharMatcher used to match image brightness to characters.
+     * @param resolution        The number of characters in every row of the art.
+     */
+    public StreamingConverter(SubImgCharMatcher subImgCharMatcher, int resolution) {
+        this.subImgCharMatcher = subImgCharMatcher;
+        this.resolution = resolution;
+    }
+
+    /**
+     * Converts an image file, writing the art out row by row. The writer is not closed.
+     *
+     * @param imagePath The path of the image file.
+     * @param writer    The writer to write the art to.
+     * @throws IOException If the image cannot be read, the resolution does not fit it, the character set
+     *                     is empty or writing fails.
+     */
+    public void convert(String imagePath, AsciiRowWriter writer) throws IOException {
+        try (BrightnessBandReader bandReader = new BrightnessBandReader(imagePath, this.resolution)) {
+            bandReader.setVectorLuminanceEnabled(true);
+            double[] brightness = new double[bandReader.getCols()];
+            char[] row = new char[bandReader.getCols()];
+            writer.writeHeader(row.length);
+            while (bandReader.readBand(brightness)) {
+                this.matchRow(brightness, row);
+                writer.writeRow(row);
+            }
+        }
+    }
+
+    private void matchRow(double[] brightness, char[] row) throws EmptyCharsetException {
+        for (int j = 0; j < row.length; j++) {
+            row[j] = this.subImgCharMatcher.getCharByImageBrightness(brightness[j]);
+        }
+    }
+}
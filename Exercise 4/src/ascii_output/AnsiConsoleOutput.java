@@ -0,0 +1,408 @@
+package ascii_output;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Logger;
+
+/**
+ * Output a 2D array of chars to an ANSI terminal, laid out like ConsoleAsciiOutput prints it, redrawing
+ * only what changed since the art it showed last: every run of changed characters is written after a
+ * cursor move to it, and everything else is left on the screen as it is. The art is kept at the top of
+ * the screen, above a scrolling region for the rest of the console's output, so it stays where it was
+ * drawn while commands and messages scroll below it.
+ * Every render is put together in one buffer and written to the terminal in a single write, so the
+ * terminal never shows half of one.
+ * The art can only be kept on the screen if it fits there: rows wider than the screen would wrap, and the
+ * changes would be drawn in the wrong cells. So the size of the terminal is found once, from the LINES
+ * and COLUMNS environment variables or the stty command. Art that does not fit, or art shown on a
+ * terminal of unknown size, is printed in full every time instead, still in a single write.
+ * Colored art is drawn in 24-bit color.
+ * As a frame writer it plays an animation in the terminal, showing every frame for its delay. Closing it
+ * gives the whole screen back to the console's output, but leaves the underlying stream open.
+ */
+public class AnsiConsoleOutput implements AsciiOutput, AsciiFrameWriter {
+    private static final byte[] CLEAR_SCREEN = "\033[H\033[2J".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] RESET_SCROLL_REGION = "\033[r".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] SAVE_CURSOR = "\0337".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] RESTORE_CURSOR = "\0338".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] RESET_COLOR = "\033[0m".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] COLOR_START = "\033[38;2;".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] LINE_SEPARATOR = System.lineSeparator().getBytes(StandardCharsets.US_ASCII);
+    private static final byte ESCAPE = '\033';
+    private static final byte BRACKET = '[';
+    private static final byte PARAMETER_SEPARATOR = ';';
+    private static final byte CURSOR_POSITION = 'H';
+    private static final byte SCROLL_REGION = 'r';
+    private static final byte COLOR_END = 'm';
+    private static final byte SEPARATOR = ' ';
+    // terminals clamp the cursor to the screen, so this moves it to the last row whatever the height
+    private static final int LAST_ROW = 9999;
+    // a cursor move takes up to about 10 bytes and rewriting an unchanged character takes 2, so changes
+    // this close to each other are cheaper to write as one run
+    private static final int MERGE_GAP = 4;
+    private static final int MAX_NUMBER_DIGITS = 10;
+    private static final int MAX_COLOR_BYTES = 20;
+    private static final int CHANNEL_BITS = 8;
+    private static final int CHANNEL_MASK = 0xFF;
+    private static final int RGB_MASK = 0xFFFFFF;
+    private static final int NO_COLOR = -1;
+    private static final int UNKNOWN_SIZE = 0;
+    // a scrolling region needs at least two rows
+    private static final int MIN_REGION_ROWS = 2;
+    private static final String LINES_VARIABLE = "LINES";
+    private static final String COLUMNS_VARIABLE = "COLUMNS";
+    private static final String TERMINAL = "/dev/tty";
+    private static final String[] STTY_SIZE = {"stty", "size"};
+    private static final String WRITE_FAILED = "Failed to write to the terminal: %s";
+    private static final long NANOS_IN_MILLI = 1000000;
+
+    private final OutputStream stream;
+    private final WritableByteChannel channel;
+    private final int terminalRows;
+    private final int terminalCols;
+    private byte[] buffer = new byte[0];
+    private int length;
+    private int pen = NO_COLOR;
+    private char[][] shownChars;
+    private int[][] shownColors;
+    private boolean isScrollRegionSet = false;
+    private long nextFrameNanos = 0;
+
+    /**
+     * Constructs an AnsiConsoleOutput that writes to the standard output, which should be a terminal.
+     */
+    public AnsiConsoleOutput() {
+        this(System.out, findTerminalSize());
+    }
+
+    private AnsiConsoleOutput(OutputStream stream, int[] terminalSize) {
+        this(stream, terminalSize[0], terminalSize[1]);
+    }
+
+    /**
+     * Constructs an AnsiConsoleOutput over a stream connected to a terminal of the given size.
+     * @param stream The stream to write to.
+     * @param terminalRows The number of rows of the terminal, 0 if unknown.
+     * @param terminalCols The number of columns of the terminal, 0 if unknown.
+     */
+    public AnsiConsoleOutput(OutputStream stream, int terminalRows, int terminalCols) {
+        this.stream = stream;
+        this.channel = Channels.newChannel(stream);
+        this.terminalRows = terminalRows;
+        this.terminalCols = terminalCols;
+    }
+
+    @Override
+    public void out(char[][] chars) {
+        this.tryRender(chars, null);
+    }
+
+    @Override
+    public void out(char[][] chars, int[][] colors) {
+        this.tryRender(chars, colors);
+    }
+
+    /**
+     * Makes the next frame be drawn in full.
+     * @param rows The number of rows in every frame.
+     * @param cols The number of characters in every row.
+     */
+    @Override
+    public void writeHeader(int rows, int cols) {
+        this.shownChars = null;
+        this.nextFrameNanos = 0;
+    }
+
+    /**
+     * Draws a frame once the frame before was shown for its delay.
+     * @param frame The rows of characters of the frame.
+     * @param delayMillis How long the frame is shown, in milliseconds.
+     * @throws IOException If writing fails, or the thread is interrupted while waiting.
+     */
+    @Override
+    public void writeFrame(char[][] frame, int delayMillis) throws IOException {
+        long wait = this.nextFrameNanos - System.nanoTime();
+        if (this.nextFrameNanos != 0 && wait > 0) {
+            try {
+                TimeUnit.NANOSECONDS.sleep(wait);
+            } catch (InterruptedException interruptedException) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException();
+            }
+        }
+        this.render(frame, null);
+        this.nextFrameNanos = System.nanoTime() + delayMillis * NANOS_IN_MILLI;
+    }
+
+    /**
+     * Gives the whole screen back to the console's output, leaving the art where it is, and makes the
+     * next art be drawn in full. The underlying stream is not closed.
+     * @throws IOException If writing fails.
+     */
+    @Override
+    public void close() throws IOException {
+        this.length = 0;
+        this.releaseScreen();
+        this.shownChars = null;
+        this.flush();
+    }
+
+    private void tryRender(char[][] chars, int[][] colors) {
+        try {
+            this.render(chars, colors);
+        } catch (IOException ioException) {
+            Logger.getGlobal().severe(String.format(WRITE_FAILED, ioException.getMessage()));
+        }
+    }
+
+    private void render(char[][] chars, int[][] colors) throws IOException {
+        this.length = 0;
+        boolean fits = this.fits(chars);
+        if (!fits) {
+            // the art does not fit on the screen (or the screen's size is unknown), so it cannot be kept
+            // there and updated
+            this.releaseScreen();
+            this.shownChars = null;
+            for (int y = 0; y < chars.length; y++) {
+                this.appendCells(chars[y], colors == null ? null : colors[y], 0, chars[y].length);
+                this.append(LINE_SEPARATOR);
+            }
+        } else if (!this.isShown(chars, colors)) {
+            this.append(CLEAR_SCREEN);
+            for (int y = 0; y < chars.length; y++) {
+                this.appendCursorMove(y + 1, 1);
+                this.appendCells(chars[y], colors == null ? null : colors[y], 0, chars[y].length);
+            }
+            this.appendResetColor();
+            // setting the region moves the cursor to the top, it is then moved to the region's first row
+            this.appendCommand(chars.length + 1, 0, SCROLL_REGION);
+            this.appendCursorMove(chars.length + 1, 1);
+            this.isScrollRegionSet = true;
+        } else {
+            this.appendChanges(chars, colors);
+        }
+        this.appendResetColor();
+        this.flush();
+        if (fits) {
+            this.keep(chars, colors);
+        }
+    }
+
+    private boolean fits(char[][] chars) {
+        if (chars.length + MIN_REGION_ROWS > this.terminalRows) {
+            return false;
+        }
+        // every character takes two columns, itself and a separator
+        for (char[] row : chars) {
+            if (2L * row.length > this.terminalCols) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private boolean isShown(char[][] chars, int[][] colors) {
+        // the changes can only be drawn over art of the same shape, colored the same way
+        if (this.shownChars == null || this.shownChars.length != chars.length ||
+                (this.shownColors == null) != (colors == null)) {
+            return false;
+        }
+        for (int y = 0; y < chars.length; y++) {
+            if (this.shownChars[y].length != chars[y].length) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private void appendChanges(char[][] chars, int[][] colors) {
+        int emptyLength = this.length;
+        this.append(SAVE_CURSOR);
+        int runsStart = this.length;
+        for (int y = 0; y < chars.length; y++) {
+            int cols = chars[y].length;
+            for (int x = 0; x < cols; x++) {
+                if (this.isUnchanged(chars, colors, y, x)) {
+                    continue;
+                }
+                int end = x + 1;
+                int gap = 0;
+                for (int next = end; next < cols && gap <= MERGE_GAP; next++) {
+                    if (this.isUnchanged(chars, colors, y, next)) {
+                        gap++;
+                    } else {
+                        gap = 0;
+                        end = next + 1;
+                    }
+                }
+                this.appendCursorMove(y + 1, 2 * x + 1);
+                this.appendCells(chars[y], colors == null ? null : colors[y], x, end);
+                x = end;
+            }
+        }
+        if (this.length == runsStart) {
+            // nothing changed, so nothing is written
+            this.length = emptyLength;
+            return;
+        }
+        this.appendResetColor();
+        this.append(RESTORE_CURSOR);
+    }
+
+    private boolean isUnchanged(char[][] chars, int[][] colors, int y, int x) {
+        return chars[y][x] == this.shownChars[y][x] &&
+                (colors == null || colors[y][x] == this.shownColors[y][x]);
+    }
+
+    private void keep(char[][] chars, int[][] colors) {
+        // the art is copied, since the arrays it was given in may be reused for the next art
+        if (!this.isShown(chars, colors)) {
+            this.shownChars = new char[chars.length][];
+            this.shownColors = colors == null ? null : new int[chars.length][];
+        }
+        for (int y = 0; y < chars.length; y++) {
+            this.shownChars[y] = chars[y].clone();
+            if (colors != null) {
+                this.shownColors[y] = colors[y].clone();
+            }
+        }
+    }
+
+    private void releaseScreen() {
+        if (!this.isScrollRegionSet) {
+            return;
+        }
+        this.append(RESET_SCROLL_REGION);
+        this.appendCursorMove(LAST_ROW, 1);
+        this.append(LINE_SEPARATOR);
+        this.isScrollRegionSet = false;
+    }
+
+    private void appendCells(char[] row, int[] colors, int from, int to) {
+        this.ensureCapacity((to - from) * (MAX_COLOR_BYTES + 2));
+        for (int x = from; x < to; x++) {
+            if (colors != null && (colors[x] & RGB_MASK) != this.pen) {
+                this.appendColor(colors[x] & RGB_MASK);
+            }
+            this.buffer[this.length++] = (byte) row[x];
+            this.buffer[this.length++] = SEPARATOR;
+        }
+    }
+
+    private void appendColor(int rgb) {
+        this.append(COLOR_START);
+        for (int channel = 2; channel >= 0; channel--) {
+            this.appendNumber((rgb >> (channel * CHANNEL_BITS)) & CHANNEL_MASK);
+            this.buffer[this.length++] = channel == 0 ? COLOR_END : PARAMETER_SEPARATOR;
+        }
+        this.pen = rgb;
+    }
+
+    private void appendResetColor() {
+        if (this.pen != NO_COLOR) {
+            this.append(RESET_COLOR);
+            this.pen = NO_COLOR;
+        }
+    }
+
+    private void appendCursorMove(int row, int col) {
+        this.appendCommand(row, col, CURSOR_POSITION);
+    }
+
+    private void appendCommand(int first, int second, byte command) {
+        // a second parameter of 0 is left out, which makes the terminal take its default
+        this.ensureCapacity(2 * MAX_NUMBER_DIGITS + 4);
+        this.buffer[this.length++] = ESCAPE;
+        this.buffer[this.length++] = BRACKET;
+        this.appendNumber(first);
+        this.buffer[this.length++] = PARAMETER_SEPARATOR;
+        if (second != 0) {
+            this.appendNumber(second);
+        }
+        this.buffer[this.length++] = command;
+    }
+
+    private void appendNumber(int number) {
+        int digits = 1;
+        for (int rest = number / 10; rest > 0; rest /= 10) {
+            digits++;
+        }
+        for (int i = this.length + digits - 1; i >= this.length; i--) {
+            this.buffer[i] = (byte) ('0' + number % 10);
+            number /= 10;
+        }
+        this.length += digits;
+    }
+
+    private void append(byte[] bytes) {
+        this.ensureCapacity(bytes.length);
+        System.arraycopy(bytes, 0, this.buffer, this.length, bytes.length);
+        this.length += bytes.length;
+    }
+
+    private void ensureCapacity(int extra) {
+        if (this.length + extra > this.buffer.length) {
+            byte[] grown = new byte[Math.max(this.buffer.length * 2, this.length + extra)];
+            System.arraycopy(this.buffer, 0, grown, 0, this.length);
+            this.buffer = grown;
+        }
+    }
+
+    private void flush() throws IOException {
+        if (this.length == 0) {
+            return;
+        }
+        ByteBuffer bytes = ByteBuffer.wrap(this.buffer, 0, this.length);
+        while (bytes.hasRemaining()) {
+            this.channel.write(bytes);
+        }
+        this.stream.flush();
+    }
+
+    private static int[] findTerminalSize() {
+        int[] size = {parseSize(System.getenv(LINES_VARIABLE)), parseSize(System.getenv(COLUMNS_VARIABLE))};
+        if (size[0] != UNKNOWN_SIZE && size[1] != UNKNOWN_SIZE) {
+            return size;
+        }
+        try {
+            Process stty = new ProcessBuilder(STTY_SIZE).redirectInput(new File(TERMINAL))
+                    .redirectError(ProcessBuilder.Redirect.DISCARD).start();
+            String output = new String(stty.getInputStream().readAllBytes(), StandardCharsets.US_ASCII)
+                    .trim();
+            if (stty.waitFor() != 0) {
+                return size;
+            }
+            // stty prints the rows and then the columns
+            String[] sttySize = output.split(" ");
+            if (size[0] == UNKNOWN_SIZE) {
+                size[0] = parseSize(sttySize[0]);
+            }
+            if (size[1] == UNKNOWN_SIZE && sttySize.length > 1) {
+                size[1] = parseSize(sttySize[1]);
+            }
+        } catch (IOException | RuntimeException exception) {
+            // not a terminal, or a platform without stty
+        } catch (InterruptedException interruptedException) {
+            Thread.currentThread().interrupt();
+        }
+        return size;
+    }
+
+    private static int parseSize(String value) {
+        if (value == null) {
+            return UNKNOWN_SIZE;
+        }
+        try {
+            return Math.max(Integer.parseInt(value.trim()), UNKNOWN_SIZE);
+        } catch (NumberFormatException numberFormatException) {
+            return UNKNOWN_SIZE;
+        }
+    }
+}
@@ -0,0 +1,28 @@
+package ascii_output;
+
+import java.io.Closeable;
+import java.io.IOException;
+
+/**
+ * An object implementing this interface writes an animation of ASCII art out one frame at a time, so
+ * that the first frames can be written while the later ones are still being converted.
+ * Closing the writer ends the animation and closes the underlying stream.
+ */
+public interface AsciiFrameWriter extends Closeable {
+    /**
+     * Writes the beginning of the animation. Must be called once before the first frame.
+     * @param rows The number of rows in every frame.
+     * @param cols The number of characters in every row.
+     * @throws IOException If writing fails.
+     */
+    void writeHeader(int rows, int cols) throws IOException;
+
+    /**
+     * Writes one frame. Rows a frame shares with the frame before may be the very same arrays, and none
+     * of the rows may be modified after they are written.
+     * @param frame The rows of characters of the frame.
+     * @param delayMillis How long the frame is shown, in milliseconds.
+     * @throws IOException If writing fails.
+     */
+    void writeFrame(char[][] frame, int delayMillis) throws IOException;
+}
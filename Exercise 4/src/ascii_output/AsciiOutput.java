@@ -10,4 +10,14 @@ public interface AsciiOutput {
      * Output the specified 2D array of chars
      */
     void out(char[][] chars);
+
+    /**
+     * Output the specified 2D array of chars, each in the color at the same place in the colors array.
+     * Outputs that cannot show colors ignore them.
+     * @param chars The chars to output.
+     * @param colors The packed RGB colors of the chars, laid out like them.
+     */
+    default void out(char[][] chars, int[][] colors) {
+        out(chars);
+    }
 }
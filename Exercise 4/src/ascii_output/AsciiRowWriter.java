@@ -0,0 +1,36 @@
+package ascii_output;
+
+import java.io.Closeable;
+import java.io.IOException;
+
+/**
+ * An object implementing this interface writes ASCII art out one row at a time, so that the art can be
+ * written while it is still being produced, without ever holding all of it.
+ * Closing the writer ends the art and closes the underlying stream.
+ */
+public interface AsciiRowWriter extends Closeable {
+    /**
+     * Writes the beginning of the art. Must be called once before the first row.
+     * @param cols The number of characters in every row.
+     * @throws IOException If writing fails.
+     */
+    void writeHeader(int cols) throws IOException;
+
+    /**
+     * Writes one row of characters.
+     * @param row The characters of the row.
+     * @throws IOException If writing fails.
+     */
+    void writeRow(char[] row) throws IOException;
+
+    /**
+     * Writes one row of characters, each in the color at the same index. Writers that cannot show
+     * colors ignore them.
+     * @param row The characters of the row.
+     * @param colors The packed RGB colors of the characters.
+     * @throws IOException If writing fails.
+     */
+    default void writeRow(char[] row, int[] colors) throws IOException {
+        writeRow(row);
+    }
+}
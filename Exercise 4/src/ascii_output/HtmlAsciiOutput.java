@@ -1,63 +1,80 @@
 package ascii_output;
 
-import java.io.BufferedWriter;
-import java.io.FileWriter;
+import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.WritableByteChannel;
 import java.util.logging.Logger;
 
 /**
- * Output a 2D array of chars to an HTML file viewable in a web browser.
+ * Output a 2D array of chars to an HTML file viewable in a web browser, or to any stream or channel
+ * (a gzip stream, a socket...). The page is streamed out row by row through an HtmlAsciiWriter.
  * @author Dan Nirel
  */
 public class HtmlAsciiOutput implements AsciiOutput {
-    private static final double BASE_LINE_SPACING = 0.8;
-    private static final double BASE_FONT_SIZE = 150.0;
-
     private final String fontName;
-    private final String filename;
+    private final String target;
+    private final StreamOpener opener;
+
+    private interface StreamOpener {
+        OutputStream open() throws IOException;
+    }
 
     public HtmlAsciiOutput(String filename, String fontName) {
         this.fontName = fontName;
-        this.filename = filename;
+        this.target = filename;
+        this.opener = () -> new FileOutputStream(filename);
+    }
+
+    /**
+     * Constructs an HtmlAsciiOutput that writes the page to a stream. The stream is closed once the page
+     * is written.
+     * @param outputStream The stream to write the page to.
+     * @param fontName The name of the font the page shows the characters in.
+     */
+    public HtmlAsciiOutput(OutputStream outputStream, String fontName) {
+        this.fontName = fontName;
+        this.target = outputStream.toString();
+        this.opener = () -> outputStream;
+    }
+
+    /**
+     * Constructs an HtmlAsciiOutput that writes the page to a channel. The channel is closed once the
+     * page is written.
+     * @param channel The channel to write the page to.
+     * @param fontName The name of the font the page shows the characters in.
+     */
+    public HtmlAsciiOutput(WritableByteChannel channel, String fontName) {
+        this.fontName = fontName;
+        this.target = channel.toString();
+        this.opener = () -> Channels.newOutputStream(channel);
     }
 
     @Override
     public void out(char[][] chars) {
-        try(BufferedWriter writer = new BufferedWriter(new FileWriter(filename))) {
-            writer.write(String.format(
-                "<!DOCTYPE html>\n"+
-                "<html>\n"+
-                "<body style=\""+
-                    "\tCOLOR:#000000;"+
-                    "\tTEXT-ALIGN:center;"+
-                    "\tFONT-SIZE:1px;\">\n"+
-                "<p style=\""+
-                    "\twhite-space:pre;"+
-                    "\tFONT-FAMILY:%s;"+
-                    "\tFONT-SIZE:%frem;"+
-                    "\tLETTER-SPACING:0.15em;"+
-                    "\tLINE-HEIGHT:%fem;\">\n",
-                    fontName, BASE_FONT_SIZE/chars[0].length, BASE_LINE_SPACING));
-
-            for(int y = 0 ; y < chars.length ; y++) {
-                for (int x = 0; x < chars[y].length ; x++) {
-                    String htmlRep;
-                    switch(chars[y][x]) {
-                        case '<': htmlRep = "&lt;";  break;
-                        case '>': htmlRep = "&gt;";  break;
-                        case '&': htmlRep = "&amp;"; break;
-                        default:  htmlRep = String.valueOf(chars[y][x]);
-                    }
-                    writer.write(htmlRep);
+        out(chars, null);
+    }
+
+    /**
+     * Output the specified 2D array of chars, each in its color. Runs of chars of the same color are
+     * written in a single span (see HtmlAsciiWriter).
+     * @param chars The chars to output.
+     * @param colors The packed RGB colors of the chars laid out like them, or null for black text.
+     */
+    @Override
+    public void out(char[][] chars, int[][] colors) {
+        try(HtmlAsciiWriter writer = new HtmlAsciiWriter(opener.open(), fontName)) {
+            writer.writeHeader(chars[0].length);
+            for (int i = 0; i < chars.length; i++) {
+                if (colors == null) {
+                    writer.writeRow(chars[i]);
+                } else {
+                    writer.writeRow(chars[i], colors[i]);
                 }
-                writer.newLine();
             }
-            writer.write(
-                "</p>\n"+
-                "</body>\n"+
-                "</html>\n");
         } catch(IOException e) {
-            Logger.getGlobal().severe(String.format("Failed to write to \"%s\"", filename));
+            Logger.getGlobal().severe(String.format("Failed to write to \"%s\"", target));
         }
     }
 }
@@ -0,0 +1,198 @@
+package ascii_output;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.channels.Channels;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Writes ASCII art as an HTML page row by row, so a page can be streamed out while it is still being
+ * produced. Every row is escaped into one reusable buffer and written with a single call.
+ * Colored rows are written with a span per run of characters of the same color rather than per character.
+ * The colors are rounded to the 4096 of the short #rgb form, which both shortens every span and makes
+ * neighbouring characters of nearly the same color share one, and spaces join whatever run they are in
+ * since they show no color.
+ * Closing the writer ends the page and closes the underlying stream.
+ */
+public class HtmlAsciiWriter implements AsciiRowWriter {
+    private static final double BASE_LINE_SPACING = 0.8;
+    private static final double BASE_FONT_SIZE = 150.0;
+    private static final String HEADER =
+            "<!DOCTYPE html>\n"+
+            "<html>\n"+
+            "<body style=\""+
+                "\tCOLOR:#000000;"+
+                "\tTEXT-ALIGN:center;"+
+                "\tFONT-SIZE:1px;\">\n"+
+            "<p style=\""+
+                "\twhite-space:pre;"+
+                "\tFONT-FAMILY:%s;"+
+                "\tFONT-SIZE:%frem;"+
+                "\tLETTER-SPACING:0.15em;"+
+                "\tLINE-HEIGHT:%fem;\">\n";
+    private static final String FOOTER =
+            "</p>\n"+
+            "</body>\n"+
+            "</html>\n";
+    private static final char[] LESS_THAN = "&lt;".toCharArray();
+    private static final char[] GREATER_THAN = "&gt;".toCharArray();
+    private static final char[] AMPERSAND = "&amp;".toCharArray();
+    private static final char[] LINE_SEPARATOR = System.lineSeparator().toCharArray();
+    private static final char[] SPAN_START = "<span style=\"color:#".toCharArray();
+    private static final char[] SPAN_START_END = "\">".toCharArray();
+    private static final char[] SPAN_END = "</span>".toCharArray();
+    private static final char[] HEX_DIGITS = "0123456789abcdef".toCharArray();
+    private static final int SHORT_COLOR_DIGITS = 3;
+    private static final int DIGIT_BITS = 4;
+    private static final int DIGIT_MASK = 0xF;
+    private static final int MAX_DIGIT = 15;
+    private static final int MAX_CHANNEL = 255;
+    private static final int CHANNEL_BITS = 8;
+    private static final int CHANNEL_MASK = 0xFF;
+    private static final int NO_COLOR = -1;
+    private static final char SPACE = ' ';
+
+    private final Writer writer;
+    private final String fontName;
+    private char[] rowBuffer = new char[0];
+    private boolean headerWritten = false;
+
+    /**
+     * Constructs an HtmlAsciiWriter over an output stream, such as a file, a gzip stream or a socket.
+     * @param outputStream The stream to write the page to.
+     * @param fontName The name of the font the page shows the characters in.
+     */
+    public HtmlAsciiWriter(OutputStream outputStream, String fontName) {
+        this.writer = new BufferedWriter(new OutputStreamWriter(outputStream, StandardCharsets.UTF_8));
+        this.fontName = fontName;
+    }
+
+    /**
+     * Constructs an HtmlAsciiWriter over a byte channel.
+     * @param channel The channel to write the page to.
+     * @param fontName The name of the font the page shows the characters in.
+     */
+    public HtmlAsciiWriter(WritableByteChannel channel, String fontName) {
+        this(Channels.newOutputStream(channel), fontName);
+    }
+
+    /**
+     * Writes the beginning of the page. Must be called once before the first row.
+     * @param cols The number of characters in every row, which the font size is scaled by.
+     * @throws IOException If writing fails.
+     */
+    @Override
+    public void writeHeader(int cols) throws IOException {
+        this.writer.write(String.format(HEADER, fontName, BASE_FONT_SIZE / cols, BASE_LINE_SPACING));
+        this.headerWritten = true;
+    }
+
+    /**
+     * Writes one row of characters, escaping the ones that have a meaning in HTML.
+     * @param row The characters of the row.
+     * @throws IOException If writing fails.
+     */
+    @Override
+    public void writeRow(char[] row) throws IOException {
+        // every character takes at most as many chars as the longest escape
+        int maxLength = row.length * AMPERSAND.length + LINE_SEPARATOR.length;
+        if (this.rowBuffer.length < maxLength) {
+            this.rowBuffer = new char[maxLength];
+        }
+        int length = 0;
+        for (char c : row) {
+            length = appendEscaped(c, length);
+        }
+        length = append(LINE_SEPARATOR, length);
+        this.writer.write(this.rowBuffer, 0, length);
+    }
+
+    /**
+     * Writes one row of characters in their colors, escaping the ones that have a meaning in HTML.
+     * @param row The characters of the row.
+     * @param colors The packed RGB colors of the characters.
+     * @throws IOException If writing fails.
+     */
+    @Override
+    public void writeRow(char[] row, int[] colors) throws IOException {
+        // at worst every character opens a span of its own and closes the one before it
+        int spanLength = SPAN_START.length + SHORT_COLOR_DIGITS + SPAN_START_END.length + SPAN_END.length;
+        int maxLength = row.length * (AMPERSAND.length + spanLength) + LINE_SEPARATOR.length;
+        if (this.rowBuffer.length < maxLength) {
+            this.rowBuffer = new char[maxLength];
+        }
+        int length = 0;
+        int spanColor = NO_COLOR;
+        for (int x = 0; x < row.length; x++) {
+            if (row[x] != SPACE) {
+                int color = shortColor(colors[x]);
+                if (color != spanColor) {
+                    if (spanColor != NO_COLOR) {
+                        length = append(SPAN_END, length);
+                    }
+                    length = appendSpanStart(color, length);
+                    spanColor = color;
+                }
+            }
+            length = appendEscaped(row[x], length);
+        }
+        if (spanColor != NO_COLOR) {
+            length = append(SPAN_END, length);
+        }
+        length = append(LINE_SEPARATOR, length);
+        this.writer.write(this.rowBuffer, 0, length);
+    }
+
+    /**
+     * Ends the page, if it was begun, and closes the underlying stream.
+     * @throws IOException If writing or closing fails.
+     */
+    @Override
+    public void close() throws IOException {
+        try {
+            if (this.headerWritten) {
+                this.writer.write(FOOTER);
+            }
+        } finally {
+            this.writer.close();
+        }
+    }
+
+    private int appendEscaped(char c, int offset) {
+        switch (c) {
+            case '<': return append(LESS_THAN, offset);
+            case '>': return append(GREATER_THAN, offset);
+            case '&': return append(AMPERSAND, offset);
+            default:
+                this.rowBuffer[offset] = c;
+                return offset + 1;
+        }
+    }
+
+    private int appendSpanStart(int shortColor, int offset) {
+        offset = append(SPAN_START, offset);
+        for (int digit = SHORT_COLOR_DIGITS - 1; digit >= 0; digit--) {
+            this.rowBuffer[offset++] = HEX_DIGITS[(shortColor >> (digit * DIGIT_BITS)) & DIGIT_MASK];
+        }
+        return append(SPAN_START_END, offset);
+    }
+
+    private static int shortColor(int rgb) {
+        // every channel is rounded to the nearest of the 16 values a digit of #rgb stands for
+        int shortColor = 0;
+        for (int channel = SHORT_COLOR_DIGITS - 1; channel >= 0; channel--) {
+            int value = (rgb >> (channel * CHANNEL_BITS)) & CHANNEL_MASK;
+            shortColor = shortColor << DIGIT_BITS | (value * MAX_DIGIT + MAX_CHANNEL / 2) / MAX_CHANNEL;
+        }
+        return shortColor;
+    }
+
+    private int append(char[] chars, int offset) {
+        System.arraycopy(chars, 0, this.rowBuffer, offset, chars.length);
+        return offset + chars.length;
+    }
+}
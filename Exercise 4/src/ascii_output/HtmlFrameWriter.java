@@ -0,0 +1,144 @@
+package ascii_output;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Writes an animation of ASCII art as an HTML page that plays it: every frame is a paragraph styled like
+ * the one HtmlAsciiWriter writes, hidden until a small script at the end of the page shows the frames in
+ * turn, each for its own delay, over and over.
+ * Closing the writer ends the page and closes the underlying stream.
+ */
+public class HtmlFrameWriter implements AsciiFrameWriter {
+    private static final double BASE_LINE_SPACING = 0.8;
+    private static final double BASE_FONT_SIZE = 150.0;
+    private static final String HEADER =
+            "<!DOCTYPE html>\n"+
+            "<html>\n"+
+            "<head>\n"+
+            "<style>\n"+
+            "p.frame {"+
+                "\tdisplay:none;"+
+                "\twhite-space:pre;"+
+                "\tFONT-FAMILY:%s;"+
+                "\tFONT-SIZE:%frem;"+
+                "\tLETTER-SPACING:0.15em;"+
+                "\tLINE-HEIGHT:%fem;}\n"+
+            "</style>\n"+
+            "</head>\n"+
+            "<body style=\""+
+                "\tCOLOR:#000000;"+
+                "\tTEXT-ALIGN:center;"+
+                "\tFONT-SIZE:1px;\">\n";
+    private static final String FRAME_START = "<p class=\"frame\" data-delay=\"%d\">\n";
+    private static final String FRAME_END = "</p>\n";
+    private static final String FOOTER =
+            "<script>\n"+
+            "var frames = document.getElementsByClassName(\"frame\");\n"+
+            "var shown = 0;\n"+
+            "function show(next) {\n"+
+            "\tframes[shown].style.display = \"none\";\n"+
+            "\tshown = next;\n"+
+            "\tframes[shown].style.display = \"block\";\n"+
+            "\tsetTimeout(function() { show((shown + 1) % frames.length); }, "+
+                "frames[shown].dataset.delay);\n"+
+            "}\n"+
+            "if (frames.length > 0) {\n"+
+            "\tshow(0);\n"+
+            "}\n"+
+            "</script>\n"+
+            "</body>\n"+
+            "</html>\n";
+    private static final char[] LESS_THAN = "&lt;".toCharArray();
+    private static final char[] GREATER_THAN = "&gt;".toCharArray();
+    private static final char[] AMPERSAND = "&amp;".toCharArray();
+    private static final char[] LINE_SEPARATOR = System.lineSeparator().toCharArray();
+
+    private final Writer writer;
+    private final String fontName;
+    private char[] rowBuffer = new char[0];
+    private boolean headerWritten = false;
+
+    /**
+     * Constructs an HtmlFrameWriter over an output stream.
+     * @param outputStream The stream to write the page to.
+     * @param fontName The name of the font the page shows the characters in.
+     */
+    public HtmlFrameWriter(OutputStream outputStream, String fontName) {
+        this.writer = new BufferedWriter(new OutputStreamWriter(outputStream, StandardCharsets.UTF_8));
+        this.fontName = fontName;
+    }
+
+    /**
+     * Writes the beginning of the page. Must be called once before the first frame.
+     * @param rows The number of rows in every frame.
+     * @param cols The number of characters in every row, which the font size is scaled by.
+     * @throws IOException If writing fails.
+     */
+    @Override
+    public void writeHeader(int rows, int cols) throws IOException {
+        this.writer.write(String.format(HEADER, fontName, BASE_FONT_SIZE / cols, BASE_LINE_SPACING));
+        this.headerWritten = true;
+    }
+
+    /**
+     * Writes one frame as a hidden paragraph, escaping the characters that have a meaning in HTML.
+     * @param frame The rows of characters of the frame.
+     * @param delayMillis How long the frame is shown, in milliseconds.
+     * @throws IOException If writing fails.
+     */
+    @Override
+    public void writeFrame(char[][] frame, int delayMillis) throws IOException {
+        this.writer.write(String.format(FRAME_START, delayMillis));
+        for (char[] row : frame) {
+            // every character takes at most as many chars as the longest escape
+            int maxLength = row.length * AMPERSAND.length + LINE_SEPARATOR.length;
+            if (this.rowBuffer.length < maxLength) {
+                this.rowBuffer = new char[maxLength];
+            }
+            int length = 0;
+            for (char c : row) {
+                length = appendEscaped(c, length);
+            }
+            length = append(LINE_SEPARATOR, length);
+            this.writer.write(this.rowBuffer, 0, length);
+        }
+        this.writer.write(FRAME_END);
+    }
+
+    /**
+     * Ends the page with the script that plays it, if the page was begun, and closes the underlying
+     * stream.
+     * @throws IOException If writing or closing fails.
+     */
+    @Override
+    public void close() throws IOException {
+        try {
+            if (this.headerWritten) {
+                this.writer.write(FOOTER);
+            }
+        } finally {
+            this.writer.close();
+        }
+    }
+
+    private int appendEscaped(char c, int offset) {
+        switch (c) {
+            case '<': return append(LESS_THAN, offset);
+            case '>': return append(GREATER_THAN, offset);
+            case '&': return append(AMPERSAND, offset);
+            default:
+                this.rowBuffer[offset] = c;
+                return offset + 1;
+        }
+    }
+
+    private int append(char[] chars, int offset) {
+        System.arraycopy(chars, 0, this.rowBuffer, offset, chars.length);
+        return offset + chars.length;
+    }
+}
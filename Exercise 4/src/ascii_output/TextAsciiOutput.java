@@ -0,0 +1,33 @@
+package ascii_output;
+
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.logging.Logger;
+
+/**
+ * Output a 2D array of chars to a plain text file, laid out like ConsoleAsciiOutput prints it.
+ * The file is written row by row through a TextAsciiWriter.
+ */
+public class TextAsciiOutput implements AsciiOutput {
+    private final String filename;
+
+    /**
+     * Constructs a TextAsciiOutput that writes to the given file.
+     * @param filename The path of the text file to write.
+     */
+    public TextAsciiOutput(String filename) {
+        this.filename = filename;
+    }
+
+    @Override
+    public void out(char[][] chars) {
+        try (TextAsciiWriter writer = new TextAsciiWriter(new FileOutputStream(filename))) {
+            writer.writeHeader(chars.length == 0 ? 0 : chars[0].length);
+            for (char[] row : chars) {
+                writer.writeRow(row);
+            }
+        } catch (IOException e) {
+            Logger.getGlobal().severe(String.format("Failed to write to \"%s\"", filename));
+        }
+    }
+}
@@ -0,0 +1,47 @@
+package ascii_output;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+
+/**
+ * Writes ASCII art as plain text row by row, laid out like ConsoleAsciiOutput prints it.
+ */
+public class TextAsciiWriter implements AsciiRowWriter {
+    private static final char SEPARATOR = ' ';
+
+    private final BufferedWriter writer;
+    private char[] line = new char[0];
+
+    /**
+     * Constructs a TextAsciiWriter over an output stream, written in the platform's default charset.
+     * @param outputStream The stream to write the text to.
+     */
+    public TextAsciiWriter(OutputStream outputStream) {
+        this.writer = new BufferedWriter(new OutputStreamWriter(outputStream));
+    }
+
+    @Override
+    public void writeHeader(int cols) {
+        this.line = new char[cols * 2];
+    }
+
+    @Override
+    public void writeRow(char[] row) throws IOException {
+        if (this.line.length < row.length * 2) {
+            this.line = new char[row.length * 2];
+        }
+        for (int x = 0; x < row.length; x++) {
+            this.line[2 * x] = row[x];
+            this.line[2 * x + 1] = SEPARATOR;
+        }
+        this.writer.write(this.line, 0, row.length * 2);
+        this.writer.newLine();
+    }
+
+    @Override
+    public void close() throws IOException {
+        this.writer.close();
+    }
+}
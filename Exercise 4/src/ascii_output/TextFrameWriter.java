@@ -0,0 +1,75 @@
+package ascii_output;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * Writes an animation of ASCII art as compact text, in which every frame holds only the rows that differ
+ * from the frame before:
+ * <pre>
+ * ascii-animation COLS ROWS
+ * frame DELAY_MILLIS CHANGED_ROWS
+ * ROW CHARACTERS
+ * ...
+ * </pre>
+ * The first frame lists all its rows. The characters of a row are written as they are, without the
+ * spaces TextAsciiWriter puts between them, and a player is expected to lay them out itself.
+ */
+public class TextFrameWriter implements AsciiFrameWriter {
+    private static final String HEADER = "ascii-animation %d %d";
+    private static final String FRAME_HEADER = "frame %d %d";
+    private static final char SEPARATOR = ' ';
+
+    private final BufferedWriter writer;
+    private char[][] previousFrame;
+
+    /**
+     * Constructs a TextFrameWriter over an output stream, written in UTF-8.
+     * @param outputStream The stream to write the animation to.
+     */
+    public TextFrameWriter(OutputStream outputStream) {
+        this.writer = new BufferedWriter(new OutputStreamWriter(outputStream, StandardCharsets.UTF_8));
+    }
+
+    @Override
+    public void writeHeader(int rows, int cols) throws IOException {
+        this.writer.write(String.format(HEADER, cols, rows));
+        this.writer.newLine();
+    }
+
+    @Override
+    public void writeFrame(char[][] frame, int delayMillis) throws IOException {
+        int changedRows = 0;
+        for (int y = 0; y < frame.length; y++) {
+            if (this.isChanged(frame, y)) {
+                changedRows++;
+            }
+        }
+        this.writer.write(String.format(FRAME_HEADER, delayMillis, changedRows));
+        this.writer.newLine();
+        for (int y = 0; y < frame.length; y++) {
+            if (this.isChanged(frame, y)) {
+                this.writer.write(Integer.toString(y));
+                this.writer.write(SEPARATOR);
+                this.writer.write(frame[y]);
+                this.writer.newLine();
+            }
+        }
+        this.previousFrame = frame;
+    }
+
+    @Override
+    public void close() throws IOException {
+        this.writer.close();
+    }
+
+    private boolean isChanged(char[][] frame, int y) {
+        // rows shared with the frame before are the same arrays, so most are told apart without comparing
+        return this.previousFrame == null || (frame[y] != this.previousFrame[y] &&
+                !Arrays.equals(frame[y], this.previousFrame[y]));
+    }
+}
@@ -0,0 +1,98 @@
+package image;
+
+/**
+ * One frame of an animation as it is shown: the whole picture the animation shows during the frame, how
+ * long it is shown, and the rectangle of the picture that differs from the frame before it.
+ */
+public class AnimationFrame {
+    private final Image image;
+    private final int delayMillis;
+    private final int changedTop;
+    private final int changedLeft;
+    private final int changedBottom;
+    private final int changedRight;
+
+    /**
+     * Constructs a frame.
+     *
+     * @param image         The picture of the frame. It is kept as is (not copied), and must not change.
+     * @param delayMillis   How long the frame is shown, in milliseconds.
+     * @param changedTop    The first row of the changed rectangle.
+     * @param changedLeft   The first column of the changed rectangle.
+     * @param changedBottom The row after the last row of the changed rectangle, equal to changedTop if
+     *                      nothing changed.
+     * @param changedRight  The column after the last column of the changed rectangle.
+     */
+    AnimationFrame(Image image, int delayMillis, int changedTop, int changedLeft, int changedBottom,
+                   int changedRight) {
+        this.image = image;
+        this.delayMillis = delayMillis;
+        this.changedTop = changedTop;
+        this.changedLeft = changedLeft;
+        this.changedBottom = changedBottom;
+        this.changedRight = changedRight;
+    }
+
+    /**
+     * Returns the picture of the frame.
+     *
+     * @return The whole picture shown during the frame.
+     */
+    public Image getImage() {
+        return this.image;
+    }
+
+    /**
+     * Returns how long the frame is shown.
+     *
+     * @return The delay before the next frame, in milliseconds.
+     */
+    public int getDelayMillis() {
+        return this.delayMillis;
+    }
+
+    /**
+     * Returns whether any pixel differs from the frame before.
+     *
+     * @return True if the changed rectangle is not empty.
+     */
+    boolean hasChanges() {
+        return this.changedTop < this.changedBottom;
+    }
+
+    /**
+     * Returns the first row of the rectangle that differs from the frame before.
+     *
+     * @return The first changed row.
+     */
+    int getChangedTop() {
+        return this.changedTop;
+    }
+
+    /**
+     * Returns the first column of the rectangle that differs from the frame before.
+     *
+     * @return The first changed column.
+     */
+    int getChangedLeft() {
+        return this.changedLeft;
+    }
+
+    /**
+     * Returns the row after the last row of the rectangle that differs from the frame before.
+     *
+     * @return The row after the last changed row.
+     */
+    int getChangedBottom() {
+        return this.changedBottom;
+    }
+
+    /**
+     * Returns the column after the last column of the rectangle that differs from the frame before.
+     *
+     * @return The column after the last changed column.
+     */
+    int getChangedRight() {
+        return this.changedRight;
+    }
+}
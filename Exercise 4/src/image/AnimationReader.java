@@ -0,0 +1,308 @@
+package image;
+
+import org.w3c.dom.Node;
+
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReader;
+import javax.imageio.metadata.IIOMetadata;
+import javax.imageio.stream.ImageInputStream;
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+
+/**
+ * Reads the frames of an animation one at a time: the frames of an animated GIF (or of any other image
+ * file that holds several images), or a numbered sequence of image files in a directory, ordered by their
+ * numbers so that frame2 comes before frame10.
+ * The frames of a GIF are put together the way browsers show them: every frame is drawn over what the
+ * frames before it left, at its position and leaving its transparent pixels out, and is then cleared or
+ * restored as its disposal method says. The picture starts out white, like the margins of a padded image.
+ * Every frame comes with the rectangle of its picture that differs from the frame before, found by
+ * comparing the two pictures (only where the frame could have changed anything, for a GIF), so that the
+ * later stages of a conversion can redo only that part.
+ */
+public class AnimationReader implements Closeable {
+    /**
+     * How long a frame is shown when its file does not say, in milliseconds.
+     */
+    public static final int DEFAULT_DELAY_MILLIS = 100;
+    private static final String UNREADABLE_ANIMATION = "Could not decode animation \"%s\".";
+    private static final String FRAME_SIZE_ERROR = "Frame \"%s\" is not the size of the first frame.";
+    private static final String GIF_STREAM_FORMAT = "javax_imageio_gif_stream_1.0";
+    private static final String GIF_IMAGE_FORMAT = "javax_imageio_gif_image_1.0";
+    private static final String SCREEN_DESCRIPTOR = "LogicalScreenDescriptor";
+    private static final String SCREEN_WIDTH = "logicalScreenWidth";
+    private static final String SCREEN_HEIGHT = "logicalScreenHeight";
+    private static final String IMAGE_DESCRIPTOR = "ImageDescriptor";
+    private static final String IMAGE_LEFT = "imageLeftPosition";
+    private static final String IMAGE_TOP = "imageTopPosition";
+    private static final String CONTROL_EXTENSION = "GraphicControlExtension";
+    private static final String DISPOSAL_METHOD = "disposalMethod";
+    private static final String DELAY_TIME = "delayTime";
+    private static final String RESTORE_TO_BACKGROUND = "restoreToBackgroundColor";
+    private static final String RESTORE_TO_PREVIOUS = "restoreToPrevious";
+    // GIF delays are in hundredths of a second
+    private static final int MILLIS_IN_DELAY_UNIT = 10;
+    private static final int WHITE = Color.WHITE.getRGB();
+    private static final int ALPHA_SHIFT = 24;
+    private static final char EXTENSION_DOT = '.';
+
+    private final ImageInputStream stream;
+    private final ImageReader reader;
+    private final List<File> frameFiles;
+    private final int width;
+    private final int height;
+    private int nextFrame = 0;
+    private int sequenceDelayMillis = DEFAULT_DELAY_MILLIS;
+    private int[] previousPixels;
+    // the picture the frames of an image file are drawn over, and what the last frame is disposed of by
+    private int[] canvas;
+    private Rectangle disposedArea;
+    private int[] restoredCanvas;
+
+    /**
+     * Opens an animation.
+     *
+     * @param path The path of an image file, or of a directory of numbered image files.
+     * @throws IOException If the file cannot be read, or the directory has no image files.
+     */
+    public AnimationReader(String path) throws IOException {
+        File file = new File(path);
+        if (file.isDirectory()) {
+            this.stream = null;
+            this.reader = null;
+            this.frameFiles = listFrames(file);
+            if (this.frameFiles.isEmpty()) {
+                throw new IOException(String.format(UNREADABLE_ANIMATION, path));
+            }
+            Image firstFrame = new Image(this.frameFiles.get(0).getPath());
+            this.width = firstFrame.getWidth();
+            this.height = firstFrame.getHeight();
+            return;
+        }
+        this.frameFiles = null;
+        this.stream = ImageIO.createImageInputStream(file);
+        if (this.stream == null) {
+            throw new IOException(String.format(UNREADABLE_ANIMATION, path));
+        }
+        try {
+            Iterator<ImageReader> readers = ImageIO.getImageReaders(this.stream);
+            if (!readers.hasNext()) {
+                throw new IOException(String.format(UNREADABLE_ANIMATION, path));
+            }
+            this.reader = readers.next();
+            this.reader.setInput(this.stream, false, false);
+            Node screen = metadataNode(this.reader.getStreamMetadata(), GIF_STREAM_FORMAT, SCREEN_DESCRIPTOR);
+            this.width = screen == null ? this.reader.getWidth(0) : intAttribute(screen, SCREEN_WIDTH);
+            this.height = screen == null ? this.reader.getHeight(0) : intAttribute(screen, SCREEN_HEIGHT);
+        } catch (IOException | RuntimeException e) {
+            this.stream.close();
+            throw e;
+        }
+        this.canvas = new int[this.width * this.height];
+        Arrays.fill(this.canvas, WHITE);
+    }
+
+    /**
+     * Returns the width of the frames.
+     *
+     * @return The width of every frame's picture.
+     */
+    public int getWidth() {
+        return this.width;
+    }
+
+    /**
+     * Returns the height of the frames.
+     *
+     * @return The height of every frame's picture.
+     */
+    public int getHeight() {
+        return this.height;
+    }
+
+    /**
+     * Sets how long every frame of a sequence of image files is shown. Image files that hold their own
+     * delays, such as GIFs, keep them.
+     *
+     * @param delayMillis The delay between frames, in milliseconds.
+     */
+    public void setSequenceDelayMillis(int delayMillis) {
+        this.sequenceDelayMillis = delayMillis;
+    }
+
+    /**
+     * Reads the next frame.
+     *
+     * @return The next frame, or null if all the frames were already read.
+     * @throws IOException If the frame cannot be decoded, or is not the size of the first frame.
+     */
+    public AnimationFrame readFrame() throws IOException {
+        return this.frameFiles == null ? this.readFileFrame() : this.readSequenceFrame();
+    }
+
+    /**
+     * Closes the animation file.
+     *
+     * @throws IOException If closing the file fails.
+     */
+    @Override
+    public void close() throws IOException {
+        if (this.reader != null) {
+            this.reader.dispose();
+            this.stream.close();
+        }
+    }
+
+    private AnimationFrame readSequenceFrame() throws IOException {
+        if (this.nextFrame == this.frameFiles.size()) {
+            return null;
+        }
+        File file = this.frameFiles.get(this.nextFrame++);
+        Image image = new Image(file.getPath());
+        if (image.getWidth() != this.width || image.getHeight() != this.height) {
+            throw new IOException(String.format(FRAME_SIZE_ERROR, file));
+        }
+        return this.toFrame(image.getPixels(), this.sequenceDelayMillis,
+                new Rectangle(0, 0, this.width, this.height));
+    }
+
+    private AnimationFrame readFileFrame() throws IOException {
+        BufferedImage frame;
+        try {
+            frame = this.reader.read(this.nextFrame);
+        } catch (IndexOutOfBoundsException indexOutOfBoundsException) {
+            return null;
+        }
+        IIOMetadata metadata = this.reader.getImageMetadata(this.nextFrame++);
+        Node descriptor = metadataNode(metadata, GIF_IMAGE_FORMAT, IMAGE_DESCRIPTOR);
+        Node control = metadataNode(metadata, GIF_IMAGE_FORMAT, CONTROL_EXTENSION);
+        Rectangle drawnArea = new Rectangle(descriptor == null ? 0 : intAttribute(descriptor, IMAGE_LEFT),
+                descriptor == null ? 0 : intAttribute(descriptor, IMAGE_TOP), frame.getWidth(),
+                frame.getHeight()).intersection(new Rectangle(0, 0, this.width, this.height));
+        String disposalMethod = control == null ? null : control.getAttributes()
+                .getNamedItem(DISPOSAL_METHOD).getNodeValue();
+        int delay = control == null ? 0 : intAttribute(control, DELAY_TIME) * MILLIS_IN_DELAY_UNIT;
+        // what the last frame is disposed of by may have changed pixels this frame does not draw over
+        Rectangle changedArea = drawnArea;
+        if (this.disposedArea != null) {
+            this.dispose();
+            changedArea = drawnArea.union(this.disposedArea);
+        }
+        this.restoredCanvas = RESTORE_TO_PREVIOUS.equals(disposalMethod) ? this.canvas.clone() : null;
+        this.disposedArea = RESTORE_TO_PREVIOUS.equals(disposalMethod) ||
+                RESTORE_TO_BACKGROUND.equals(disposalMethod) ? drawnArea : null;
+        this.draw(frame, drawnArea);
+        return this.toFrame(this.canvas.clone(), delay == 0 ? DEFAULT_DELAY_MILLIS : delay, changedArea);
+    }
+
+    private void draw(BufferedImage frame, Rectangle area) {
+        if (area.isEmpty()) {
+            return;
+        }
+        int[] framePixels = frame.getRGB(0, 0, area.width, area.height, null, 0, area.width);
+        for (int row = 0; row < area.height; row++) {
+            int canvasStart = (area.y + row) * this.width + area.x;
+            for (int col = 0; col < area.width; col++) {
+                int rgb = framePixels[row * area.width + col];
+                if (rgb >>> ALPHA_SHIFT != 0) {
+                    this.canvas[canvasStart + col] = rgb;
+                }
+            }
+        }
+    }
+
+    private void dispose() {
+        Rectangle area = this.disposedArea;
+        for (int row = area.y; row < area.y + area.height; row++) {
+            int start = row * this.width + area.x;
+            if (this.restoredCanvas != null) {
+                System.arraycopy(this.restoredCanvas, start, this.canvas, start, area.width);
+            } else {
+                Arrays.fill(this.canvas, start, start + area.width, WHITE);
+            }
+        }
+    }
+
+    private AnimationFrame toFrame(int[] pixels, int delayMillis, Rectangle changedArea) {
+        int[] previous = this.previousPixels;
+        this.previousPixels = pixels;
+        Image image = new Image(pixels, this.width, this.height);
+        if (previous == null) {
+            return new AnimationFrame(image, delayMillis, 0, 0, this.height, this.width);
+        }
+        // the bounding box of the pixels that differ, within the area that could have changed
+        int top = changedArea.y + changedArea.height;
+        int bottom = changedArea.y;
+        int left = changedArea.x + changedArea.width;
+        int right = changedArea.x;
+        for (int row = changedArea.y; row < changedArea.y + changedArea.height; row++) {
+            int from = row * this.width + changedArea.x;
+            int to = from + changedArea.width;
+            int mismatch = Arrays.mismatch(previous, from, to, pixels, from, to);
+            if (mismatch < 0) {
+                continue;
+            }
+            int last = to - 1;
+            while (previous[last] == pixels[last]) {
+                last--;
+            }
+            top = Math.min(top, row);
+            bottom = row + 1;
+            left = Math.min(left, changedArea.x + mismatch);
+            right = Math.max(right, last - row * this.width + 1);
+        }
+        if (top >= bottom) {
+            return new AnimationFrame(image, delayMillis, 0, 0, 0, 0);
+        }
+        return new AnimationFrame(image, delayMillis, top, left, bottom, right);
+    }
+
+    private static List<File> listFrames(File directory) {
+        Set<String> suffixes = new HashSet<>(Arrays.asList(ImageIO.getReaderFileSuffixes()));
+        List<File> frames = new ArrayList<>();
+        File[] children = directory.listFiles();
+        if (children == null) {
+            return frames;
+        }
+        for (File child : children) {
+            String name = child.getName();
+            int dot = name.lastIndexOf(EXTENSION_DOT);
+            if (child.isFile() && dot >= 0 &&
+                    suffixes.contains(name.substring(dot + 1).toLowerCase(Locale.ROOT))) {
+                frames.add(child);
+            }
+        }
+        // numbered names that differ only in their numbers are ordered by them when shorter ones go first
+        frames.sort(Comparator.comparingInt((File frame) -> frame.getName().length())
+                .thenComparing(File::getName));
+        return frames;
+    }
+
+    private static Node metadataNode(IIOMetadata metadata, String format, String name) {
+        if (metadata == null || !Arrays.asList(metadata.getMetadataFormatNames()).contains(format)) {
+            return null;
+        }
+        for (Node node = metadata.getAsTree(format).getFirstChild(); node != null;
+             node = node.getNextSibling()) {
+            if (node.getNodeName().equals(name)) {
+                return node;
+            }
+        }
+        return null;
+    }
+
+    private static int intAttribute(Node node, String name) {
+        return Integer.parseInt(node.getAttributes().getNamedItem(name).getNodeValue());
+    }
+}
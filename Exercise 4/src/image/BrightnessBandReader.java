@@ -0,0 +1,215 @@
+package image;
+
+import exceptions.OutOfBoundariesException;
+
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReadParam;
+import javax.imageio.ImageReader;
+import javax.imageio.stream.ImageInputStream;
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Iterator;
+
+/**
+ * Reads the brightness of an image's sub-images one row of sub-images (a band) at a time, straight from
+ * the image file, without ever holding the whole image in memory. The memory taken is proportional to
+ * the image's width times the height of the read-ahead (or of a band), not to the image's size.
+ * The brightness values are exactly those that ImageProcessor computes for the same image and
+ * resolution, margins of the (virtually) padded image included.
+ * Formats that can only be decoded from the start (PNG, JPEG) are decoded in a single pass, a few rows
+ * ahead of the bands (see SequentialRowDecoder); other formats, and interlaced or progressive images,
+ * are decoded in regions of whole rows through their ImageReader.
+ */
+public class BrightnessBandReader implements Closeable {
+    private static final String UNREADABLE_IMAGE = "Could not decode image file \"%s\".";
+    private static final long DEFAULT_READ_AHEAD_PIXELS = 1L << 22;
+
+    private final ImageInputStream stream;
+    private final ImageReader reader;
+    private final int sourceWidth;
+    private final int sourceHeight;
+    private final int rowOffset;
+    private final int colOffset;
+    private final int size;
+    private final int rows;
+    private final int cols;
+    private final int[] rgbRow;
+    private final int[] luminanceRow;
+    private final long[] luminanceSums;
+    private LuminanceEngine luminanceEngine = LuminanceEngine.SCALAR;
+    private long readAheadPixels = DEFAULT_READ_AHEAD_PIXELS;
+    private int nextBand = 0;
+    // the region of the image that was decoded last, and its first row in the image
+    private BufferedImage region;
+    private int regionTop;
+    // the single pass decoding of the image, if it is decoded that way, and whether it was tried
+    private SequentialRowDecoder rowDecoder;
+    private boolean isDecoderOpened = false;
+
+    /**
+     * Opens an image file for reading its sub-images' brightness at the given resolution.
+     *
+     * @param imagePath  The path of the image file.
+     * @param resolution The number of sub-images in every row, a power of two between the minimal number
+     *                   of characters in a row and the padded width of the image.
+     * @throws IOException If the image cannot be read, or the resolution does not fit it.
+     */
+    public BrightnessBandReader(String imagePath, int resolution) throws IOException {
+        this.stream = ImageIO.createImageInputStream(new File(imagePath));
+        if (this.stream == null) {
+            throw new IOException(String.format(UNREADABLE_IMAGE, imagePath));
+        }
+        try {
+            Iterator<ImageReader> readers = ImageIO.getImageReaders(this.stream);
+            if (!readers.hasNext()) {
+                throw new IOException(String.format(UNREADABLE_IMAGE, imagePath));
+            }
+            this.reader = readers.next();
+            this.reader.setInput(this.stream, false, false);
+            this.sourceWidth = this.reader.getWidth(0);
+            this.sourceHeight = this.reader.getHeight(0);
+        } catch (IOException | RuntimeException e) {
+            this.stream.close();
+            throw e;
+        }
+        int width = PaddedImage.paddedSize(this.sourceWidth);
+        int height = PaddedImage.paddedSize(this.sourceHeight);
+        int minCharsInRow = Math.max(1, width / height);
+        if (Integer.bitCount(resolution) != 1 || resolution > width || resolution < minCharsInRow) {
+            this.close();
+            throw new OutOfBoundariesException();
+        }
+        this.rowOffset = (height - this.sourceHeight) / 2;
+        this.colOffset = (width - this.sourceWidth) / 2;
+        this.size = width / resolution;
+        this.rows = height / this.size;
+        this.cols = resolution;
+        this.rgbRow = new int[this.sourceWidth];
+        this.luminanceRow = new int[this.sourceWidth];
+        this.luminanceSums = new long[this.cols];
+    }
+
+    /**
+     * Returns the number of bands, which is the number of rows of sub-images.
+     *
+     * @return The number of bands.
+     */
+    public int getRows() {
+        return this.rows;
+    }
+
+    /**
+     * Returns the number of sub-images in every band.
+     *
+     * @return The resolution.
+     */
+    public int getCols() {
+        return this.cols;
+    }
+
+    /**
+     * Sets how many pixels are decoded ahead of the band being read: the size of the regions decoded at
+     * once (at least one band), or of the rows decoded ahead in a single pass. More pixels take more
+     * memory, but need fewer decoding calls. Takes effect if set before the first band is read.
+     *
+     * @param pixels The number of pixels to decode ahead.
+     */
+    public void setReadAheadPixels(long pixels) {
+        this.readAheadPixels = pixels;
+    }
+
+    /**
+     * Enables or disables the vector luminance engine (see ImageProcessor).
+     *
+     * @param enabled Whether to use the vector engine when it is available.
+     */
+    public void setVectorLuminanceEnabled(boolean enabled) {
+        this.luminanceEngine = enabled ? LuminanceEngine.FASTEST : LuminanceEngine.SCALAR;
+    }
+
+    /**
+     * Reads the brightness of the sub-images in the next band.
+     *
+     * @param brightness The array to write the brightness of the band's sub-images to, from index 0.
+     * @return True if a band was read, false if all the bands were already read.
+     * @throws IOException If the image cannot be decoded.
+     */
+    public boolean readBand(double[] brightness) throws IOException {
+        if (this.nextBand == this.rows) {
+            return false;
+        }
+        int band = this.nextBand++;
+        // the rows of the band that lie over the source image, in source coordinates
+        int top = Math.max(band * this.size - this.rowOffset, 0);
+        int bottom = Math.min((band + 1) * this.size - this.rowOffset, this.sourceHeight);
+        Arrays.fill(this.luminanceSums, 0);
+        for (int row = top; row < bottom; row++) {
+            this.readLuminanceRow(row, bottom);
+            for (int j = 0; j < this.cols; j++) {
+                int left = Math.max(j * this.size - this.colOffset, 0);
+                int right = Math.min((j + 1) * this.size - this.colOffset, this.sourceWidth);
+                long luminanceSum = 0;
+                for (int col = left; col < right; col++) {
+                    luminanceSum += this.luminanceRow[col];
+                }
+                this.luminanceSums[j] += luminanceSum;
+            }
+        }
+        long pixels = (long) this.size * this.size;
+        for (int j = 0; j < this.cols; j++) {
+            int left = Math.max(j * this.size - this.colOffset, 0);
+            int right = Math.min((j + 1) * this.size - this.colOffset, this.sourceWidth);
+            long sourcePixels = (long) Math.max(bottom - top, 0) * Math.max(right - left, 0);
+            brightness[j] = LuminanceTable.toBrightness(
+                    this.luminanceSums[j] + (pixels - sourcePixels) * PaddedImage.WHITE_LUMINANCE, pixels);
+        }
+        return true;
+    }
+
+    /**
+     * Closes the image file.
+     *
+     * @throws IOException If closing the file fails.
+     */
+    @Override
+    public void close() throws IOException {
+        if (this.rowDecoder != null) {
+            this.rowDecoder.close();
+        }
+        this.region = null;
+        this.reader.dispose();
+        this.stream.close();
+    }
+
+    private void readLuminanceRow(int row, int bandBottom) throws IOException {
+        if (!this.isDecoderOpened) {
+            this.isDecoderOpened = true;
+            this.rowDecoder = SequentialRowDecoder.open(this.reader, this.readAheadPixels);
+        }
+        if (this.rowDecoder != null) {
+            this.rowDecoder.readRow(row, this.rgbRow);
+        } else {
+            this.readRegionRow(row, bandBottom);
+        }
+        this.luminanceEngine.luminanceRow(this.rgbRow, 0, this.luminanceRow, this.sourceWidth);
+    }
+
+    private void readRegionRow(int row, int bandBottom) throws IOException {
+        if (this.region == null || row >= this.regionTop + this.region.getHeight()) {
+            long readAheadRows = this.readAheadPixels / this.sourceWidth;
+            int regionHeight = (int) Math.min(Math.max(bandBottom - row, readAheadRows),
+                    this.sourceHeight - row);
+            ImageReadParam param = this.reader.getDefaultReadParam();
+            param.setSourceRegion(new Rectangle(0, row, this.sourceWidth, regionHeight));
+            // the last region is dropped first, so that two are never held at once
+            this.region = null;
+            this.region = this.reader.read(0, param);
+            this.regionTop = row;
+        }
+        this.region.getRGB(0, row - this.regionTop, this.sourceWidth, 1, this.rgbRow, 0, this.sourceWidth);
+    }
+}
@@ -0,0 +1,90 @@
+package image;
+
+/**
+ * Represents the brightness values of an image's sub-images, laid out row by row in a flat array, and
+ * optionally their average colors laid out the same way.
+ */
+public class BrightnessGrid {
+    private final int rows;
+    private final int cols;
+    private final double[] values;
+    private final int[] colors;
+
+    /**
+     * Constructs a BrightnessGrid over the given brightness values. The array is used as is (not
+     * copied), so the caller should not modify it afterwards.
+     *
+     * @param rows   The number of rows of sub-images.
+     * @param cols   The number of sub-images in every row.
+     * @param values The brightness values of the sub-images, row-major with a stride of cols.
+     */
+    public BrightnessGrid(int rows, int cols, double[] values) {
+        this(rows, cols, values, null);
+    }
+
+    /**
+     * Constructs a BrightnessGrid over the given brightness values and average colors. The arrays are
+     * used as are (not copied), so the caller should not modify them afterwards.
+     *
+     * @param rows   The number of rows of sub-images.
+     * @param cols   The number of sub-images in every row.
+     * @param values The brightness values of the sub-images, row-major with a stride of cols.
+     * @param colors The packed RGB average colors of the sub-images laid out like the values, or null.
+     */
+    public BrightnessGrid(int rows, int cols, double[] values, int[] colors) {
+        this.rows = rows;
+        this.cols = cols;
+        this.values = values;
+        this.colors = colors;
+    }
+
+    /**
+     * Gets the number of rows of sub-images.
+     *
+     * @return The number of rows in the grid.
+     */
+    public int getRows() {
+        return this.rows;
+    }
+
+    /**
+     * Gets the number of sub-images in every row.
+     *
+     * @return The number of columns in the grid.
+     */
+    public int getCols() {
+        return this.cols;
+    }
+
+    /**
+     * Gets the brightness of the sub-image at the given row and column.
+     *
+     * @param row The row of the sub-image.
+     * @param col The column of the sub-image.
+     * @return The brightness of the sub-image, in the range of [0, 1].
+     */
+    public double get(int row, int col) {
+        return this.values[row * this.cols + col];
+    }
+
+    /**
+     * Returns whether the grid has the average colors of the sub-images.
+     *
+     * @return True if the colors can be read, false if only the brightness is known.
+     */
+    public boolean hasColors() {
+        return this.colors != null;
+    }
+
+    /**
+     * Gets the average color of the sub-image at the given row and column. Must only be called on a
+     * grid that has colors.
+     *
+     * @param row The row of the sub-image.
+     * @param col The column of the sub-image.
+     * @return The packed RGB average color of the sub-image.
+     */
+    public int getColor(int row, int col) {
+        return this.colors[row * this.cols + col];
+    }
+}
@@ -0,0 +1,100 @@
+package image;
+
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * A mipmap-style pyramid of an image's sub-images brightness, one level for every power of two
+ * resolution from a base resolution down to the lowest one the image allows. Only the base level is
+ * computed from the image; every coarser level is made by summing the 2x2 blocks of the level above
+ * it. The levels keep exact luminance sums while they are built, so every level has the very same
+ * brightness values as computing it from the image directly.
+ * The base resolution is the highest one whose level fits within a bound on the number of sub-images,
+ * which bounds the memory of the whole pyramid to less than 4/3 of that level.
+ */
+class BrightnessPyramid {
+    private final int baseResolution;
+    private final BrightnessGrid[] levels;
+
+    /**
+     * Builds the pyramid of a padded image.
+     *
+     * @param image         The padded image.
+     * @param minResolution The lowest resolution of the pyramid, a power of two.
+     * @param maxSubImages  The maximal number of sub-images in the base level.
+     * @param pool          The pool to build the base level on, or null to build it on the calling thread.
+     */
+    BrightnessPyramid(PaddedImage image, int minResolution, int maxSubImages, ForkJoinPool pool) {
+        int resolution = image.getWidth();
+        while (resolution > minResolution &&
+                (long) resolution * (image.getHeight() / (image.getWidth() / resolution)) > maxSubImages) {
+            resolution /= 2;
+        }
+        this.baseResolution = resolution;
+        this.levels = new BrightnessGrid[Integer.numberOfTrailingZeros(resolution) -
+                Integer.numberOfTrailingZeros(minResolution) + 1];
+
+        int size = image.getWidth() / resolution;
+        int rows = image.getHeight() / size;
+        int cols = resolution;
+        long[] sums = baseSums(image, rows, cols, size, pool);
+        this.levels[0] = toGrid(sums, rows, cols, size);
+        for (int level = 1; level < this.levels.length; level++) {
+            sums = halve(sums, rows, cols);
+            rows /= 2;
+            cols /= 2;
+            size *= 2;
+            this.levels[level] = toGrid(sums, rows, cols, size);
+        }
+    }
+
+    /**
+     * Returns the level of the given resolution.
+     *
+     * @param resolution The resolution, a power of two.
+     * @return The brightness of the sub-images at this resolution, or null if the resolution is not in
+     * the pyramid.
+     */
+    BrightnessGrid get(int resolution) {
+        if (resolution > this.baseResolution) {
+            return null;
+        }
+        int level = Integer.numberOfTrailingZeros(this.baseResolution) -
+                Integer.numberOfTrailingZeros(resolution);
+        return level < this.levels.length ? this.levels[level] : null;
+    }
+
+    private static long[] baseSums(PaddedImage image, int rows, int cols, int size, ForkJoinPool pool) {
+        long[] sums = new long[rows * cols];
+        RangeTask.run(pool, 0, rows, (fromRow, toRow) -> {
+            for (int i = fromRow; i < toRow; i++) {
+                for (int j = 0; j < cols; j++) {
+                    sums[i * cols + j] = image.luminanceSum(i * size, j * size, size);
+                }
+            }
+        });
+        return sums;
+    }
+
+    private static long[] halve(long[] sums, int rows, int cols) {
+        int halfCols = cols / 2;
+        long[] halved = new long[(rows / 2) * halfCols];
+        for (int i = 0; i < rows / 2; i++) {
+            int top = 2 * i * cols;
+            int bottom = top + cols;
+            for (int j = 0; j < halfCols; j++) {
+                halved[i * halfCols + j] = sums[top + 2 * j] + sums[top + 2 * j + 1] +
+                        sums[bottom + 2 * j] + sums[bottom + 2 * j + 1];
+            }
+        }
+        return halved;
+    }
+
+    private static BrightnessGrid toGrid(long[] sums, int rows, int cols, int size) {
+        double[] brightnessValues = new double[sums.length];
+        long pixels = (long) size * size;
+        for (int i = 0; i < sums.length; i++) {
+            brightnessValues[i] = LuminanceTable.toBrightness(sums[i], pixels);
+        }
+        return new BrightnessGrid(rows, cols, brightnessValues);
+    }
+}
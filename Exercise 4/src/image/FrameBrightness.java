@@ -0,0 +1,181 @@
+package image;
+
+import exceptions.OutOfBoundariesException;
+
+import java.util.Arrays;
+
+/**
+ * Computes the brightness of the sub-images of an animation's frames, one frame after the other, at a
+ * fixed resolution. Only the sub-images that lie under the rectangle a frame changed are computed again,
+ * straight from the frame's pixels; all the others keep the brightness they had in the frame before, so
+ * a frame costs time in proportion to how much of it changed rather than to its size.
+ * The brightness values are exactly those that ImageProcessor computes for every frame's picture at the
+ * same resolution, margins of the (virtually) padded image included.
+ */
+public class FrameBrightness {
+    private final int sourceWidth;
+    private final int sourceHeight;
+    private final int rowOffset;
+    private final int colOffset;
+    private final int size;
+    private final int rows;
+    private final int cols;
+    private final int[] luminanceRow;
+    private final long[] luminanceSums;
+    private LuminanceEngine luminanceEngine = LuminanceEngine.SCALAR;
+    private boolean isReuseEnabled = true;
+    private double[] previousValues;
+    private long computedSubImages = 0;
+    private long reusedSubImages = 0;
+
+    /**
+     * Prepares for computing the brightness of frames of the given size at the given resolution.
+     *
+     * @param sourceWidth  The width of the frames.
+     * @param sourceHeight The height of the frames.
+     * @param resolution   The number of sub-images in every row, a power of two between the minimal number
+     *                     of characters in a row and the padded width of the frames.
+     * @throws OutOfBoundariesException If the resolution does not fit the frames.
+     */
+    public FrameBrightness(int sourceWidth, int sourceHeight, int resolution)
+            throws OutOfBoundariesException {
+        int width = PaddedImage.paddedSize(sourceWidth);
+        int height = PaddedImage.paddedSize(sourceHeight);
+        int minCharsInRow = Math.max(1, width / height);
+        if (Integer.bitCount(resolution) != 1 || resolution > width || resolution < minCharsInRow) {
+            throw new OutOfBoundariesException();
+        }
+        this.sourceWidth = sourceWidth;
+        this.sourceHeight = sourceHeight;
+        this.rowOffset = (height - sourceHeight) / 2;
+        this.colOffset = (width - sourceWidth) / 2;
+        this.size = width / resolution;
+        this.rows = height / this.size;
+        this.cols = resolution;
+        this.luminanceRow = new int[sourceWidth];
+        this.luminanceSums = new long[this.cols];
+    }
+
+    /**
+     * Returns the number of rows of sub-images in every frame.
+     *
+     * @return The number of rows.
+     */
+    public int getRows() {
+        return this.rows;
+    }
+
+    /**
+     * Returns the number of sub-images in every row.
+     *
+     * @return The resolution.
+     */
+    public int getCols() {
+        return this.cols;
+    }
+
+    /**
+     * Enables or disables the vector luminance engine (see ImageProcessor).
+     *
+     * @param enabled Whether to use the vector engine when it is available.
+     */
+    public void setVectorLuminanceEnabled(boolean enabled) {
+        this.luminanceEngine = enabled ? LuminanceEngine.FASTEST : LuminanceEngine.SCALAR;
+    }
+
+    /**
+     * Enables or disables keeping the brightness of the sub-images a frame did not change. When disabled,
+     * every sub-image of every frame is computed, as if every frame were a still image of its own.
+     *
+     * @param enabled Whether to compute only the sub-images under the changed rectangle of each frame.
+     */
+    public void setReuseEnabled(boolean enabled) {
+        this.isReuseEnabled = enabled;
+    }
+
+    /**
+     * Returns how many sub-images were computed from pixels so far.
+     *
+     * @return The number of computed sub-images.
+     */
+    public long getComputedSubImages() {
+        return this.computedSubImages;
+    }
+
+    /**
+     * Returns how many sub-images kept the brightness they had in the frame before so far.
+     *
+     * @return The number of reused sub-images.
+     */
+    public long getReusedSubImages() {
+        return this.reusedSubImages;
+    }
+
+    /**
+     * Computes the brightness of the sub-images of the next frame. The frames must be given in order, and
+     * be of the size given on construction.
+     *
+     * @param frame The next frame.
+     * @return The brightness of the frame's sub-images.
+     */
+    public BrightnessGrid next(AnimationFrame frame) {
+        double[] previous = this.isReuseEnabled ? this.previousValues : null;
+        if (previous != null && !frame.hasChanges()) {
+            // the grids are never modified, so an unchanged frame can share the one before it
+            this.reusedSubImages += previous.length;
+            return new BrightnessGrid(this.rows, this.cols, previous);
+        }
+        int top = 0;
+        int left = 0;
+        int bottom = this.sourceHeight;
+        int right = this.sourceWidth;
+        double[] values = new double[this.rows * this.cols];
+        if (previous != null) {
+            top = frame.getChangedTop();
+            left = frame.getChangedLeft();
+            bottom = frame.getChangedBottom();
+            right = frame.getChangedRight();
+            System.arraycopy(previous, 0, values, 0, values.length);
+        }
+        // the sub-images under the changed rectangle, and the part of the source image they cover
+        int firstBand = previous == null ? 0 : (top + this.rowOffset) / this.size;
+        int lastBand = previous == null ? this.rows - 1 : (bottom - 1 + this.rowOffset) / this.size;
+        int firstCol = previous == null ? 0 : (left + this.colOffset) / this.size;
+        int lastCol = previous == null ? this.cols - 1 : (right - 1 + this.colOffset) / this.size;
+        int fromCol = Math.max(firstCol * this.size - this.colOffset, 0);
+        int toCol = Math.min((lastCol + 1) * this.size - this.colOffset, this.sourceWidth);
+        int[] pixels = frame.getImage().getPixels();
+        long subImagePixels = (long) this.size * this.size;
+        for (int band = firstBand; band <= lastBand; band++) {
+            int bandTop = Math.max(band * this.size - this.rowOffset, 0);
+            int bandBottom = Math.min((band + 1) * this.size - this.rowOffset, this.sourceHeight);
+            Arrays.fill(this.luminanceSums, firstCol, lastCol + 1, 0);
+            for (int row = bandTop; row < bandBottom && fromCol < toCol; row++) {
+                this.luminanceEngine.luminanceRow(pixels, row * this.sourceWidth + fromCol, this.luminanceRow,
+                        toCol - fromCol);
+                for (int j = firstCol; j <= lastCol; j++) {
+                    int subImageLeft = Math.max(j * this.size - this.colOffset, 0);
+                    int subImageRight = Math.min((j + 1) * this.size - this.colOffset, this.sourceWidth);
+                    long luminanceSum = 0;
+                    for (int col = subImageLeft; col < subImageRight; col++) {
+                        luminanceSum += this.luminanceRow[col - fromCol];
+                    }
+                    this.luminanceSums[j] += luminanceSum;
+                }
+            }
+            for (int j = firstCol; j <= lastCol; j++) {
+                int subImageLeft = Math.max(j * this.size - this.colOffset, 0);
+                int subImageRight = Math.min((j + 1) * this.size - this.colOffset, this.sourceWidth);
+                long sourcePixels = (long) Math.max(bandBottom - bandTop, 0) *
+                        Math.max(subImageRight - subImageLeft, 0);
+                values[band * this.cols + j] = LuminanceTable.toBrightness(this.luminanceSums[j] +
+                        (subImagePixels - sourcePixels) * PaddedImage.WHITE_LUMINANCE, subImagePixels);
+            }
+        }
+        long computed = (long) (lastBand - firstBand + 1) * (lastCol - firstCol + 1);
+        this.computedSubImages += computed;
+        this.reusedSubImages += values.length - computed;
+        this.previousValues = values;
+        return new BrightnessGrid(this.rows, this.cols, values);
+    }
+}
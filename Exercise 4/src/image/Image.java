@@ -3,18 +3,37 @@ package image;
 import javax.imageio.ImageIO;
 import java.awt.*;
 import java.awt.image.BufferedImage;
+import java.awt.image.DataBuffer;
+import java.awt.image.DataBufferByte;
+import java.awt.image.DataBufferInt;
+import java.awt.image.PixelInterleavedSampleModel;
+import java.awt.image.Raster;
+import java.awt.image.SinglePixelPackedSampleModel;
 import java.io.File;
 import java.io.IOException;
 
 /**
  * A package-private class of the package image.
+ * The pixels are kept as packed ARGB ints in a single row-major array (width-strided), the Color
+ * based accessors are only a compatibility view over it.
  * @author Dan Nirel
  */
 public class Image {
+    private static final double RED_WEIGHT = 0.2126;
+    private static final double GREEN_WEIGHT = 0.7152;
+    private static final double BLUE_WEIGHT = 0.0722;
+    private static final int RED_SHIFT = 16;
+    private static final int GREEN_SHIFT = 8;
+    private static final int CHANNEL_MASK = 0xFF;
+    private static final int OPAQUE_ALPHA = 0xFF000000;
+    private static final int ALPHA_SHIFT = 24;
+    private static final String UNREADABLE_IMAGE = "Could not decode image file \"%s\".";
 
-    private final Color[][] pixelArray;
+    private final int[] pixels;
     private final int width;
     private final int height;
+    private long decodeNanos;
+    private long copyNanos;
 
     /**
      * Constructs an Image object from the specified image file.
@@ -22,17 +41,17 @@ public class Image {
      * @throws IOException If an error occurs while reading the image file.
      */
     public Image(String filename) throws IOException {
+        long decodeStart = System.nanoTime();
         BufferedImage im = ImageIO.read(new File(filename));
+        if (im == null) {
+            throw new IOException(String.format(UNREADABLE_IMAGE, filename));
+        }
+        long copyStart = System.nanoTime();
         width = im.getWidth();
         height = im.getHeight();
-
-
-        pixelArray = new Color[height][width];
-        for (int i = 0; i < height; i++) {
-            for (int j = 0; j < width; j++) {
-                pixelArray[i][j]=new Color(im.getRGB(j, i));
-            }
-        }
+        pixels = readPixels(im);
+        this.decodeNanos = copyStart - decodeStart;
+        this.copyNanos = System.nanoTime() - copyStart;
     }
 
     /**
@@ -42,7 +61,25 @@ public class Image {
      * @param height An int representing the height of the image.
      */
     public Image(Color[][] pixelArray, int width, int height) {
-        this.pixelArray = pixelArray;
+        this.width = width;
+        this.height = height;
+        this.pixels = new int[height * width];
+        for (int row = 0; row < height; row++) {
+            for (int col = 0; col < width; col++) {
+                this.pixels[row * width + col] = pixelArray[row][col].getRGB();
+            }
+        }
+    }
+
+    /**
+     * Constructs an Image object directly over an array of packed ARGB pixels. The array is used as
+     * is (not copied), so the caller should not modify it afterwards.
+     * @param pixels An int array of packed ARGB pixels, row-major with a stride of width.
+     * @param width An int representing the width of the image.
+     * @param height An int representing the height of the image.
+     */
+    public Image(int[] pixels, int width, int height) {
+        this.pixels = pixels;
         this.width = width;
         this.height = height;
     }
@@ -70,7 +107,57 @@ public class Image {
      * @return A Color object representing the color of the pixel at the specified coordinates.
      */
     public Color getPixel(int x, int y) {
-        return pixelArray[x][y];
+        return new Color(getRGB(x, y));
+    }
+
+    /**
+     * Returns the packed ARGB value of the pixel at the specified row and column.
+     * @param row An int representing the row of the pixel.
+     * @param col An int representing the column of the pixel.
+     * @return An int holding the pixel as 0xAARRGGBB.
+     */
+    public int getRGB(int row, int col) {
+        return pixels[row * width + col];
+    }
+
+    /**
+     * Returns the array of packed ARGB pixels the image is kept in, row-major with a stride of width.
+     * The array is not copied, so it must not be modified.
+     * @return The pixels of the image.
+     */
+    int[] getPixels() {
+        return pixels;
+    }
+
+    /**
+     * Returns the weighted luminance of the pixel at the specified row and column, in the range of
+     * [0, 255].
+     * @param row An int representing the row of the pixel.
+     * @param col An int representing the column of the pixel.
+     * @return A double representing the luminance of the pixel.
+     */
+    public double getLuminance(int row, int col) {
+        int rgb = getRGB(row, col);
+        return ((rgb >> RED_SHIFT) & CHANNEL_MASK) * RED_WEIGHT +
+                ((rgb >> GREEN_SHIFT) & CHANNEL_MASK) * GREEN_WEIGHT +
+                (rgb & CHANNEL_MASK) * BLUE_WEIGHT;
+    }
+
+    /**
+     * Returns the time it took to decode the image file, or 0 if the image was not loaded from a file.
+     * @return A long representing the decoding time in nanoseconds.
+     */
+    public long getDecodeNanos() {
+        return decodeNanos;
+    }
+
+    /**
+     * Returns the time it took to copy the decoded raster into the packed pixel array, or 0 if the
+     * image was not loaded from a file.
+     * @return A long representing the copying time in nanoseconds.
+     */
+    public long getCopyNanos() {
+        return copyNanos;
     }
 
     /**
@@ -79,15 +166,9 @@ public class Image {
      * @throws RuntimeException If an error occurs while writing the image file.
      */
     public void saveImage(String fileName){
-        // Initialize BufferedImage, assuming Color[][] is already properly populated.
-        BufferedImage bufferedImage = new BufferedImage(pixelArray[0].length, pixelArray.length,
-                BufferedImage.TYPE_INT_RGB);
-        // Set each pixel of the BufferedImage to the color from the Color[][].
-        for (int x = 0; x < pixelArray.length; x++) {
-            for (int y = 0; y < pixelArray[x].length; y++) {
-                bufferedImage.setRGB(y, x, pixelArray[x][y].getRGB());
-            }
-        }
+        // Initialize BufferedImage, the packed pixels are already in the layout it expects.
+        BufferedImage bufferedImage = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+        bufferedImage.setRGB(0, 0, width, height, pixels, 0, width);
         File outputfile = new File(fileName+".jpeg");
         try {
             ImageIO.write(bufferedImage, "jpeg", outputfile);
@@ -96,4 +177,64 @@ public class Image {
         }
     }
 
+    private static int[] readPixels(BufferedImage im) {
+        int width = im.getWidth();
+        int height = im.getHeight();
+        int[] pixels = new int[height * width];
+        Raster raster = im.getRaster();
+        DataBuffer buffer = raster.getDataBuffer();
+        // the common decoder outputs are read straight from their backing arrays, everything else
+        // (indexed, grayscale with its color space conversion, sub-rasters...) goes through one bulk
+        // getRGB call which converts exactly like the per pixel one.
+        if (!isPlainRaster(raster)) {
+            return im.getRGB(0, 0, width, height, pixels, 0, width);
+        }
+        switch (im.getType()) {
+            case BufferedImage.TYPE_INT_ARGB:
+                System.arraycopy(((DataBufferInt) buffer).getData(), 0, pixels, 0, pixels.length);
+                return pixels;
+            case BufferedImage.TYPE_INT_RGB:
+                int[] rgbData = ((DataBufferInt) buffer).getData();
+                for (int i = 0; i < pixels.length; i++) {
+                    pixels[i] = OPAQUE_ALPHA | rgbData[i];
+                }
+                return pixels;
+            case BufferedImage.TYPE_3BYTE_BGR:
+                byte[] bgrData = ((DataBufferByte) buffer).getData();
+                for (int i = 0, b = 0; i < pixels.length; i++, b += 3) {
+                    pixels[i] = OPAQUE_ALPHA | ((bgrData[b + 2] & CHANNEL_MASK) << RED_SHIFT) |
+                            ((bgrData[b + 1] & CHANNEL_MASK) << GREEN_SHIFT) | (bgrData[b] & CHANNEL_MASK);
+                }
+                return pixels;
+            case BufferedImage.TYPE_4BYTE_ABGR:
+                byte[] abgrData = ((DataBufferByte) buffer).getData();
+                for (int i = 0, b = 0; i < pixels.length; i++, b += 4) {
+                    pixels[i] = ((abgrData[b] & CHANNEL_MASK) << ALPHA_SHIFT) |
+                            ((abgrData[b + 3] & CHANNEL_MASK) << RED_SHIFT) |
+                            ((abgrData[b + 2] & CHANNEL_MASK) << GREEN_SHIFT) |
+                            (abgrData[b + 1] & CHANNEL_MASK);
+                }
+                return pixels;
+            default:
+                return im.getRGB(0, 0, width, height, pixels, 0, width);
+        }
+    }
+
+    private static boolean isPlainRaster(Raster raster) {
+        // a raster is plain if it covers its whole data buffer from the start, with no row padding
+        if (raster.getParent() != null || raster.getDataBuffer().getNumBanks() != 1 ||
+                raster.getDataBuffer().getOffset() != 0) {
+            return false;
+        }
+        if (raster.getSampleModel() instanceof SinglePixelPackedSampleModel) {
+            return ((SinglePixelPackedSampleModel) raster.getSampleModel()).getScanlineStride() ==
+                    raster.getWidth();
+        }
+        if (raster.getSampleModel() instanceof PixelInterleavedSampleModel) {
+            PixelInterleavedSampleModel model = (PixelInterleavedSampleModel) raster.getSampleModel();
+            return model.getScanlineStride() == raster.getWidth() * model.getPixelStride();
+        }
+        return false;
+    }
+
 }
@@ -0,0 +1,184 @@
+package image;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+
+/**
+ * A library of loaded images shared by the image processors of many concurrent sessions. Every image
+ * file is decoded and indexed once, by the first session that asks for it while any other session that
+ * asks for it meanwhile waits for that load, and is then shared read-only by all of them.
+ * The library keeps the most recently used images up to a budget of pixels, and forgets the least
+ * recently used ones beyond it (sessions that still use a forgotten image keep it until they set
+ * another one). An image file that changed since it was loaded is loaded again.
+ * The library is safe to use from any number of threads at once.
+ */
+public class ImageLibrary {
+    private static final String BUDGET_ERROR = "Pixels budget must be positive, got %d.";
+
+    private final long maxPixels;
+    private final LinkedHashMap<Key, Entry> images = new LinkedHashMap<>(16, 0.75f, true);
+    private long loadedPixels = 0;
+    private volatile String cacheDirectory;
+    private volatile boolean isPyramidEnabled = false;
+    private volatile boolean isVectorLuminanceEnabled = false;
+
+    private static final class Key {
+        private final String path;
+        private final long length;
+        private final long lastModified;
+
+        private Key(File file) {
+            this.path = file.getAbsolutePath();
+            this.length = file.length();
+            this.lastModified = file.lastModified();
+        }
+
+        @Override
+        public boolean equals(Object other) {
+            if (!(other instanceof Key)) {
+                return false;
+            }
+            Key key = (Key) other;
+            return this.path.equals(key.path) && this.length == key.length &&
+                    this.lastModified == key.lastModified;
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * (31 * this.path.hashCode() + Long.hashCode(this.length)) +
+                    Long.hashCode(this.lastModified);
+        }
+    }
+
+    private static final class Entry {
+        private final FutureTask<LoadedImage> load;
+        // 0 until the load is done, so images that are still loading are never forgotten
+        private long pixels = 0;
+
+        private Entry(FutureTask<LoadedImage> load) {
+            this.load = load;
+        }
+    }
+
+    /**
+     * Constructs an empty library.
+     *
+     * @param maxPixels The number of source pixels of all the images kept in the library together. Every
+     *                  pixel takes about 12 bytes (its color and its luminance table entry).
+     * @throws IllegalArgumentException If the budget is not positive.
+     */
+    public ImageLibrary(long maxPixels) {
+        if (maxPixels <= 0) {
+            throw new IllegalArgumentException(String.format(BUDGET_ERROR, maxPixels));
+        }
+        this.maxPixels = maxPixels;
+    }
+
+    /**
+     * Sets a directory in which the luminance of every image loaded from now on is cached (see
+     * ImageProcessor.setCacheDirectory).
+     *
+     * @param directory The path of the cache directory, or null to stop caching.
+     */
+    public void setCacheDirectory(String directory) {
+        this.cacheDirectory = directory;
+    }
+
+    /**
+     * Enables or disables building a brightness pyramid for every image loaded from now on (see
+     * ImageProcessor.setPyramidEnabled). The pyramids are shared along with the images.
+     *
+     * @param enabled Whether to build a pyramid for every image.
+     */
+    public void setPyramidEnabled(boolean enabled) {
+        this.isPyramidEnabled = enabled;
+    }
+
+    /**
+     * Enables or disables the vector luminance engine for the images loaded from now on (see
+     * ImageProcessor.setVectorLuminanceEnabled).
+     *
+     * @param enabled Whether to use the vector engine when it is available.
+     */
+    public void setVectorLuminanceEnabled(boolean enabled) {
+        this.isVectorLuminanceEnabled = enabled;
+    }
+
+    /**
+     * Returns the loaded image of an image file, loading it if it is not in the library yet.
+     *
+     * @param imagePath The path of the image file.
+     * @return The loaded image.
+     * @throws IOException If there's an issue with the image file.
+     */
+    LoadedImage load(String imagePath) throws IOException {
+        Key key = new Key(new File(imagePath));
+        Entry entry;
+        boolean isLoader = false;
+        synchronized (this) {
+            entry = this.images.get(key);
+            if (entry == null) {
+                entry = new Entry(new FutureTask<>(() -> this.decode(imagePath)));
+                this.images.put(key, entry);
+                isLoader = true;
+            }
+        }
+        if (isLoader) {
+            entry.load.run();
+        }
+        try {
+            LoadedImage loadedImage = entry.load.get();
+            if (isLoader) {
+                this.account(key, entry, loadedImage.getImage().getSourcePixels());
+            }
+            return loadedImage;
+        } catch (ExecutionException executionException) {
+            synchronized (this) {
+                this.images.remove(key, entry);
+            }
+            Throwable cause = executionException.getCause();
+            if (cause instanceof IOException) {
+                throw (IOException) cause;
+            }
+            if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw (RuntimeException) cause;
+        } catch (InterruptedException interruptedException) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException();
+        }
+    }
+
+    private LoadedImage decode(String imagePath) throws IOException {
+        ImageProcessor loader = new ImageProcessor();
+        loader.setCacheDirectory(this.cacheDirectory);
+        loader.setPyramidEnabled(this.isPyramidEnabled);
+        loader.setVectorLuminanceEnabled(this.isVectorLuminanceEnabled);
+        loader.setImage(imagePath);
+        return loader.toLoadedImage();
+    }
+
+    private synchronized void account(Key key, Entry entry, long pixels) {
+        if (this.images.get(key) != entry) {
+            return;
+        }
+        entry.pixels = pixels;
+        this.loadedPixels += pixels;
+        // the image that was just loaded is the most recently used, so it is the last to be forgotten
+        Iterator<Map.Entry<Key, Entry>> eldest = this.images.entrySet().iterator();
+        while (this.loadedPixels > this.maxPixels && eldest.hasNext()) {
+            Entry candidate = eldest.next().getValue();
+            if (candidate != entry && candidate.pixels > 0) {
+                this.loadedPixels -= candidate.pixels;
+                eldest.remove();
+            }
+        }
+    }
+}
@@ -1,8 +1,8 @@
 package image;
 
-import java.awt.*;
+import java.io.File;
 import java.io.IOException;
-import java.util.LinkedList;
+import java.util.concurrent.ForkJoinPool;
 
 import exceptions.*;
 
@@ -11,15 +11,44 @@ import exceptions.*;
  * Represents an image processor for creating sub-images and managing image resolution.
  */
 public class ImageProcessor {
-    private static final double RED_WEIGHT = 0.2126;
-    private static final double GREEN_WEIGHT = 0.7152;
-    private static final double BLUE_WEIGHT = 0.0722;
-    private static final double MAX_RGB = 255;
-    private Image image;
+    /**
+     * The most bytes the luminance cache takes on the disk, unless another budget is given.
+     */
+    public static final long DEFAULT_CACHE_BUDGET_BYTES = 1L << 30;
+    private PaddedImage image;
     private static final int DEFAULT_RESOLUTION = 128;
+    private static final int SEQUENTIAL = 1;
+    private static final String PARALLELISM_ERROR = "Parallelism must be at least 1, got %d.";
+    private int parallelism = SEQUENTIAL;
+    private ForkJoinPool pool;
     private int curRes = DEFAULT_RESOLUTION;
     private int totalImagesCounter = 0;
     private static final String IMAGE_ERROR = "Did not execute due to problem with image file.";
+    private static final String LOAD_TIMINGS = "Image loaded in %.2f ms (decode %.2f ms, copy %.2f ms, " +
+            "luminance table %.2f ms, pyramid %.2f ms), luminance by the %s engine.";
+    private static final String CACHED_LOAD_TIMINGS = "Image mapped from cache in %.2f ms (map %.2f ms, " +
+            "luminance table %.2f ms, pyramid %.2f ms).";
+    private static final int PYRAMID_MAX_SUB_IMAGES = 1 << 18;
+    private BrightnessPyramid pyramid;
+    private boolean isPyramidEnabled = false;
+    private long pyramidNanos;
+    private LuminanceEngine luminanceEngine = LuminanceEngine.SCALAR;
+    private static final double NANOS_IN_MILLI = 1e6;
+    private static final int RED_SHIFT = 16;
+    private static final int GREEN_SHIFT = 8;
+    private static final double SHAPE_MIN_CONTRAST = 0.2;
+    private static final String MASK_SIZE_ERROR = "Mask size must be a power of two up to 64, got %d.";
+    private LuminanceCache luminanceCache;
+    private boolean loadedFromCache;
+    private long mapNanos;
+    private long decodeNanos;
+    private long copyNanos;
+    private long tableNanos;
+    private ImageLibrary library;
+    private boolean isColorEnabled = false;
+    private String imagePath;
+    // the load timings of an image taken from the library, as they were when the library loaded it
+    private String libraryLoadTimings;
 
     /**
      * Initializes the AsciiArtAlgorithm with the provided image path.
@@ -33,23 +62,200 @@ public class ImageProcessor {
         this.setImage(imagePath);
     }
 
+    /**
+     * Initializes the ImageProcessor with an image taken from a library shared with other image
+     * processors. Every image set later is taken from the library as well, so the images are decoded
+     * once and shared read-only, while the resolution and everything else stays private to this
+     * processor.
+     *
+     * @param library   The library to take the images from.
+     * @param imagePath The path to an image file.
+     * @throws IOException If there's an issue with the image file.
+     */
+    public ImageProcessor(ImageLibrary library, String imagePath) throws IOException {
+        this.library = library;
+        this.setImage(imagePath);
+    }
+
+    /**
+     * Initializes an ImageProcessor without an image, for loading one after configuring it. An image
+     * must be set with setImage before anything else is done with it.
+     */
+    public ImageProcessor() {
+    }
+
     /**
      * Creates sub-images from the main image. Must insert an Image object to this object before using
      * or else a NullPointerException will be thrown. An Image can be set using the method setImage.
+     * The brightness of every sub-image is read from the image's luminance table, so this takes time
+     * proportional to the number of sub-images and not to the number of pixels. The image is padded
+     * to powers of two only virtually, sub-images in the margins are computed as white.
+     * If the pyramid is enabled and holds the current resolution, its level is returned as is.
+     * If colors are enabled, the brightness and the average color of every sub-image are both computed
+     * from its channel sums, in a single pass over the pixels instead of from the luminance table; the
+     * brightness values are exactly the same either way.
      *
-     * @return A linked list containing the brightness values of the sub-images.
+     * @return A grid containing the brightness values of the sub-images, and their average colors if
+     * colors are enabled and the image has its pixels.
      */
-    public LinkedList<Double> createSubImages() {
-        LinkedList<Double> subImages = new LinkedList<>();
+    public BrightnessGrid createSubImages() {
+        if (this.isColorEnabled && this.image.hasPixels()) {
+            return this.createColoredSubImages();
+        }
+        if (this.pyramid != null) {
+            BrightnessGrid level = this.pyramid.get(this.curRes);
+            if (level != null) {
+                return level;
+            }
+        }
+        int subImgSize = this.image.getWidth() / this.curRes;
+        int rowsOfImg = this.image.getHeight() / subImgSize;
+        int cols = this.curRes;
+        // every row of sub-images is written into its own slice of the array, so rows can be filled
+        // concurrently without any locking
+        double[] brightnessValues = new double[rowsOfImg * cols];
+        RangeTask.run(this.pool, 0, rowsOfImg, (fromRow, toRow) -> {
+            for (int i = fromRow; i < toRow; i++) {
+                for (int j = 0; j < cols; j++) {
+                    brightnessValues[i * cols + j] =
+                            this.image.brightness(i * subImgSize, j * subImgSize, subImgSize);
+                }
+            }
+        });
+        return new BrightnessGrid(rowsOfImg, cols, brightnessValues);
+    }
 
+    private BrightnessGrid createColoredSubImages() {
         int subImgSize = this.image.getWidth() / this.curRes;
         int rowsOfImg = this.image.getHeight() / subImgSize;
-        for (int i = 0; i < rowsOfImg; i++) {
-            for (int j = 0; j < this.curRes; j++) {
-                this.insertSubImage(subImages, i, j, subImgSize);
+        int cols = this.curRes;
+        long pixels = (long) subImgSize * subImgSize;
+        double[] brightnessValues = new double[rowsOfImg * cols];
+        int[] colors = new int[rowsOfImg * cols];
+        RangeTask.run(this.pool, 0, rowsOfImg, (fromRow, toRow) -> {
+            long[] sums = new long[cols * PaddedImage.CHANNELS];
+            for (int i = fromRow; i < toRow; i++) {
+                this.image.channelSums(i * subImgSize, subImgSize, sums);
+                for (int j = 0; j < cols; j++) {
+                    long red = sums[j * PaddedImage.CHANNELS];
+                    long green = sums[j * PaddedImage.CHANNELS + 1];
+                    long blue = sums[j * PaddedImage.CHANNELS + 2];
+                    brightnessValues[i * cols + j] = LuminanceTable.toBrightness(
+                            red * LuminanceTable.RED_WEIGHT + green * LuminanceTable.GREEN_WEIGHT +
+                                    blue * LuminanceTable.BLUE_WEIGHT, pixels);
+                    colors[i * cols + j] = averageColor(red, green, blue, pixels);
+                }
             }
+        });
+        return new BrightnessGrid(rowsOfImg, cols, brightnessValues, colors);
+    }
+
+    /**
+     * Creates the shapes of the sub-images, as bitmasks of the same kind as the glyphs in GlyphCache:
+     * every sub-image is split into maskSize x maskSize cells (or into its pixels, if it has fewer), and
+     * bit y * maskSize + x of its mask is set when cell (x, y) is lighter than the sub-image's average.
+     * The cells are read from the luminance table, so this takes time proportional to the number of
+     * cells and not to the number of pixels.
+     * Sub-images whose lightest and darkest cells are too close to tell a shape have no bits set (a
+     * sub-image with a shape always has both lighter and darker cells, so its mask is never empty).
+     *
+     * @param maskSize The number of bits in every row of a mask, a power of two up to 64.
+     * @return The masks of the sub-images row by row, each taking maskSize * maskSize / 64 words (or 1
+     * word, if it is smaller).
+     * @throws IllegalArgumentException If the mask size is not a power of two up to 64.
+     */
+    public long[] createSubImageShapes(int maskSize) {
+        if (Integer.bitCount(maskSize) != 1 || maskSize > Long.SIZE) {
+            throw new IllegalArgumentException(String.format(MASK_SIZE_ERROR, maskSize));
         }
-        return subImages;
+        int subImgSize = this.image.getWidth() / this.curRes;
+        int rowsOfImg = this.image.getHeight() / subImgSize;
+        int cols = this.curRes;
+        int words = (maskSize * maskSize + Long.SIZE - 1) / Long.SIZE;
+        int cellsInRow = Math.min(subImgSize, maskSize);
+        int cellSize = subImgSize / cellsInRow;
+        long[] masks = new long[rowsOfImg * cols * words];
+        RangeTask.run(this.pool, 0, rowsOfImg, (fromRow, toRow) -> {
+            long[] cellSums = new long[cellsInRow * cellsInRow];
+            for (int i = fromRow; i < toRow; i++) {
+                for (int j = 0; j < cols; j++) {
+                    this.shapeOf(i * subImgSize, j * subImgSize, cellSize, cellsInRow, cellSums, maskSize,
+                            masks, (i * cols + j) * words);
+                }
+            }
+        });
+        return masks;
+    }
+
+    private void shapeOf(int row, int col, int cellSize, int cellsInRow, long[] cellSums, int maskSize,
+                         long[] masks, int offset) {
+        long total = 0;
+        long min = Long.MAX_VALUE;
+        long max = Long.MIN_VALUE;
+        for (int y = 0; y < cellsInRow; y++) {
+            for (int x = 0; x < cellsInRow; x++) {
+                long sum = this.image.luminanceSum(row + y * cellSize, col + x * cellSize, cellSize);
+                cellSums[y * cellsInRow + x] = sum;
+                total += sum;
+                min = Math.min(min, sum);
+                max = Math.max(max, sum);
+            }
+        }
+        if (LuminanceTable.toBrightness(max - min, (long) cellSize * cellSize) < SHAPE_MIN_CONTRAST) {
+            return;
+        }
+        // a cell is lighter than the average when its sum times the number of cells is above the total.
+        // every cell covers bitsPerCell bits of bitsPerCell rows of the mask, and a row of the mask is
+        // never split between two words.
+        long cells = (long) cellsInRow * cellsInRow;
+        int bitsPerCell = maskSize / cellsInRow;
+        long cellBits = -1L >>> (Long.SIZE - bitsPerCell);
+        for (int y = 0; y < cellsInRow; y++) {
+            long rowBits = 0;
+            for (int x = 0; x < cellsInRow; x++) {
+                if (cellSums[y * cellsInRow + x] * cells > total) {
+                    rowBits |= cellBits << (x * bitsPerCell);
+                }
+            }
+            int firstBit = y * bitsPerCell * maskSize;
+            for (int bit = firstBit; bit < firstBit + bitsPerCell * maskSize; bit += maskSize) {
+                masks[offset + bit / Long.SIZE] |= rowBits << (bit % Long.SIZE);
+            }
+        }
+    }
+
+    private static int averageColor(long red, long green, long blue, long pixels) {
+        // rounding to the nearest value instead of down
+        long half = pixels / 2;
+        return (int) ((red + half) / pixels) << RED_SHIFT | (int) ((green + half) / pixels) << GREEN_SHIFT |
+                (int) ((blue + half) / pixels);
+    }
+
+    /**
+     * Sets how many threads compute the luminance table and the sub-images' brightness. A parallelism
+     * of 1 computes everything on the calling thread; any parallelism gives the exact same results.
+     *
+     * @param parallelism The number of threads to use, at least 1.
+     * @throws IllegalArgumentException If the parallelism is less than 1.
+     */
+    public void setParallelism(int parallelism) {
+        if (parallelism < SEQUENTIAL) {
+            throw new IllegalArgumentException(String.format(PARALLELISM_ERROR, parallelism));
+        }
+        if (this.pool != null) {
+            this.pool.shutdown();
+        }
+        this.parallelism = parallelism;
+        this.pool = parallelism > SEQUENTIAL ? new ForkJoinPool(parallelism) : null;
+    }
+
+    /**
+     * Gets the number of threads used to compute the sub-images.
+     *
+     * @return The parallelism level of the image processor.
+     */
+    public int getParallelism() {
+        return this.parallelism;
     }
 
     /**
@@ -98,6 +304,23 @@ public class ImageProcessor {
 
     }
 
+    /**
+     * Sets the resolution of the image processor directly, within the same boundaries that
+     * increaseRes and decreaseRes keep.
+     *
+     * @param resolution The new resolution, a power of two.
+     * @throws OutOfBoundariesException If the resolution is not a power of two, exceeds the image width
+     *                                  or is less than the minimum allowed.
+     */
+    public void setResolution(int resolution) throws OutOfBoundariesException {
+        int minCharsInRow = Math.max(1, (this.image.getWidth()) / (this.image.getHeight()));
+        if (Integer.bitCount(resolution) != 1 || resolution > this.image.getWidth() ||
+                resolution < minCharsInRow) {
+            throw new OutOfBoundariesException();
+        }
+        this.curRes = resolution;
+    }
+
     /**
      * Sets the image of the image processor.
      *
@@ -105,14 +328,149 @@ public class ImageProcessor {
      * @throws IOException If there's an issue with the new image file.
      */
     public void setImage(String imagePath) throws IOException {
+        // the path is only set along with the image, so a failed load leaves both as they were
+        if (this.library != null) {
+            LoadedImage loadedImage = this.library.load(imagePath);
+            this.imagePath = imagePath;
+            this.totalImagesCounter++;
+            this.image = loadedImage.getImage();
+            this.pyramid = loadedImage.getPyramid();
+            this.libraryLoadTimings = loadedImage.getLoadTimings();
+            return;
+        }
+        this.libraryLoadTimings = null;
+        // an image mapped from the cache has no pixels to take the colors from
+        if (!this.isColorEnabled && this.setCachedImage(imagePath)) {
+            this.imagePath = imagePath;
+            return;
+        }
+        Image source;
         try{
-            this.image = new Image(imagePath);
+            source = new Image(imagePath);
         }
         catch (IOException e){
             throw new IOException(IMAGE_ERROR);
         }
         this.totalImagesCounter++;
-        this.padImage();
+        this.loadedFromCache = false;
+        this.decodeNanos = source.getDecodeNanos();
+        this.copyNanos = source.getCopyNanos();
+        long tableStart = System.nanoTime();
+        this.image = new PaddedImage(source, new LuminanceTable(source, this.luminanceEngine, this.pool));
+        this.imagePath = imagePath;
+        this.tableNanos = System.nanoTime() - tableStart;
+        this.buildPyramid();
+        if (this.luminanceCache != null) {
+            try {
+                this.luminanceCache.store(new File(imagePath), source);
+            } catch (IOException e) {
+                // the cache only saves time on the next load, the image itself is already set
+            }
+        }
+    }
+
+    /**
+     * Enables or disables the brightness pyramid. When enabled, the brightness of the sub-images at
+     * every resolution (up to a bound on the number of sub-images) is precomputed whenever an image is
+     * set, so that changing the resolution and creating the sub-images is a lookup. The pyramid of the
+     * current image is built or dropped right away.
+     *
+     * @param enabled Whether to build a pyramid for every image.
+     */
+    public void setPyramidEnabled(boolean enabled) {
+        this.isPyramidEnabled = enabled;
+        this.buildPyramid();
+    }
+
+    /**
+     * Enables or disables colors. When enabled, the sub-images are created with their average colors
+     * (see createSubImages), and images are always decoded instead of mapped from the luminance cache,
+     * which has no colors; if the current image was mapped from the cache, it is decoded again right
+     * away. Images shared through a library have colors only if the library decoded them.
+     *
+     * @param enabled Whether to compute the average colors of the sub-images.
+     * @throws IOException If the current image has to be decoded again and there's an issue with it.
+     */
+    public void setColorEnabled(boolean enabled) throws IOException {
+        this.isColorEnabled = enabled;
+        if (enabled && this.library == null && this.image != null && !this.image.hasPixels()) {
+            this.setImage(this.imagePath);
+        }
+    }
+
+    /**
+     * Returns whether the sub-images are created with their average colors.
+     *
+     * @return True if colors are enabled, false otherwise.
+     */
+    public boolean isColorEnabled() {
+        return this.isColorEnabled;
+    }
+
+    /**
+     * Enables or disables the vector luminance engine, which converts the pixels of the images loaded
+     * from now on into luminance with SIMD instructions. The engine gives exactly the same results as
+     * the scalar one, and is only used if it is available: it needs the jdk.incubator.vector module.
+     *
+     * @param enabled Whether to use the vector engine when it is available.
+     */
+    public void setVectorLuminanceEnabled(boolean enabled) {
+        this.luminanceEngine = enabled ? LuminanceEngine.FASTEST : LuminanceEngine.SCALAR;
+    }
+
+    /**
+     * Returns whether the images are converted into luminance by the vector engine.
+     *
+     * @return True if the vector engine is enabled and available, false otherwise.
+     */
+    public boolean isVectorLuminanceEnabled() {
+        return this.luminanceEngine != LuminanceEngine.SCALAR;
+    }
+
+    /**
+     * Sets a directory in which the luminance of every loaded image is cached, so that loading the same
+     * (unchanged) image file again maps it from the cache instead of decoding it. The cache takes at most
+     * DEFAULT_CACHE_BUDGET_BYTES of the disk.
+     *
+     * @param directory The path of the cache directory, or null to stop caching.
+     */
+    public void setCacheDirectory(String directory) {
+        this.setCacheDirectory(directory, DEFAULT_CACHE_BUDGET_BYTES);
+    }
+
+    /**
+     * Sets a directory in which the luminance of every loaded image is cached, evicting the least
+     * recently used images once the cache outgrows the given budget.
+     *
+     * @param directory   The path of the cache directory, or null to stop caching.
+     * @param budgetBytes The most bytes the cache may take on the disk.
+     * @throws IllegalArgumentException If the budget is not positive.
+     */
+    public void setCacheDirectory(String directory, long budgetBytes) {
+        this.luminanceCache = directory == null ? null : new LuminanceCache(new File(directory), budgetBytes);
+    }
+
+    /**
+     * Describes how long each phase of loading the last image took: decoding the file, copying the
+     * decoded raster into packed pixels (or mapping it from the cache), building its luminance table
+     * and its pyramid.
+     *
+     * @return A String describing the per-phase load timings of the current image.
+     */
+    public String getLoadTimings() {
+        if (this.libraryLoadTimings != null) {
+            return this.libraryLoadTimings;
+        }
+        if (this.loadedFromCache) {
+            long totalNanos = this.mapNanos + this.tableNanos + this.pyramidNanos;
+            return String.format(CACHED_LOAD_TIMINGS, totalNanos / NANOS_IN_MILLI,
+                    this.mapNanos / NANOS_IN_MILLI, this.tableNanos / NANOS_IN_MILLI,
+                    this.pyramidNanos / NANOS_IN_MILLI);
+        }
+        long totalNanos = this.decodeNanos + this.copyNanos + this.tableNanos + this.pyramidNanos;
+        return String.format(LOAD_TIMINGS, totalNanos / NANOS_IN_MILLI, this.decodeNanos / NANOS_IN_MILLI,
+                this.copyNanos / NANOS_IN_MILLI, this.tableNanos / NANOS_IN_MILLI,
+                this.pyramidNanos / NANOS_IN_MILLI, this.luminanceEngine.getName());
     }
 
     /**
@@ -125,44 +483,52 @@ public class ImageProcessor {
         return this.totalImagesCounter;
     }
 
-    private void padImage() {
-        int height = this.image.getHeight();
-        int width = this.image.getWidth();
-        int heightPad = (int) Math.ceil(Math.log(height) / Math.log(2));
-        int widthPad = (int) Math.ceil(Math.log(width) / Math.log(2));
-        int heightDelta = (int) Math.pow(2, heightPad) - height;
-        int widthDelta = (int) Math.pow(2, widthPad) - width;
-        Color[][] newImagePixels = new Color[heightDelta + height][widthDelta + width];
-        for (int row = 0; row < heightDelta + height; row++) {
-            for (int col = 0; col < widthDelta + width; col++) {
-                // we add the pixel of the original picture if we are within the picture dimensions
-                if ((heightDelta / 2 <= row) && (row < (heightDelta / 2 + height))) {
-                    if ((widthDelta / 2 <= col) && (col < (widthDelta / 2 + width))) {
-                        newImagePixels[row][col] = this.image.getPixel(row - heightDelta / 2,
-                                col - widthDelta / 2);
-                        continue;
-                    }
-                }
-                newImagePixels[row][col] = Color.WHITE;
-            }
-        }
-        this.image = new Image(newImagePixels, widthDelta + width, heightDelta + height);
+    /**
+     * Captures the current image, with its pyramid and load timings, for sharing it with other image
+     * processors.
+     *
+     * @return The current image.
+     */
+    LoadedImage toLoadedImage() {
+        return new LoadedImage(this.image, this.pyramid, this.getLoadTimings());
     }
 
-    private void insertSubImage(LinkedList<Double> subImages, int i, int j, int size) {
-        double sumPixel = 0;
-        for (int row = 0; row < size; row++) {
-            for (int col = 0; col < size; col++) {
-                Color curPixel = this.image.getPixel(row + size * i, col + size * j);
-                sumPixel += (curPixel.getRed() * RED_WEIGHT) +
-                        (curPixel.getGreen() * GREEN_WEIGHT) +
-                        (curPixel.getBlue() * BLUE_WEIGHT);
-
-            }
+    private boolean setCachedImage(String imagePath) {
+        if (this.luminanceCache == null) {
+            return false;
         }
-        sumPixel = sumPixel / ((size * size) * MAX_RGB);
-        subImages.add(sumPixel);
+        long mapStart = System.nanoTime();
+        LuminanceCache.Plane plane;
+        try {
+            plane = this.luminanceCache.load(new File(imagePath));
+        } catch (IOException e) {
+            // a cache file that cannot be read is treated like a missing one
+            return false;
+        }
+        if (plane == null) {
+            return false;
+        }
+        this.totalImagesCounter++;
+        this.loadedFromCache = true;
+        long tableStart = System.nanoTime();
+        this.mapNanos = tableStart - mapStart;
+        LuminanceTable luminanceTable = new LuminanceTable(plane.getWidth(), plane.getHeight(), plane,
+                this.pool);
+        this.image = new PaddedImage(plane.getWidth(), plane.getHeight(), luminanceTable);
+        this.tableNanos = System.nanoTime() - tableStart;
+        this.buildPyramid();
+        return true;
     }
 
-
+    private void buildPyramid() {
+        this.pyramid = null;
+        this.pyramidNanos = 0;
+        if (!this.isPyramidEnabled || this.image == null) {
+            return;
+        }
+        long pyramidStart = System.nanoTime();
+        int minCharsInRow = Math.max(1, (this.image.getWidth()) / (this.image.getHeight()));
+        this.pyramid = new BrightnessPyramid(this.image, minCharsInRow, PYRAMID_MAX_SUB_IMAGES, this.pool);
+        this.pyramidNanos = System.nanoTime() - pyramidStart;
+    }
 }
@@ -0,0 +1,52 @@
+package image;
+
+/**
+ * An image that was loaded and indexed for creating sub-images: its padded view over the luminance
+ * table, its pyramid (if one was built) and how long loading it took. None of these change once they
+ * are built, so a loaded image can be shared by any number of threads.
+ */
+class LoadedImage {
+    private final PaddedImage image;
+    private final BrightnessPyramid pyramid;
+    private final String loadTimings;
+
+    /**
+     * Constructs a loaded image.
+     *
+     * @param image       The padded view of the image.
+     * @param pyramid     The pyramid of the image, or null if none was built.
+     * @param loadTimings The description of how long loading the image took.
+     */
+    LoadedImage(PaddedImage image, BrightnessPyramid pyramid, String loadTimings) {
+        this.image = image;
+        this.pyramid = pyramid;
+        this.loadTimings = loadTimings;
+    }
+
+    /**
+     * Returns the padded view of the image.
+     *
+     * @return The padded image.
+     */
+    PaddedImage getImage() {
+        return this.image;
+    }
+
+    /**
+     * Returns the pyramid of the image.
+     *
+     * @return The pyramid, or null if none was built.
+     */
+    BrightnessPyramid getPyramid() {
+        return this.pyramid;
+    }
+
+    /**
+     * Returns how long loading the image took.
+     *
+     * @return The description of the load timings.
+     */
+    String getLoadTimings() {
+        return this.loadTimings;
+    }
+}
@@ -0,0 +1,252 @@
+package image;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.IntBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * An on-disk cache of decoded images' luminance planes, so an image that was converted before does not
+ * have to be decoded again. Every entry is a raw file holding the scaled luminance of each pixel (see
+ * LuminanceTable), keyed by the image's path, size and modification time, and is read back by
+ * memory-mapping it: the luminance is read straight from the mapped file instead of decoding the image
+ * and copying its pixels onto the heap. The summed-area table built from it is still on the heap.
+ * The margins of the padded image are not stored, since the padding is only virtual.
+ * The entries of the directory are kept within a budget of bytes. Storing an entry evicts the least
+ * recently used ones that no longer fit (loading an entry marks it used), along with any older entry of
+ * the same image, which went stale when the image changed.
+ */
+class LuminanceCache {
+    private static final int FILE_MAGIC = 0x4C554D41;
+    private static final int FILE_VERSION = 1;
+    private static final int FIXED_HEADER_BYTES = 4 * Integer.BYTES + 2 * Long.BYTES;
+    private static final int DATA_ALIGNMENT = Long.BYTES;
+    private static final long MAX_SEGMENT_BYTES = Integer.MAX_VALUE;
+    private static final String ENTRY_NAME = "%08x-%x-%x.lum";
+    private static final String ENTRY_SUFFIX = ".lum";
+    private static final String ENTRY_PREFIX_END = "-";
+    private static final String TEMPORARY_SUFFIX = ".tmp";
+    private static final String BUDGET_ERROR = "Cache budget must be positive, got %d.";
+
+    private final File directory;
+    private final long budgetBytes;
+
+    /**
+     * The luminance plane of a cached image, mapped from its cache file.
+     */
+    static class Plane implements LuminanceTable.RowReader {
+        private final int width;
+        private final int height;
+        private final int rowsPerSegment;
+        private final IntBuffer[] segments;
+
+        private Plane(int width, int height, int rowsPerSegment, IntBuffer[] segments) {
+            this.width = width;
+            this.height = height;
+            this.rowsPerSegment = rowsPerSegment;
+            this.segments = segments;
+        }
+
+        /**
+         * Returns the width of the cached image.
+         *
+         * @return The width of the image.
+         */
+        int getWidth() {
+            return this.width;
+        }
+
+        /**
+         * Returns the height of the cached image.
+         *
+         * @return The height of the image.
+         */
+        int getHeight() {
+            return this.height;
+        }
+
+        @Override
+        public void readRow(int row, int[] destination) {
+            // a duplicate per read, since the buffers' positions are shared by all threads
+            IntBuffer segment = this.segments[row / this.rowsPerSegment].duplicate();
+            segment.position((row % this.rowsPerSegment) * this.width);
+            segment.get(destination, 0, this.width);
+        }
+    }
+
+    /**
+     * Constructs a cache whose entries are kept in the given directory.
+     *
+     * @param directory   The directory of the cache files, created when the first entry is stored.
+     * @param budgetBytes The most bytes the entries of the directory may take together.
+     * @throws IllegalArgumentException If the budget is not positive.
+     */
+    LuminanceCache(File directory, long budgetBytes) {
+        if (budgetBytes <= 0) {
+            throw new IllegalArgumentException(String.format(BUDGET_ERROR, budgetBytes));
+        }
+        this.directory = directory;
+        this.budgetBytes = budgetBytes;
+    }
+
+    /**
+     * Maps the cached luminance plane of an image file.
+     *
+     * @param image The image file.
+     * @return The plane of the image, or null if it is not cached or the image changed since.
+     * @throws IOException If the cache file exists but cannot be read.
+     */
+    Plane load(File image) throws IOException {
+        File entry = this.entryOf(image);
+        if (!entry.isFile()) {
+            return null;
+        }
+        try (FileChannel channel = FileChannel.open(entry.toPath(), StandardOpenOption.READ)) {
+            ByteBuffer header = ByteBuffer.allocate(FIXED_HEADER_BYTES);
+            channel.read(header, 0);
+            header.flip();
+            if (header.remaining() < FIXED_HEADER_BYTES || header.getInt() != FILE_MAGIC ||
+                    header.getInt() != FILE_VERSION) {
+                return null;
+            }
+            int width = header.getInt();
+            int height = header.getInt();
+            long length = header.getLong();
+            long lastModified = header.getLong();
+            byte[] path = image.getAbsolutePath().getBytes(StandardCharsets.UTF_8);
+            ByteBuffer storedPath = ByteBuffer.allocate(path.length);
+            channel.read(storedPath, FIXED_HEADER_BYTES);
+            if (length != image.length() || lastModified != image.lastModified() ||
+                    !ByteBuffer.wrap(path).equals(storedPath.flip())) {
+                return null;
+            }
+            long rowBytes = (long) width * Integer.BYTES;
+            long dataOffset = dataOffsetOf(path.length);
+            if (channel.size() < dataOffset + rowBytes * height) {
+                return null;
+            }
+            // a single mapping cannot be larger than 2GB, so huge planes are mapped in bands of rows
+            int rowsPerSegment = (int) Math.max(1, Math.min(height, MAX_SEGMENT_BYTES / rowBytes));
+            IntBuffer[] segments = new IntBuffer[(height + rowsPerSegment - 1) / rowsPerSegment];
+            for (int i = 0; i < segments.length; i++) {
+                int rows = Math.min(rowsPerSegment, height - i * rowsPerSegment);
+                segments[i] = channel.map(FileChannel.MapMode.READ_ONLY,
+                        dataOffset + i * rowsPerSegment * rowBytes, rows * rowBytes).asIntBuffer();
+            }
+            // the modification time of an entry is when it was last used, for the eviction
+            entry.setLastModified(System.currentTimeMillis());
+            return new Plane(width, height, rowsPerSegment, segments);
+        }
+    }
+
+    /**
+     * Stores the luminance plane of an image in the cache, unless it is larger than the whole budget. The
+     * entry is written to a temporary file first, so a crash never leaves a broken entry behind, and the
+     * temporary file is deleted if writing fails.
+     *
+     * @param image  The image file.
+     * @param source The decoded image.
+     * @throws IOException If the cache file cannot be written.
+     */
+    void store(File image, Image source) throws IOException {
+        byte[] path = image.getAbsolutePath().getBytes(StandardCharsets.UTF_8);
+        long entryBytes = dataOffsetOf(path.length) + (long) source.getWidth() * source.getHeight() *
+                Integer.BYTES;
+        if (entryBytes > this.budgetBytes) {
+            return;
+        }
+        Files.createDirectories(this.directory.toPath());
+        File entry = this.entryOf(image);
+        Path temporary = new File(entry.getPath() + TEMPORARY_SUFFIX).toPath();
+        try {
+            this.write(temporary, path, image, source);
+            try {
+                Files.move(temporary, entry.toPath(), StandardCopyOption.ATOMIC_MOVE);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(temporary, entry.toPath(), StandardCopyOption.REPLACE_EXISTING);
+            }
+        } catch (IOException | RuntimeException e) {
+            Files.deleteIfExists(temporary);
+            throw e;
+        }
+        this.evict(entry);
+    }
+
+    private void write(Path temporary, byte[] path, File image, Image source) throws IOException {
+        try (FileChannel channel = FileChannel.open(temporary, StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            ByteBuffer header = ByteBuffer.allocate((int) dataOffsetOf(path.length));
+            header.putInt(FILE_MAGIC).putInt(FILE_VERSION).putInt(source.getWidth())
+                    .putInt(source.getHeight()).putLong(image.length()).putLong(image.lastModified())
+                    .put(path);
+            header.clear();
+            writeFully(channel, header);
+            int[] luminance = new int[source.getWidth()];
+            ByteBuffer row = ByteBuffer.allocate(source.getWidth() * Integer.BYTES);
+            for (int i = 0; i < source.getHeight(); i++) {
+                LuminanceTable.readRow(source, i, luminance);
+                row.clear();
+                row.asIntBuffer().put(luminance);
+                writeFully(channel, row);
+            }
+        }
+    }
+
+    private void evict(File stored) {
+        File[] files = this.directory.listFiles();
+        if (files == null) {
+            return;
+        }
+        String imagePrefix = stored.getName().substring(0, stored.getName().indexOf(ENTRY_PREFIX_END) + 1);
+        List<File> entries = new ArrayList<>();
+        long totalBytes = 0;
+        for (File file : files) {
+            if (!file.getName().endsWith(ENTRY_SUFFIX) || file.equals(stored)) {
+                continue;
+            }
+            // an entry of the same path (or of one with the same hash, which only costs a reload) is stale
+            if (file.getName().startsWith(imagePrefix) && file.delete()) {
+                continue;
+            }
+            entries.add(file);
+            totalBytes += file.length();
+        }
+        totalBytes += stored.length();
+        // the least recently used entries are evicted first. one that cannot be deleted, for instance
+        // because it is still mapped on some platforms, is simply left for the next time.
+        entries.sort(Comparator.comparingLong(File::lastModified));
+        for (int i = 0; i < entries.size() && totalBytes > this.budgetBytes; i++) {
+            long entryBytes = entries.get(i).length();
+            if (entries.get(i).delete()) {
+                totalBytes -= entryBytes;
+            }
+        }
+    }
+
+    private File entryOf(File image) {
+        String name = String.format(ENTRY_NAME, image.getAbsolutePath().hashCode(), image.length(),
+                image.lastModified());
+        return new File(this.directory, name);
+    }
+
+    private static long dataOffsetOf(int pathBytes) {
+        long headerBytes = FIXED_HEADER_BYTES + pathBytes;
+        return (headerBytes + DATA_ALIGNMENT - 1) / DATA_ALIGNMENT * DATA_ALIGNMENT;
+    }
+
+    private static void writeFully(FileChannel channel, ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+    }
+}
@@ -0,0 +1,45 @@
+package image;
+
+/**
+ * Converts rows of packed ARGB pixels into their scaled luminance (see LuminanceTable). This is the
+ * only per-pixel pass over a decoded image, so it may be implemented with SIMD instructions where the
+ * platform has them; every engine gives exactly the same luminance.
+ */
+interface LuminanceEngine {
+    /**
+     * The engine that converts one pixel at a time, available on every platform.
+     */
+    LuminanceEngine SCALAR = new ScalarLuminanceEngine();
+    /**
+     * The fastest engine available: the vector engine if it was compiled and the jdk.incubator.vector
+     * module is present at runtime, and the scalar engine otherwise.
+     */
+    LuminanceEngine FASTEST = loadFastest();
+
+    /**
+     * Converts a run of packed ARGB pixels into their scaled luminance.
+     *
+     * @param pixels      The packed ARGB pixels.
+     * @param offset      The index of the first pixel to convert.
+     * @param destination The array to write the luminance to, from index 0.
+     * @param length      The number of pixels to convert.
+     */
+    void luminanceRow(int[] pixels, int offset, int[] destination, int length);
+
+    /**
+     * Returns the name of the engine, for reports.
+     *
+     * @return The name of the engine.
+     */
+    String getName();
+
+    private static LuminanceEngine loadFastest() {
+        try {
+            return (LuminanceEngine) Class.forName("image.VectorLuminanceEngine")
+                    .getDeclaredConstructor().newInstance();
+        } catch (ReflectiveOperationException | LinkageError e) {
+            // the vector engine is not on the class path, or the module it needs was not added
+            return SCALAR;
+        }
+    }
+}
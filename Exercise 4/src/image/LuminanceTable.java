@@ -0,0 +1,171 @@
+package image;
+
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * A summed-area table (integral image) over the luminance of an image. It is built once per image in
+ * a single pass, after which the total luminance of any rectangle, and so the average brightness of
+ * any sub-image, takes four lookups no matter how large the rectangle is.
+ * The luminance is kept in fixed point (the usual weights scaled by WEIGHT_SCALE) so the sums are exact
+ * and do not depend on the order in which they were added.
+ */
+class LuminanceTable {
+    /**
+     * The red weight of the luminance formula, scaled by WEIGHT_SCALE.
+     */
+    static final int RED_WEIGHT = 2126;
+    /**
+     * The green weight of the luminance formula, scaled by WEIGHT_SCALE.
+     */
+    static final int GREEN_WEIGHT = 7152;
+    /**
+     * The blue weight of the luminance formula, scaled by WEIGHT_SCALE.
+     */
+    static final int BLUE_WEIGHT = 722;
+    /**
+     * The factor the luminance weights are scaled by, so that they sum up to it.
+     */
+    static final long WEIGHT_SCALE = 10000;
+    private static final double MAX_RGB = 255;
+    private static final int RED_SHIFT = 16;
+    private static final int GREEN_SHIFT = 8;
+    private static final int CHANNEL_MASK = 0xFF;
+
+    /**
+     * Reads the scaled luminance of the pixels of an image, one row at a time.
+     */
+    interface RowReader {
+        /**
+         * Reads the scaled luminance of all the pixels in a row.
+         *
+         * @param row         The row to read.
+         * @param destination The array to write the luminance of the row's pixels to, from index 0.
+         */
+        void readRow(int row, int[] destination);
+    }
+
+    private final long[] table;
+    private final int stride;
+
+    /**
+     * Builds the summed-area table of the given image.
+     *
+     * @param image  The image to build the table over.
+     * @param engine The engine to convert the image's pixels into luminance with.
+     * @param pool   The pool to build the table on, or null to build it on the calling thread.
+     */
+    LuminanceTable(Image image, LuminanceEngine engine, ForkJoinPool pool) {
+        this(image.getWidth(), image.getHeight(), (row, destination) ->
+                engine.luminanceRow(image.getPixels(), row * image.getWidth(), destination, image.getWidth()),
+                pool);
+    }
+
+    /**
+     * Builds the summed-area table of an image whose luminance is read row by row. With a pool, the
+     * rows are first summed in parallel and then the columns are accumulated in parallel; without one,
+     * the table is built in a single sequential pass. Both give exactly the same table.
+     *
+     * @param width  The width of the image.
+     * @param height The height of the image.
+     * @param reader The reader of the image's luminance. It may be called from several threads.
+     * @param pool   The pool to build the table on, or null to build it on the calling thread.
+     */
+    LuminanceTable(int width, int height, RowReader reader, ForkJoinPool pool) {
+        this.stride = width + 1;
+        // the first row and column stay zero so that rectangles touching the borders need no checks
+        this.table = new long[(height + 1) * this.stride];
+        if (pool == null) {
+            this.sumRows(reader, 0, height, true);
+            return;
+        }
+        RangeTask.run(pool, 0, height, (from, to) -> this.sumRows(reader, from, to, false));
+        RangeTask.run(pool, 1, this.stride, this::accumulateColumns);
+    }
+
+    /**
+     * Reads the scaled luminance of all the pixels in a row of an image.
+     *
+     * @param image       The image to read.
+     * @param row         The row to read.
+     * @param destination The array to write the luminance of the row's pixels to, from index 0.
+     */
+    static void readRow(Image image, int row, int[] destination) {
+        LuminanceEngine.SCALAR.luminanceRow(image.getPixels(), row * image.getWidth(), destination,
+                image.getWidth());
+    }
+
+    private void sumRows(RowReader reader, int fromRow, int toRow, boolean accumulate) {
+        int width = this.stride - 1;
+        int[] luminance = new int[width];
+        for (int row = fromRow; row < toRow; row++) {
+            reader.readRow(row, luminance);
+            long rowSum = 0;
+            int above = row * this.stride + 1;
+            int current = above + this.stride;
+            for (int col = 0; col < width; col++) {
+                rowSum += luminance[col];
+                this.table[current + col] = accumulate ? this.table[above + col] + rowSum : rowSum;
+            }
+        }
+    }
+
+    private void accumulateColumns(int fromCol, int toCol) {
+        // walking row by row over a band of columns keeps the reads sequential in memory
+        for (int current = 2 * this.stride; current < this.table.length; current += this.stride) {
+            for (int col = fromCol; col < toCol; col++) {
+                this.table[current + col] += this.table[current - this.stride + col];
+            }
+        }
+    }
+
+    /**
+     * Calculates the luminance of a packed RGB pixel in fixed point, in the range of
+     * [0, 255 * WEIGHT_SCALE].
+     *
+     * @param rgb The packed RGB value of the pixel.
+     * @return The scaled luminance of the pixel.
+     */
+    static int scaledLuminance(int rgb) {
+        return ((rgb >> RED_SHIFT) & CHANNEL_MASK) * RED_WEIGHT +
+                ((rgb >> GREEN_SHIFT) & CHANNEL_MASK) * GREEN_WEIGHT +
+                (rgb & CHANNEL_MASK) * BLUE_WEIGHT;
+    }
+
+    /**
+     * Sums the scaled luminance of the rectangle starting at the given row and column.
+     *
+     * @param row    The first row of the rectangle.
+     * @param col    The first column of the rectangle.
+     * @param height The number of rows in the rectangle.
+     * @param width  The number of columns in the rectangle.
+     * @return The sum of the scaled luminance of all the pixels in the rectangle.
+     */
+    long sum(int row, int col, int height, int width) {
+        int top = row * this.stride + col;
+        int bottom = (row + height) * this.stride + col;
+        return this.table[bottom + width] - this.table[bottom] - this.table[top + width] + this.table[top];
+    }
+
+    /**
+     * Calculates the average brightness of the square sub-image starting at the given row and column.
+     *
+     * @param row  The first row of the sub-image.
+     * @param col  The first column of the sub-image.
+     * @param size The size of the sub-image's side.
+     * @return The brightness of the sub-image, in the range of [0, 1].
+     */
+    double brightness(int row, int col, int size) {
+        return toBrightness(this.sum(row, col, size, size), (long) size * size);
+    }
+
+    /**
+     * Converts a sum of scaled luminance into a brightness.
+     *
+     * @param luminanceSum The sum of the scaled luminance of some pixels.
+     * @param pixels       The number of pixels that were summed.
+     * @return The average brightness of these pixels, in the range of [0, 1].
+     */
+    static double toBrightness(long luminanceSum, long pixels) {
+        return luminanceSum / (pixels * WEIGHT_SCALE * MAX_RGB);
+    }
+}
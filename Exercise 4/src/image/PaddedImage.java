@@ -0,0 +1,220 @@
+package image;
+
+import java.awt.*;
+import java.util.Arrays;
+
+/**
+ * A view of an image padded with white margins up to the next power of two in each dimension, with the
+ * image centered inside them. Nothing is copied: coordinates outside of the source image simply read
+ * as white, and the brightness of a sub-image is the source's luminance under it (from the source's
+ * luminance table) plus white for the part of it that falls in the margins.
+ * A view can also be made over the luminance table alone, without the source's pixels, in which case
+ * only the brightness of sub-images can be read from it.
+ */
+class PaddedImage {
+    private static final int WHITE = Color.WHITE.getRGB();
+    private static final int MAX_CHANNEL = 255;
+    private static final int RED_SHIFT = 16;
+    private static final int GREEN_SHIFT = 8;
+    private static final int CHANNEL_MASK = 0xFF;
+    /**
+     * The number of channels summed for every sub-image by channelSums.
+     */
+    static final int CHANNELS = 3;
+    /**
+     * The scaled luminance of a pixel in the margins.
+     */
+    static final long WHITE_LUMINANCE = LuminanceTable.scaledLuminance(WHITE);
+
+    private final Image source;
+    private final LuminanceTable luminanceTable;
+    private final int sourceWidth;
+    private final int sourceHeight;
+    private final int width;
+    private final int height;
+    private final int rowOffset;
+    private final int colOffset;
+
+    /**
+     * Constructs a padded view of an image.
+     *
+     * @param source         The image to pad.
+     * @param luminanceTable The luminance table of the source image.
+     */
+    PaddedImage(Image source, LuminanceTable luminanceTable) {
+        this(source, source.getWidth(), source.getHeight(), luminanceTable);
+    }
+
+    /**
+     * Constructs a padded view of an image of which only the luminance table is known.
+     *
+     * @param sourceWidth    The width of the image to pad.
+     * @param sourceHeight   The height of the image to pad.
+     * @param luminanceTable The luminance table of the source image.
+     */
+    PaddedImage(int sourceWidth, int sourceHeight, LuminanceTable luminanceTable) {
+        this(null, sourceWidth, sourceHeight, luminanceTable);
+    }
+
+    private PaddedImage(Image source, int sourceWidth, int sourceHeight, LuminanceTable luminanceTable) {
+        this.source = source;
+        this.sourceWidth = sourceWidth;
+        this.sourceHeight = sourceHeight;
+        this.luminanceTable = luminanceTable;
+        this.height = paddedSize(sourceHeight);
+        this.width = paddedSize(sourceWidth);
+        this.rowOffset = (this.height - sourceHeight) / 2;
+        this.colOffset = (this.width - sourceWidth) / 2;
+    }
+
+    /**
+     * Rounds a dimension of an image up to the power of two it is padded to.
+     *
+     * @param sourceSize The width or the height of the image.
+     * @return The padded width or height.
+     */
+    static int paddedSize(int sourceSize) {
+        int pad = (int) Math.ceil(Math.log(sourceSize) / Math.log(2));
+        return (int) Math.pow(2, pad);
+    }
+
+    /**
+     * Returns the width of the padded image.
+     *
+     * @return The padded width, a power of two.
+     */
+    int getWidth() {
+        return this.width;
+    }
+
+    /**
+     * Returns the height of the padded image.
+     *
+     * @return The padded height, a power of two.
+     */
+    int getHeight() {
+        return this.height;
+    }
+
+    /**
+     * Returns the number of pixels in the source image, without the margins.
+     *
+     * @return The number of the source image's pixels.
+     */
+    long getSourcePixels() {
+        return (long) this.sourceWidth * this.sourceHeight;
+    }
+
+    /**
+     * Returns whether the view has the source's pixels, and not only its luminance table.
+     *
+     * @return True if the pixels of the source can be read.
+     */
+    boolean hasPixels() {
+        return this.source != null;
+    }
+
+    /**
+     * Returns the packed ARGB value of the pixel at the specified row and column of the padded image.
+     * Must only be called on a view that has the source's pixels.
+     *
+     * @param row The row of the pixel in the padded image.
+     * @param col The column of the pixel in the padded image.
+     * @return The pixel of the source image, or white if the pixel is in the margins.
+     */
+    int getRGB(int row, int col) {
+        int sourceRow = row - this.rowOffset;
+        int sourceCol = col - this.colOffset;
+        if (sourceRow < 0 || sourceRow >= this.sourceHeight ||
+                sourceCol < 0 || sourceCol >= this.sourceWidth) {
+            return WHITE;
+        }
+        return this.source.getRGB(sourceRow, sourceCol);
+    }
+
+    /**
+     * Calculates the average brightness of the square sub-image of the padded image starting at the
+     * given row and column.
+     *
+     * @param row  The first row of the sub-image in the padded image.
+     * @param col  The first column of the sub-image in the padded image.
+     * @param size The size of the sub-image's side.
+     * @return The brightness of the sub-image, in the range of [0, 1].
+     */
+    double brightness(int row, int col, int size) {
+        return LuminanceTable.toBrightness(this.luminanceSum(row, col, size), (long) size * size);
+    }
+
+    /**
+     * Sums the red, green and blue channels of every sub-image in a row of sub-images, in a single pass
+     * over the source pixels under the row. Pixels in the margins count as white. Must only be called on
+     * a view that has the source's pixels.
+     * Since the scaled luminance is a weighted sum of the channels, the luminance sum of every sub-image
+     * is exactly the weighted sum of its channel sums.
+     *
+     * @param row  The first row of the sub-images in the padded image.
+     * @param size The size of the sub-images' side.
+     * @param sums The array to write the sums to from index 0, CHANNELS per sub-image (red, green and then
+     *             blue), for all the width / size sub-images in the row.
+     */
+    void channelSums(int row, int size, long[] sums) {
+        int cols = this.width / size;
+        Arrays.fill(sums, 0, cols * CHANNELS, 0);
+        int[] pixels = this.source.getPixels();
+        int top = Math.max(row - this.rowOffset, 0);
+        int bottom = Math.min(row + size - this.rowOffset, this.sourceHeight);
+        for (int sourceRow = top; sourceRow < bottom; sourceRow++) {
+            int rowStart = sourceRow * this.sourceWidth;
+            for (int j = 0; j < cols; j++) {
+                int left = Math.max(j * size - this.colOffset, 0);
+                int right = Math.min((j + 1) * size - this.colOffset, this.sourceWidth);
+                long red = 0;
+                long green = 0;
+                long blue = 0;
+                for (int index = rowStart + left; index < rowStart + right; index++) {
+                    int rgb = pixels[index];
+                    red += (rgb >> RED_SHIFT) & CHANNEL_MASK;
+                    green += (rgb >> GREEN_SHIFT) & CHANNEL_MASK;
+                    blue += rgb & CHANNEL_MASK;
+                }
+                sums[j * CHANNELS] += red;
+                sums[j * CHANNELS + 1] += green;
+                sums[j * CHANNELS + 2] += blue;
+            }
+        }
+        long pixelsCount = (long) size * size;
+        for (int j = 0; j < cols; j++) {
+            int left = Math.max(j * size - this.colOffset, 0);
+            int right = Math.min((j + 1) * size - this.colOffset, this.sourceWidth);
+            long sourcePixels = (long) Math.max(bottom - top, 0) * Math.max(right - left, 0);
+            for (int channel = 0; channel < CHANNELS; channel++) {
+                sums[j * CHANNELS + channel] += (pixelsCount - sourcePixels) * MAX_CHANNEL;
+            }
+        }
+    }
+
+    /**
+     * Sums the scaled luminance of the square sub-image of the padded image starting at the given row
+     * and column.
+     *
+     * @param row  The first row of the sub-image in the padded image.
+     * @param col  The first column of the sub-image in the padded image.
+     * @param size The size of the sub-image's side.
+     * @return The sum of the scaled luminance of all the pixels in the sub-image.
+     */
+    long luminanceSum(int row, int col, int size) {
+        // the part of the sub-image that lies over the source image, in source coordinates
+        int top = Math.max(row - this.rowOffset, 0);
+        int bottom = Math.min(row + size - this.rowOffset, this.sourceHeight);
+        int left = Math.max(col - this.colOffset, 0);
+        int right = Math.min(col + size - this.colOffset, this.sourceWidth);
+        long pixels = (long) size * size;
+        long sourcePixels = 0;
+        long luminanceSum = 0;
+        if (top < bottom && left < right) {
+            sourcePixels = (long) (bottom - top) * (right - left);
+            luminanceSum = this.luminanceTable.sum(top, left, bottom - top, right - left);
+        }
+        return luminanceSum + (pixels - sourcePixels) * WHITE_LUMINANCE;
+    }
+}
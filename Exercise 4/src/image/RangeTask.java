@@ -0,0 +1,68 @@
+package image;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * A fork-join task that splits a range of indices in halves until the pieces are small enough, then
+ * hands every piece to a body. Used for work whose indices (rows, columns...) are independent of each
+ * other, so the result is the same no matter how the range was split.
+ */
+class RangeTask extends RecursiveAction {
+    private static final long serialVersionUID = 1L;
+    private static final int CHUNKS_PER_THREAD = 4;
+
+    /**
+     * The work done on a piece of the range.
+     */
+    interface Body {
+        /**
+         * Does the work for the indices in [from, to).
+         *
+         * @param from The first index of the piece.
+         * @param to   The index after the last one of the piece.
+         */
+        void run(int from, int to);
+    }
+
+    private final int from;
+    private final int to;
+    private final int grain;
+    private final transient Body body;
+
+    private RangeTask(int from, int to, int grain, Body body) {
+        this.from = from;
+        this.to = to;
+        this.grain = grain;
+        this.body = body;
+    }
+
+    /**
+     * Runs the body over the range [from, to), split over the given pool. If there is no pool the body
+     * runs over the whole range on the calling thread.
+     *
+     * @param pool The pool to run on, or null to run sequentially.
+     * @param from The first index of the range.
+     * @param to   The index after the last one of the range.
+     * @param body The work to do on every piece of the range.
+     */
+    static void run(ForkJoinPool pool, int from, int to, Body body) {
+        if (pool == null) {
+            body.run(from, to);
+            return;
+        }
+        int grain = Math.max(1, (to - from) / (pool.getParallelism() * CHUNKS_PER_THREAD));
+        pool.invoke(new RangeTask(from, to, grain, body));
+    }
+
+    @Override
+    protected void compute() {
+        if (this.to - this.from <= this.grain) {
+            this.body.run(this.from, this.to);
+            return;
+        }
+        int middle = (this.from + this.to) >>> 1;
+        invokeAll(new RangeTask(this.from, middle, this.grain, this.body),
+                new RangeTask(middle, this.to, this.grain, this.body));
+    }
+}
@@ -0,0 +1,154 @@
+package image;
+
+import java.awt.image.DataBuffer;
+import java.awt.image.PixelInterleavedSampleModel;
+import java.awt.image.SampleModel;
+import java.util.Arrays;
+
+/**
+ * A pixel-interleaved sample model of a tall image of which only a few rows are stored at a time: row y
+ * is stored where row y modulo the number of stored rows would be, so the data buffer holds those rows
+ * however tall the image is. Any row of the image can be written and read, but only the rows written
+ * last, as many as are stored, can be read back.
+ */
+class RingSampleModel extends PixelInterleavedSampleModel {
+    private final int ringRows;
+
+    /**
+     * Constructs a sample model that stores rows the way the given one does.
+     *
+     * @param rows   The sample model of the stored rows, as tall as the number of rows to store.
+     * @param height The height of the whole image.
+     */
+    RingSampleModel(PixelInterleavedSampleModel rows, int height) {
+        this(rows.getDataType(), rows.getWidth(), height, rows.getPixelStride(), rows.getScanlineStride(),
+                rows.getBandOffsets(), rows.getHeight());
+    }
+
+    private RingSampleModel(int dataType, int width, int height, int pixelStride, int scanlineStride,
+                            int[] bandOffsets, int ringRows) {
+        super(dataType, width, height, pixelStride, scanlineStride, bandOffsets);
+        this.ringRows = ringRows;
+    }
+
+    @Override
+    public DataBuffer createDataBuffer() {
+        return new PixelInterleavedSampleModel(this.getDataType(), this.getWidth(), this.ringRows,
+                this.getPixelStride(), this.getScanlineStride(), this.getBandOffsets()).createDataBuffer();
+    }
+
+    @Override
+    public SampleModel createSubsetSampleModel(int[] bands) {
+        int[] bandOffsets = this.getBandOffsets();
+        int[] subsetOffsets = new int[bands.length];
+        for (int i = 0; i < bands.length; i++) {
+            subsetOffsets[i] = bandOffsets[bands[i]];
+        }
+        return new RingSampleModel(this.getDataType(), this.getWidth(), this.getHeight(),
+                this.getPixelStride(), this.getScanlineStride(), subsetOffsets, this.ringRows);
+    }
+
+    @Override
+    public int getOffset(int x, int y) {
+        return super.getOffset(x, this.ringRow(y));
+    }
+
+    @Override
+    public int getOffset(int x, int y, int b) {
+        return super.getOffset(x, this.ringRow(y), b);
+    }
+
+    @Override
+    public Object getDataElements(int x, int y, Object obj, DataBuffer data) {
+        return super.getDataElements(x, this.ringRow(y), obj, data);
+    }
+
+    @Override
+    public void setDataElements(int x, int y, Object obj, DataBuffer data) {
+        super.setDataElements(x, this.ringRow(y), obj, data);
+    }
+
+    @Override
+    public int[] getPixel(int x, int y, int[] iArray, DataBuffer data) {
+        return super.getPixel(x, this.ringRow(y), iArray, data);
+    }
+
+    @Override
+    public void setPixel(int x, int y, int[] iArray, DataBuffer data) {
+        super.setPixel(x, this.ringRow(y), iArray, data);
+    }
+
+    @Override
+    public int getSample(int x, int y, int b, DataBuffer data) {
+        return super.getSample(x, this.ringRow(y), b, data);
+    }
+
+    @Override
+    public float getSampleFloat(int x, int y, int b, DataBuffer data) {
+        return super.getSampleFloat(x, this.ringRow(y), b, data);
+    }
+
+    @Override
+    public double getSampleDouble(int x, int y, int b, DataBuffer data) {
+        return super.getSampleDouble(x, this.ringRow(y), b, data);
+    }
+
+    @Override
+    public void setSample(int x, int y, int b, int s, DataBuffer data) {
+        super.setSample(x, this.ringRow(y), b, s, data);
+    }
+
+    @Override
+    public void setSample(int x, int y, int b, float s, DataBuffer data) {
+        super.setSample(x, this.ringRow(y), b, s, data);
+    }
+
+    @Override
+    public void setSample(int x, int y, int b, double s, DataBuffer data) {
+        super.setSample(x, this.ringRow(y), b, s, data);
+    }
+
+    // the rectangles of pixels may wrap around the end of the ring, so they are handled a row at a time
+
+    @Override
+    public int[] getPixels(int x, int y, int w, int h, int[] iArray, DataBuffer data) {
+        int rowLength = w * this.getNumBands();
+        int[] pixels = iArray != null ? iArray : new int[rowLength * h];
+        for (int i = 0; i < h; i++) {
+            int[] row = super.getPixels(x, this.ringRow(y + i), w, 1, (int[]) null, data);
+            System.arraycopy(row, 0, pixels, i * rowLength, rowLength);
+        }
+        return pixels;
+    }
+
+    @Override
+    public void setPixels(int x, int y, int w, int h, int[] iArray, DataBuffer data) {
+        int rowLength = w * this.getNumBands();
+        for (int i = 0; i < h; i++) {
+            super.setPixels(x, this.ringRow(y + i), w, 1,
+                    Arrays.copyOfRange(iArray, i * rowLength, (i + 1) * rowLength), data);
+        }
+    }
+
+    @Override
+    public int[] getSamples(int x, int y, int w, int h, int b, int[] iArray, DataBuffer data) {
+        int[] samples = iArray != null ? iArray : new int[w * h];
+        for (int i = 0; i < h; i++) {
+            int[] row = super.getSamples(x, this.ringRow(y + i), w, 1, b, (int[]) null, data);
+            System.arraycopy(row, 0, samples, i * w, w);
+        }
+        return samples;
+    }
+
+    @Override
+    public void setSamples(int x, int y, int w, int h, int b, int[] iArray, DataBuffer data) {
+        for (int i = 0; i < h; i++) {
+            super.setSamples(x, this.ringRow(y + i), w, 1, b, Arrays.copyOfRange(iArray, i * w, (i + 1) * w),
+                    data);
+        }
+    }
+
+    private int ringRow(int y) {
+        return y % this.ringRows;
+    }
+}
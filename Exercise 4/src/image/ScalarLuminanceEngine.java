@@ -0,0 +1,20 @@
+package image;
+
+/**
+ * Converts pixels into their scaled luminance one at a time.
+ */
+class ScalarLuminanceEngine implements LuminanceEngine {
+    private static final String NAME = "scalar";
+
+    @Override
+    public void luminanceRow(int[] pixels, int offset, int[] destination, int length) {
+        for (int col = 0; col < length; col++) {
+            destination[col] = LuminanceTable.scaledLuminance(pixels[offset + col]);
+        }
+    }
+
+    @Override
+    public String getName() {
+        return NAME;
+    }
+}
@@ -0,0 +1,265 @@
+package image;
+
+import org.w3c.dom.Node;
+
+import javax.imageio.ImageReadParam;
+import javax.imageio.ImageReader;
+import javax.imageio.ImageTypeSpecifier;
+import javax.imageio.event.IIOReadUpdateListener;
+import javax.imageio.metadata.IIOMetadata;
+import javax.imageio.metadata.IIOMetadataFormatImpl;
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.awt.image.ColorModel;
+import java.awt.image.PixelInterleavedSampleModel;
+import java.awt.image.SampleModel;
+import java.awt.image.WritableRaster;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.Iterator;
+import java.util.Locale;
+import java.util.Set;
+
+/**
+ * Decodes an image from top to bottom in a single pass, on a thread of its own, into a ring of rows (see
+ * RingSampleModel) from which the rows are read in order. Formats such as PNG and JPEG can only be
+ * decoded from the start, so decoding them in regions decodes all the rows above a region again for
+ * every region; a single pass decodes every row once, and still holds no more rows than the ring does.
+ * The decoding thread waits whenever the ring is full of rows that were not read yet.
+ * Only images whose reader writes and reports them a row at a time, top to bottom, can be decoded this
+ * way: sequential (not interlaced or progressive) PNGs and JPEGs with interleaved samples.
+ * Images of Integer.MAX_VALUE pixels or more cannot be decoded this way either, as no sample model can
+ * address them: they are decoded in regions, and so take time quadratic in their height to read.
+ */
+class SequentialRowDecoder implements Closeable {
+    private static final Set<String> SEQUENTIAL_FORMATS = Set.of("png", "jpeg");
+    private static final String COMPRESSION_NODE = "Compression";
+    private static final String SCANS_NODE = "NumProgressiveScans";
+    private static final String VALUE_ATTRIBUTE = "value";
+    private static final String SINGLE_SCAN = "1";
+    private static final String TRUNCATED_IMAGE = "Image ended after %d of %d rows.";
+    private static final String UNORDERED_ROWS = "Image rows were not decoded in order.";
+    private static final String INTERRUPTED = "Image decoding was interrupted.";
+    private static final int MIN_RING_ROWS = 2;
+
+    private final ImageReader reader;
+    private final BufferedImage ring;
+    private final int width;
+    private final int height;
+    private final int ringRows;
+    private final Thread decoder;
+    // guarded by this: the rows decoded so far, the rows read so far, and how the decoding ended
+    private int decodedRows = 0;
+    private int readRows = 0;
+    private boolean isDecoded = false;
+    private boolean isClosed = false;
+    private Throwable failure;
+
+    private SequentialRowDecoder(ImageReader reader, BufferedImage ring, int height, int ringRows) {
+        this.reader = reader;
+        this.ring = ring;
+        this.width = ring.getWidth();
+        this.height = height;
+        this.ringRows = ringRows;
+        this.decoder = new Thread(this::decode, "sequential-row-decoder");
+        this.decoder.setDaemon(true);
+        this.decoder.start();
+    }
+
+    /**
+     * Starts decoding the first image of a reader in a single pass, if its format allows it.
+     *
+     * @param reader     The reader, with its input set and metadata not ignored.
+     * @param ringPixels The number of pixels to hold decoded rows in, at least two rows.
+     * @return The decoder, or null if the image can only be decoded in regions.
+     * @throws IOException If reading the image's header fails.
+     */
+    static SequentialRowDecoder open(ImageReader reader, long ringPixels) throws IOException {
+        String format = reader.getFormatName().toLowerCase(Locale.ROOT);
+        if (!SEQUENTIAL_FORMATS.contains(format) || !isSingleScan(reader.getImageMetadata(0))) {
+            return null;
+        }
+        int width = reader.getWidth(0);
+        int height = reader.getHeight(0);
+        Iterator<ImageTypeSpecifier> types = reader.getImageTypes(0);
+        // a sample model cannot address more than Integer.MAX_VALUE pixels, even if it stores few of them
+        if (!types.hasNext() || (long) width * height >= Integer.MAX_VALUE) {
+            return null;
+        }
+        ImageTypeSpecifier type = types.next();
+        int ringRows = (int) Math.min(Math.max(ringPixels / width, MIN_RING_ROWS), height);
+        SampleModel rows = type.getSampleModel(width, ringRows);
+        if (!(rows instanceof PixelInterleavedSampleModel)) {
+            return null;
+        }
+        RingSampleModel sampleModel = new RingSampleModel((PixelInterleavedSampleModel) rows, height);
+        ColorModel colorModel = type.getColorModel();
+        BufferedImage ring = new BufferedImage(colorModel, new RingRaster(sampleModel),
+                colorModel.isAlphaPremultiplied(), null);
+        return new SequentialRowDecoder(reader, ring, height, ringRows);
+    }
+
+    /**
+     * Reads the next row of the image, waiting for it to be decoded.
+     *
+     * @param row The row to read, the one after the row read last.
+     * @param rgb The array to write the row's pixels to, in the default RGB color model.
+     * @throws IOException If decoding the row fails.
+     */
+    void readRow(int row, int[] rgb) throws IOException {
+        synchronized (this) {
+            while (this.decodedRows <= row && !this.isDecoded) {
+                try {
+                    this.wait();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new InterruptedIOException(INTERRUPTED);
+                }
+            }
+            if (this.decodedRows <= row) {
+                if (this.failure instanceof IOException) {
+                    throw (IOException) this.failure;
+                }
+                if (this.failure != null) {
+                    throw new IOException(this.failure);
+                }
+                throw new IOException(String.format(TRUNCATED_IMAGE, this.decodedRows, this.height));
+            }
+        }
+        this.ring.getRGB(0, row, this.width, 1, rgb, 0, this.width);
+        synchronized (this) {
+            this.readRows = row + 1;
+            this.notifyAll();
+        }
+    }
+
+    /**
+     * Stops decoding, and waits for the decoding thread to finish so that the reader can be disposed.
+     */
+    @Override
+    public void close() {
+        synchronized (this) {
+            this.isClosed = true;
+            this.notifyAll();
+        }
+        // readers may only be aborted from the thread that reads, which does so at its next row
+        boolean isInterrupted = false;
+        while (this.decoder.isAlive()) {
+            try {
+                this.decoder.join();
+            } catch (InterruptedException e) {
+                isInterrupted = true;
+            }
+        }
+        if (isInterrupted) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void decode() {
+        ImageReadParam param = this.reader.getDefaultReadParam();
+        param.setDestination(this.ring);
+        IIOReadUpdateListener listener = new RowListener();
+        this.reader.addIIOReadUpdateListener(listener);
+        try {
+            this.reader.read(0, param);
+        } catch (Throwable throwable) {
+            this.fail(throwable);
+        } finally {
+            this.reader.removeIIOReadUpdateListener(listener);
+            synchronized (this) {
+                this.isDecoded = true;
+                this.notifyAll();
+            }
+        }
+    }
+
+    private synchronized void fail(Throwable throwable) {
+        if (this.failure == null) {
+            this.failure = throwable;
+        }
+    }
+
+    private synchronized void rowDecoded(ImageReader source, int row, int rows, int periodY) {
+        if (row != this.decodedRows || rows != 1 || periodY != 1) {
+            // a row of the ring may have been overwritten before it was read
+            this.fail(new IOException(UNORDERED_ROWS));
+            this.isClosed = true;
+        }
+        if (!this.isClosed) {
+            this.decodedRows = row + 1;
+            this.notifyAll();
+        }
+        // the next row is written over the oldest row of the ring, which must be read first
+        while (!this.isClosed && this.decodedRows - this.readRows >= this.ringRows) {
+            try {
+                this.wait();
+            } catch (InterruptedException e) {
+                this.fail(new InterruptedIOException(INTERRUPTED));
+                this.isClosed = true;
+            }
+        }
+        if (this.isClosed) {
+            source.abort();
+        }
+    }
+
+    private static boolean isSingleScan(IIOMetadata metadata) {
+        if (metadata == null || !metadata.isStandardMetadataFormatSupported()) {
+            return false;
+        }
+        Node root = metadata.getAsTree(IIOMetadataFormatImpl.standardMetadataFormatName);
+        for (Node node = root.getFirstChild(); node != null; node = node.getNextSibling()) {
+            if (!COMPRESSION_NODE.equals(node.getNodeName())) {
+                continue;
+            }
+            for (Node child = node.getFirstChild(); child != null; child = child.getNextSibling()) {
+                if (SCANS_NODE.equals(child.getNodeName())) {
+                    Node value = child.getAttributes().getNamedItem(VALUE_ATTRIBUTE);
+                    return value != null && SINGLE_SCAN.equals(value.getNodeValue());
+                }
+            }
+        }
+        return false;
+    }
+
+    // the rasters the JDK creates for interleaved sample models address their data arrays directly
+    private static class RingRaster extends WritableRaster {
+        RingRaster(RingSampleModel sampleModel) {
+            super(sampleModel, sampleModel.createDataBuffer(), new Point());
+        }
+    }
+
+    private class RowListener implements IIOReadUpdateListener {
+        @Override
+        public void passStarted(ImageReader source, BufferedImage theImage, int pass, int minPass,
+                                int maxPass, int minX, int minY, int periodX, int periodY, int[] bands) {
+        }
+
+        @Override
+        public void imageUpdate(ImageReader source, BufferedImage theImage, int minX, int minY, int width,
+                                int height, int periodX, int periodY, int[] bands) {
+            SequentialRowDecoder.this.rowDecoded(source, minY, height, periodY);
+        }
+
+        @Override
+        public void passComplete(ImageReader source, BufferedImage theImage) {
+        }
+
+        @Override
+        public void thumbnailPassStarted(ImageReader source, BufferedImage theThumbnail, int pass,
+                                         int minPass, int maxPass, int minX, int minY, int periodX,
+                                         int periodY, int[] bands) {
+        }
+
+        @Override
+        public void thumbnailUpdate(ImageReader source, BufferedImage theThumbnail, int minX, int minY,
+                                    int width, int height, int periodX, int periodY, int[] bands) {
+        }
+
+        @Override
+        public void thumbnailPassComplete(ImageReader source, BufferedImage theThumbnail) {
+        }
+    }
+}
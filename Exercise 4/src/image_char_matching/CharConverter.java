@@ -15,7 +15,10 @@ import java.awt.image.BufferedImage;
 public class CharConverter {
     private static final double X_OFFSET_FACTOR = 0.2;
     private static final double Y_OFFSET_FACTOR = 0.75;
-    private static final String FONT_NAME = "Courier New";
+    /**
+     * The name of the font characters are rendered with.
+     */
+    static final String FONT_NAME = "Courier New";
 
     /**
      * Constructs a new CharConverter.
@@ -36,10 +39,22 @@ public class CharConverter {
      * @return A 2D array of booleans representing the binary "image" of the character.
      */
     public static boolean[][] convertToBoolArray(char c) {
-        BufferedImage img = getBufferedImage(c, FONT_NAME, DEFAULT_PIXEL_RESOLUTION);
-        boolean[][] matrix = new boolean[DEFAULT_PIXEL_RESOLUTION][DEFAULT_PIXEL_RESOLUTION];
-        for (int y = 0; y < DEFAULT_PIXEL_RESOLUTION; y++) {
-            for (int x = 0; x < DEFAULT_PIXEL_RESOLUTION; x++) {
+        return convertToBoolArray(c, FONT_NAME, DEFAULT_PIXEL_RESOLUTION);
+    }
+
+    /**
+     * Renders a given character, according to how it looks in the given font, to a square
+     * black&white image (2D array of booleans) of the given dimension in pixels.
+     * @param c The character to be converted.
+     * @param fontName The name of the font to render the character with.
+     * @param pixelResolution The dimension in pixels of the rendered image.
+     * @return A 2D array of booleans representing the binary "image" of the character.
+     */
+    public static boolean[][] convertToBoolArray(char c, String fontName, int pixelResolution) {
+        BufferedImage img = getBufferedImage(c, fontName, pixelResolution);
+        boolean[][] matrix = new boolean[pixelResolution][pixelResolution];
+        for (int y = 0; y < pixelResolution; y++) {
+            for (int x = 0; x < pixelResolution; x++) {
                 matrix[y][x] = img.getRGB(x, y) == 0; //is the color black
             }
         }
@@ -0,0 +1,211 @@
+package image_char_matching;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * A process-wide cache of rendered glyphs, keyed by font, pixel resolution and character.
+ * Rendering a character through CharConverter needs a Font, an image and a graphics context, so every
+ * glyph is rendered at most once per process and kept as a packed bitmask: bit y * resolution + x is
+ * set when pixel (x, y) is background, left blank by the rendered character (where
+ * CharConverter.convertToBoolArray is true), and clear where the character's strokes are.
+ * The cache can be saved to a small binary file and loaded back, so later runs skip rendering (and
+ * loading the font subsystem) completely.
+ * The cache is safe to use from several threads at once.
+ */
+public class GlyphCache {
+    private static final int FILE_MAGIC = 0x474C5946;
+    private static final int FILE_VERSION = 1;
+    private static final int BITS_IN_WORD = Long.SIZE;
+    // far above any resolution glyphs are rendered in, so that a corrupt file cannot ask for huge masks
+    private static final int MAX_PIXEL_RESOLUTION = 1 << 12;
+    private static final String BAD_FILE = "\"%s\" is not a glyph cache file.";
+    private static final String CORRUPT_FILE = "Glyph cache file \"%s\" is corrupt.";
+    private static final Map<Key, long[]> glyphs = new ConcurrentHashMap<>();
+    private static volatile boolean unsavedGlyphs = false;
+
+    private GlyphCache() {}
+
+    /**
+     * Returns the bitmask of a character rendered in the default font and pixel resolution.
+     * @param c The character to get the bitmask of.
+     * @return The packed bitmask of the character. The array must not be modified.
+     */
+    public static long[] getMask(char c) {
+        return getMask(c, CharConverter.FONT_NAME, CharConverter.DEFAULT_PIXEL_RESOLUTION);
+    }
+
+    /**
+     * Returns the bitmask of a character rendered in the given font and pixel resolution, rendering it
+     * only if it is not cached yet.
+     * @param c The character to get the bitmask of.
+     * @param fontName The name of the font the character is rendered with.
+     * @param pixelResolution The dimension in pixels of the rendered character.
+     * @return The packed bitmask of the character. The array must not be modified.
+     */
+    public static long[] getMask(char c, String fontName, int pixelResolution) {
+        return glyphs.computeIfAbsent(new Key(fontName, pixelResolution, c), GlyphCache::render);
+    }
+
+    /**
+     * Returns the brightness of a character rendered in the default font and pixel resolution, which is
+     * the part of the rendered pixels that are background, not covered by the character's strokes.
+     * @param c The character to get the brightness of.
+     * @return The brightness of the character, in the range of [0, 1].
+     */
+    public static double getBrightness(char c) {
+        long[] mask = getMask(c);
+        int counter = 0;
+        for (long word : mask) {
+            counter += Long.bitCount(word);
+        }
+        double denominator = CharConverter.DEFAULT_PIXEL_RESOLUTION * CharConverter.DEFAULT_PIXEL_RESOLUTION;
+        return counter / denominator;
+    }
+
+    /**
+     * Renders every character in the given range in the default font and pixel resolution, unless it is
+     * already cached.
+     * @param from The first character of the range.
+     * @param to The last character of the range (inclusive).
+     */
+    public static void warm(char from, char to) {
+        for (char c = from; c <= to; c++) {
+            getMask(c);
+        }
+    }
+
+    /**
+     * Checks whether glyphs were rendered since the cache was last saved or loaded.
+     * @return true if saving the cache would add glyphs to the file.
+     */
+    public static boolean hasUnsavedGlyphs() {
+        return unsavedGlyphs;
+    }
+
+    /**
+     * Loads the glyphs of a cache file previously written by save into the cache. Nothing is loaded from
+     * a file that turns out to be truncated or corrupt.
+     * @param path The path of the cache file.
+     * @throws IOException If the file cannot be read, is not a glyph cache file or is corrupt.
+     */
+    public static void load(String path) throws IOException {
+        try (DataInputStream input = new DataInputStream(new BufferedInputStream(
+                new FileInputStream(path)))) {
+            if (input.readInt() != FILE_MAGIC || input.readInt() != FILE_VERSION) {
+                throw new IOException(String.format(BAD_FILE, path));
+            }
+            int count = input.readInt();
+            if (count < 0) {
+                throw new IOException(String.format(CORRUPT_FILE, path));
+            }
+            Map<Key, long[]> loaded = new HashMap<>();
+            for (int i = 0; i < count; i++) {
+                String fontName = input.readUTF();
+                int pixelResolution = input.readInt();
+                char c = input.readChar();
+                int words = input.readInt();
+                if (pixelResolution <= 0 || pixelResolution > MAX_PIXEL_RESOLUTION ||
+                        words != maskWords(pixelResolution)) {
+                    throw new IOException(String.format(CORRUPT_FILE, path));
+                }
+                long[] mask = new long[words];
+                for (int word = 0; word < mask.length; word++) {
+                    mask[word] = input.readLong();
+                }
+                loaded.put(new Key(fontName, pixelResolution, c), mask);
+            }
+            for (Map.Entry<Key, long[]> glyph : loaded.entrySet()) {
+                glyphs.putIfAbsent(glyph.getKey(), glyph.getValue());
+            }
+        } catch (EOFException e) {
+            throw new IOException(String.format(CORRUPT_FILE, path));
+        }
+    }
+
+    /**
+     * Saves all the cached glyphs to a file.
+     * @param path The path of the cache file.
+     * @throws IOException If the file cannot be written.
+     */
+    public static void save(String path) throws IOException {
+        // cleared before the snapshot, so that a glyph rendered after the snapshot is saved next time
+        unsavedGlyphs = false;
+        // a snapshot, so glyphs rendered meanwhile by other threads do not break the count
+        Map<Key, long[]> snapshot = Map.copyOf(glyphs);
+        try (DataOutputStream output = new DataOutputStream(new BufferedOutputStream(
+                new FileOutputStream(path)))) {
+            output.writeInt(FILE_MAGIC);
+            output.writeInt(FILE_VERSION);
+            output.writeInt(snapshot.size());
+            for (Map.Entry<Key, long[]> glyph : snapshot.entrySet()) {
+                output.writeUTF(glyph.getKey().fontName);
+                output.writeInt(glyph.getKey().pixelResolution);
+                output.writeChar(glyph.getKey().c);
+                output.writeInt(glyph.getValue().length);
+                for (long word : glyph.getValue()) {
+                    output.writeLong(word);
+                }
+            }
+        } catch (IOException e) {
+            unsavedGlyphs = true;
+            throw e;
+        }
+    }
+
+    private static long[] render(Key key) {
+        boolean[][] matrix = CharConverter.convertToBoolArray(key.c, key.fontName, key.pixelResolution);
+        long[] mask = new long[maskWords(key.pixelResolution)];
+        for (int y = 0; y < key.pixelResolution; y++) {
+            for (int x = 0; x < key.pixelResolution; x++) {
+                if (matrix[y][x]) {
+                    int bit = y * key.pixelResolution + x;
+                    mask[bit / BITS_IN_WORD] |= 1L << (bit % BITS_IN_WORD);
+                }
+            }
+        }
+        unsavedGlyphs = true;
+        return mask;
+    }
+
+    private static int maskWords(int pixelResolution) {
+        return (pixelResolution * pixelResolution + BITS_IN_WORD - 1) / BITS_IN_WORD;
+    }
+
+    private static final class Key {
+        private final String fontName;
+        private final int pixelResolution;
+        private final char c;
+
+        private Key(String fontName, int pixelResolution, char c) {
+            this.fontName = fontName;
+            this.pixelResolution = pixelResolution;
+            this.c = c;
+        }
+
+        @Override
+        public boolean equals(Object other) {
+            if (!(other instanceof Key)) {
+                return false;
+            }
+            Key key = (Key) other;
+            return this.c == key.c && this.pixelResolution == key.pixelResolution &&
+                    this.fontName.equals(key.fontName);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(this.fontName, this.pixelResolution, this.c);
+        }
+    }
+}
@@ -3,39 +3,75 @@ package image_char_matching;
 import exceptions.EmptyCharsetException;
 import exceptions.IncorrectFormatException;
 
-
-
-import java.util.*;
-
-import static image_char_matching.CharConverter.DEFAULT_PIXEL_RESOLUTION;
+import java.util.Arrays;
 
 
 /**
- * This class matches ASCII characters to sub-images based on brightness values.
+ * This class matches ASCII characters to sub-images based on brightness values, or on their shapes.
  */
 public class SubImgCharMatcher {
+    /**
+     * The number of bits in every row of the masks matched by getCharByShape, which is the pixel
+     * resolution the glyphs are rendered in.
+     */
+    public static final int SHAPE_RESOLUTION = CharConverter.DEFAULT_PIXEL_RESOLUTION;
     private static final String ADD_ERR = "add";
     private static final String REMOVE_ERR = "remove";
-    private TreeMap<Double, TreeSet<Character>> normalizedBrightnessMap;
-    private double minInitialBrightness;
-    private double maxInitialBrightness;
-    private final TreeMap<Character, AbstractMap.SimpleEntry<Double, Boolean>> initialBrightnessMap;
+    private static final String ILLEGAL_CHARACTER = "'%c' is not a printable ASCII character.";
     private static final char MIN_ASCII = 32;
     private static final char MAX_ASCII = 126;
+    private static final int CHARSET_SIZE = MAX_ASCII - MIN_ASCII + 1;
+    private static final int CHARSET_WORDS = (CHARSET_SIZE + Long.SIZE - 1) / Long.SIZE;
+    private static final int LOOKUP_BUCKETS = 4096;
+    private static final short AMBIGUOUS_BUCKET = -1;
+    private static final int CHANGE_HISTORY = 64;
+    // bit (c - MIN_ASCII) of the charset is set if and only if c is in the set, and bit (c - MIN_ASCII)
+    // of knownChars if the brightness of c was computed already
+    private final long[] charset = new long[CHARSET_WORDS];
+    private final long[] knownChars = new long[CHARSET_WORDS];
+    // the brightness of every known character, indexed by the character minus MIN_ASCII, and the known
+    // characters ordered by brightness (and then by character)
+    private final double[] initialBrightness = new double[CHARSET_SIZE];
+    private final char[] brightnessOrder = new char[CHARSET_SIZE];
+    private int knownCount = 0;
+    private double minInitialBrightness;
+    private double maxInitialBrightness;
+    // the distinct normalized brightness values of the characters in the set in ascending order, and the
+    // lowest character of each, rebuilt after every change to the charset
+    private final double[] levels = new double[CHARSET_SIZE];
+    private final char[] levelChars = new char[CHARSET_SIZE];
+    private int levelCount = 0;
+    // the level every character of the set stands for, indexed by the character minus MIN_ASCII
+    private final double[] charLevels = new double[CHARSET_SIZE];
+    // a lookup table over [0, 1] from brightness to the index of the nearest level, rebuilt lazily
+    // after the charset changes. null means it has to be rebuilt before the next match.
+    private short[] lookupTable;
+    // the brightness interval affected by each of the last changes to the charset, indexed by the
+    // version the change led to (modulo the history's length)
+    private int charsetVersion = 0;
+    private final double[] changedFrom = new double[CHANGE_HISTORY];
+    private final double[] changedTo = new double[CHANGE_HISTORY];
+    // the glyph masks of the characters in the set one after the other, and their characters, rebuilt
+    // lazily after the charset changes. null means they have to be rebuilt before the next match.
+    private long[] shapeMasks;
+    private char[] shapeChars;
 
 
     /**
      * Constructs a SubImgCharMatcher object with the specified character set.
      *
      * @param charset The character set to initialize the matcher with.
+     * @throws IllegalArgumentException If a character is not a printable ASCII character.
      */
     public SubImgCharMatcher(char[] charset) {
-        this.normalizedBrightnessMap = new TreeMap<>();
-        this.initialBrightnessMap = new TreeMap<>();
-        this.maxInitialBrightness = 0;
-        this.minInitialBrightness = 1;
-        this.createInitialBrightness(charset);
-        this.createNormalMap();
+        for (char c : charset) {
+            if (!isLegalCharacter(c)) {
+                throw new IllegalArgumentException(String.format(ILLEGAL_CHARACTER, c));
+            }
+            this.learnBrightness(c);
+            this.charset[(c - MIN_ASCII) / Long.SIZE] |= 1L << (c - MIN_ASCII);
+        }
+        this.createLevels();
     }
 
     /**
@@ -46,23 +82,72 @@ public class SubImgCharMatcher {
      * @throws EmptyCharsetException If the character set is empty.
      */
     public char getCharByImageBrightness(double brightness) throws EmptyCharsetException {
-        if (this.normalizedBrightnessMap.isEmpty()) {
+        if (this.levelCount == 0) {
             throw new EmptyCharsetException();
         }
-        double lowerBrightness = this.normalizedBrightnessMap.floorEntry(brightness).getKey();
+        if (this.lookupTable == null) {
+            this.createLookupTable();
+        }
+        if (brightness >= 0 && brightness <= 1) {
+            int bucket = Math.min((int) (brightness * LOOKUP_BUCKETS), LOOKUP_BUCKETS - 1);
+            short level = this.lookupTable[bucket];
+            if (level != AMBIGUOUS_BUCKET) {
+                return this.levelChars[level];
+            }
+        }
+        return this.levelChars[this.findNearestLevel(brightness)];
+    }
 
-        double upperBrightness = this.normalizedBrightnessMap.ceilingEntry(brightness).getKey();
+    /**
+     * Returns the brightness a character of the set stands for when matching by brightness, which is the
+     * character's brightness normalized over the set. A sub-image matched to the character is off from
+     * it by the difference between the two.
+     *
+     * @param c A character of the character set.
+     * @return The normalized brightness of the character, in the range of [0, 1].
+     * @throws EmptyCharsetException If the character set is empty.
+     */
+    public double getCharLevel(char c) throws EmptyCharsetException {
+        if (this.levelCount == 0) {
+            throw new EmptyCharsetException();
+        }
+        if (this.lookupTable == null) {
+            this.createLookupTable();
+        }
+        return this.charLevels[c - MIN_ASCII];
+    }
 
-        if (lowerBrightness != upperBrightness) {
-            double lowerDelta = Math.abs(lowerBrightness - brightness);
-            double upperDelta = Math.abs(upperBrightness - brightness);
-            if (lowerDelta < upperDelta) {
-                return this.normalizedBrightnessMap.get(lowerBrightness).first();
+    /**
+     * Retrieves the ASCII character whose glyph is closest in shape to the given mask: the one with the
+     * fewest bits that differ from it (a tie goes to the lower character).
+     *
+     * @param masks  An array holding the mask, of the same kind as the glyphs in GlyphCache at
+     *               SHAPE_RESOLUTION.
+     * @param offset The index of the mask's first word in the array.
+     * @return The ASCII character matched to the shape.
+     * @throws EmptyCharsetException If the character set is empty.
+     */
+    public char getCharByShape(long[] masks, int offset) throws EmptyCharsetException {
+        if (this.levelCount == 0) {
+            throw new EmptyCharsetException();
+        }
+        if (this.shapeMasks == null) {
+            this.createShapeMasks();
+        }
+        int words = this.shapeMasks.length / this.shapeChars.length;
+        int best = 0;
+        int bestDistance = Integer.MAX_VALUE;
+        for (int glyph = 0, start = 0; glyph < this.shapeChars.length; glyph++, start += words) {
+            int distance = 0;
+            for (int word = 0; word < words; word++) {
+                distance += Long.bitCount(masks[offset + word] ^ this.shapeMasks[start + word]);
+            }
+            if (distance < bestDistance) {
+                bestDistance = distance;
+                best = glyph;
             }
-            return this.normalizedBrightnessMap.get(upperBrightness).first();
-        } else {
-            return this.normalizedBrightnessMap.get(lowerBrightness).first();
         }
+        return this.shapeChars[best];
     }
 
     /**
@@ -72,28 +157,21 @@ public class SubImgCharMatcher {
      * @throws IncorrectFormatException If the character is invalid.
      */
     public void addChar(char c) throws IncorrectFormatException {
-        if (!isLegalCharacter(c)) {
-            throw new IncorrectFormatException(ADD_ERR);
-        }
-        if (!this.initialBrightnessMap.containsKey(c)) {
-            this.calcInitialBrightness(c);
-        }
-
-        if (!this.initialBrightnessMap.get(c).getValue()) {
-            AbstractMap.SimpleEntry<Double, Boolean> characterPair = this.initialBrightnessMap.get(c);
-            this.initialBrightnessMap.put(c, new AbstractMap.SimpleEntry<>(characterPair.getKey(), true));
-        }
-
-        double initialBrightness = this.initialBrightnessMap.get(c).getKey();
+        this.addChars(c, c);
+    }
 
-        if ((initialBrightness > this.maxInitialBrightness) ||
-                (initialBrightness < this.minInitialBrightness)) {
-            this.maxInitialBrightness = Math.max(this.maxInitialBrightness, initialBrightness);
-            this.minInitialBrightness = Math.min(this.minInitialBrightness, initialBrightness);
-            this.createNormalMap();
-            return;
+    /**
+     * Adds a range of characters to the character set, as a single change to the set.
+     *
+     * @param from The first character of the range.
+     * @param to   The last character of the range (inclusive); the range is empty if it is below from.
+     * @throws IncorrectFormatException If a character is invalid.
+     */
+    public void addChars(char from, char to) throws IncorrectFormatException {
+        if (!isLegalCharacter(from) || !isLegalCharacter(to)) {
+            throw new IncorrectFormatException(ADD_ERR);
         }
-        this.addNormalValue(c);
+        this.changeChars(from, to, true);
     }
 
     /**
@@ -103,37 +181,67 @@ public class SubImgCharMatcher {
      * @throws IncorrectFormatException If the character is invalid.
      */
     public void removeChar(char c) throws IncorrectFormatException {
-        if (!isLegalCharacter(c)) {
-            throw new IncorrectFormatException(REMOVE_ERR);
-        }
+        this.removeChars(c, c);
+    }
 
-        if (!this.initialBrightnessMap.containsKey(c) || !this.initialBrightnessMap.get(c).getValue()) {
-            return;
+    /**
+     * Removes a range of characters from the character set, as a single change to the set.
+     *
+     * @param from The first character of the range.
+     * @param to   The last character of the range (inclusive); the range is empty if it is below from.
+     * @throws IncorrectFormatException If a character is invalid.
+     */
+    public void removeChars(char from, char to) throws IncorrectFormatException {
+        if (!isLegalCharacter(from) || !isLegalCharacter(to)) {
+            throw new IncorrectFormatException(REMOVE_ERR);
         }
+        this.changeChars(from, to, false);
+    }
 
-        double cNormalValue = this.calcNormalValue(this.initialBrightnessMap.get(c).getKey());
-
-        if (this.normalizedBrightnessMap.get(cNormalValue).size() == 1) {
-            this.normalizedBrightnessMap.remove(cNormalValue);
+    /**
+     * Returns the version of the character set, which grows by one with every change to the set.
+     *
+     * @return The current version of the character set.
+     */
+    public int getCharsetVersion() {
+        return this.charsetVersion;
+    }
 
-        } else if (this.normalizedBrightnessMap.get(cNormalValue).size() > 1) {
-            this.normalizedBrightnessMap.get(cNormalValue).remove(c);
+    /**
+     * Returns an interval of brightness values that contains every brightness whose matched character
+     * changed since the given version of the character set. Brightness values outside of it are matched
+     * to the same character as they were then.
+     *
+     * @param sinceVersion A version of the character set, as given by getCharsetVersion.
+     * @return The lower and upper bounds of the interval (empty if the lower is above the upper), or null
+     * if the version is too old to tell, or the whole range may have changed.
+     */
+    public double[] getChangedInterval(int sinceVersion) {
+        if (sinceVersion > this.charsetVersion || this.charsetVersion - sinceVersion > CHANGE_HISTORY) {
+            return null;
         }
-
-        AbstractMap.SimpleEntry<Double, Boolean> characterPair = this.initialBrightnessMap.get(c);
-        this.initialBrightnessMap.put(c, new AbstractMap.SimpleEntry<>(characterPair.getKey(), false));
-
-        double initialBrightness = this.initialBrightnessMap.get(c).getKey();
-
-        if (initialBrightness != this.maxInitialBrightness &&
-                initialBrightness != this.minInitialBrightness) {
-            return;
+        double from = Double.POSITIVE_INFINITY;
+        double to = Double.NEGATIVE_INFINITY;
+        for (int version = sinceVersion; version < this.charsetVersion; version++) {
+            from = Math.min(from, this.changedFrom[version % CHANGE_HISTORY]);
+            to = Math.max(to, this.changedTo[version % CHANGE_HISTORY]);
         }
-        this.maxInitialBrightness = 0;
-        this.minInitialBrightness = 1;
+        if (from == Double.NEGATIVE_INFINITY && to == Double.POSITIVE_INFINITY) {
+            return null;
+        }
+        return new double[]{from, to};
+    }
 
-        this.updateMinMax();
-        this.createNormalMap();
+    /**
+     * Returns a fingerprint of the character set: bit (c - 32) of the fingerprint is set if and only if
+     * the character c is in the set, with the bits of the first 64 characters in the first word.
+     * Since the matching depends on nothing but the set, two sets with the same fingerprint match
+     * every brightness to the same character.
+     *
+     * @return The two words of the fingerprint.
+     */
+    public long[] getCharsetFingerprint() {
+        return this.charset.clone();
     }
 
     /**
@@ -143,49 +251,123 @@ public class SubImgCharMatcher {
      */
     @Override
     public String toString() {
-        String chars = new String();
-        for (var c : this.initialBrightnessMap.keySet()) {
-            if (this.initialBrightnessMap.get(c).getValue()) {
-                chars += c + Character.toString(MIN_ASCII);
+        StringBuilder chars = new StringBuilder();
+        for (int word = 0; word < CHARSET_WORDS; word++) {
+            for (long bits = this.charset[word]; bits != 0; bits &= bits - 1) {
+                chars.append(charAt(word, bits)).append(MIN_ASCII);
             }
         }
-        return chars;
+        return chars.toString();
     }
 
-    private void createInitialBrightness(char[] charSet) {
-        for (char ch : charSet) {
-            double curBrightness = this.calcInitialBrightness(ch);
-            this.maxInitialBrightness = Math.max(curBrightness, this.maxInitialBrightness);
-            this.minInitialBrightness = Math.min(curBrightness, this.minInitialBrightness);
+    private void changeChars(char from, char to, boolean isAdding) {
+        long[] changed = new long[CHARSET_WORDS];
+        boolean hasChanges = false;
+        for (int word = 0; word < CHARSET_WORDS; word++) {
+            long range = rangeWord(from, to, word);
+            changed[word] = range & (isAdding ? ~this.charset[word] : this.charset[word]);
+            hasChanges |= changed[word] != 0;
+        }
+        if (!hasChanges) {
+            return;
+        }
+        for (int word = 0; word < CHARSET_WORDS && isAdding; word++) {
+            for (long bits = changed[word]; bits != 0; bits &= bits - 1) {
+                this.learnBrightness(charAt(word, bits));
+            }
+        }
+        double previousMin = this.minInitialBrightness;
+        double previousMax = this.maxInitialBrightness;
+        for (int word = 0; word < CHARSET_WORDS; word++) {
+            this.charset[word] ^= changed[word];
         }
+        this.createLevels();
+        this.lookupTable = null;
+        this.shapeMasks = null;
+        if (this.minInitialBrightness != previousMin || this.maxInitialBrightness != previousMax) {
+            this.recordChange(Double.NEGATIVE_INFINITY, Double.POSITIVE_INFINITY);
+            return;
+        }
+        // only brightness values between the levels around the changed ones can move to them or away
+        // from them, or see their first character change
+        double lowest = Double.NaN;
+        double highest = Double.NaN;
+        for (int word = 0; word < CHARSET_WORDS; word++) {
+            for (long bits = changed[word]; bits != 0; bits &= bits - 1) {
+                double level = this.calcNormalValue(this.initialBrightness[charAt(word, bits) - MIN_ASCII]);
+                if (Double.isNaN(lowest) || Double.compare(level, lowest) < 0) {
+                    lowest = level;
+                }
+                if (Double.isNaN(highest) || Double.compare(level, highest) > 0) {
+                    highest = level;
+                }
+            }
+        }
+        int lower = Arrays.binarySearch(this.levels, 0, this.levelCount, lowest);
+        lower = lower >= 0 ? lower - 1 : -lower - 2;
+        int higher = Arrays.binarySearch(this.levels, 0, this.levelCount, highest);
+        higher = higher >= 0 ? higher + 1 : -higher - 1;
+        this.recordChange(lower < 0 ? Double.NEGATIVE_INFINITY : this.levels[lower],
+                higher >= this.levelCount ? Double.POSITIVE_INFINITY : this.levels[higher]);
+    }
 
+    private void learnBrightness(char c) {
+        int index = c - MIN_ASCII;
+        if ((this.knownChars[index / Long.SIZE] & (1L << index)) != 0) {
+            return;
+        }
+        this.knownChars[index / Long.SIZE] |= 1L << index;
+        double brightness = GlyphCache.getBrightness(c);
+        this.initialBrightness[index] = brightness;
+        // an insertion into the order, which happens at most once per character
+        int position = this.knownCount++;
+        while (position > 0 && this.isOrderedAfter(this.brightnessOrder[position - 1], brightness, c)) {
+            this.brightnessOrder[position] = this.brightnessOrder[position - 1];
+            position--;
+        }
+        this.brightnessOrder[position] = c;
     }
 
-    private double calcInitialBrightness(char ch) {
-        boolean[][] charBoolVal = CharConverter.convertToBoolArray(ch);
-        int counter = 0;
-        for (boolean[] row : charBoolVal) {
-            for (boolean value : row) {
-                if (value) {
-                    counter++;
+    private boolean isOrderedAfter(char other, double brightness, char c) {
+        double otherBrightness = this.initialBrightness[other - MIN_ASCII];
+        return otherBrightness > brightness || (otherBrightness == brightness && other > c);
+    }
 
-                }
-            }
-        }
-        double denominator = DEFAULT_PIXEL_RESOLUTION * DEFAULT_PIXEL_RESOLUTION;
-        double initialBrightness = counter / (denominator);
-        this.initialBrightnessMap.put(ch, new AbstractMap.SimpleEntry<>(initialBrightness, true));
-        return initialBrightness;
+    private boolean contains(char c) {
+        return (this.charset[(c - MIN_ASCII) / Long.SIZE] & (1L << (c - MIN_ASCII))) != 0;
     }
 
-    private void createNormalMap() {
-        this.normalizedBrightnessMap = new TreeMap<>();
-        for (char entry : this.initialBrightnessMap.keySet()) {
-            // if this character is 'false' in the map which means it is 'removed' from the working set.
-            if (!this.initialBrightnessMap.get(entry).getValue()) {
+    private void createLevels() {
+        this.maxInitialBrightness = 0;
+        this.minInitialBrightness = 1;
+        for (int i = 0; i < this.knownCount; i++) {
+            if (this.contains(this.brightnessOrder[i])) {
+                this.minInitialBrightness = this.initialBrightness[this.brightnessOrder[i] - MIN_ASCII];
+                break;
+            }
+        }
+        for (int i = this.knownCount - 1; i >= 0; i--) {
+            if (this.contains(this.brightnessOrder[i])) {
+                this.maxInitialBrightness = this.initialBrightness[this.brightnessOrder[i] - MIN_ASCII];
+                break;
+            }
+        }
+        // the normalization keeps the order, so the levels come out sorted. characters of the same level
+        // are kept together, and the lowest of them stands for the level.
+        this.levelCount = 0;
+        for (int i = 0; i < this.knownCount; i++) {
+            char c = this.brightnessOrder[i];
+            if (!this.contains(c)) {
                 continue;
             }
-            this.addNormalValue(entry);
+            double level = this.calcNormalValue(this.initialBrightness[c - MIN_ASCII]);
+            if (this.levelCount == 0 || Double.compare(this.levels[this.levelCount - 1], level) != 0) {
+                this.levels[this.levelCount] = level;
+                this.levelChars[this.levelCount++] = c;
+            } else if (c < this.levelChars[this.levelCount - 1]) {
+                this.levelChars[this.levelCount - 1] = c;
+            }
+            this.charLevels[c - MIN_ASCII] = level;
         }
     }
 
@@ -193,31 +375,95 @@ public class SubImgCharMatcher {
         return (curVal - minInitialBrightness) / (maxInitialBrightness - minInitialBrightness);
     }
 
-    private void addNormalValue(char entry) {
-        // get the current character's initial brightness value
-        double curBrightnessValue = this.initialBrightnessMap.get(entry).getKey();
-        double curNormalizedValue = calcNormalValue(curBrightnessValue);
-        // if the normalized value is not in the treemap, we create a new key,set for it
-        if (this.normalizedBrightnessMap.get(curNormalizedValue) == null) {
-            this.normalizedBrightnessMap.put(curNormalizedValue, new TreeSet<>());
+    private void recordChange(double from, double to) {
+        this.changedFrom[this.charsetVersion % CHANGE_HISTORY] = from;
+        this.changedTo[this.charsetVersion % CHANGE_HISTORY] = to;
+        this.charsetVersion++;
+    }
+
+    private static long rangeWord(char from, char to, int word) {
+        // the bits of the given word of the charset that the characters from..to fall on
+        int first = Math.max(from - MIN_ASCII - word * Long.SIZE, 0);
+        int last = Math.min(to - MIN_ASCII - word * Long.SIZE, Long.SIZE - 1);
+        if (first > last) {
+            return 0;
         }
-        // else we just add the character that has the same normalized brightness to the treemap
-        this.normalizedBrightnessMap.get(curNormalizedValue).add(entry);
+        return (-1L >>> (Long.SIZE - 1 - last)) & (-1L << first);
     }
 
-    private void updateMinMax() {
-        for (char entry : this.initialBrightnessMap.keySet()) {
-            if (this.initialBrightnessMap.get(entry).getValue()) {
-                this.maxInitialBrightness = Math.max(this.maxInitialBrightness,
-                        this.initialBrightnessMap.get(entry).getKey());
-                this.minInitialBrightness = Math.min(this.minInitialBrightness,
-                        this.initialBrightnessMap.get(entry).getKey());
+    private static char charAt(int word, long bits) {
+        return (char) (MIN_ASCII + word * Long.SIZE + Long.numberOfTrailingZeros(bits));
+    }
+
+    private static boolean isLegalCharacter(char c) {
+        return (c <= MAX_ASCII && c >= MIN_ASCII);
+    }
+
+    private void createLookupTable() {
+        // the nearest level never decreases as the brightness grows, so if both ends of a bucket have
+        // the same nearest level then so does everything in between. buckets with a decision boundary
+        // inside them are marked ambiguous and matched exactly.
+        // the ends of the buckets only grow, so the first level above each is found in one walk over
+        // the levels rather than by a search per bucket.
+        this.lookupTable = new short[LOOKUP_BUCKETS];
+        int above = 0;
+        int lowerLevel = 0;
+        for (int bucket = -1; bucket < LOOKUP_BUCKETS; bucket++) {
+            double brightness = (bucket + 1) / (double) LOOKUP_BUCKETS;
+            while (above < this.levelCount && Double.compare(this.levels[above], brightness) <= 0) {
+                above++;
             }
+            int upperLevel = above > 0 && Double.compare(this.levels[above - 1], brightness) == 0 ?
+                    above - 1 : this.pickNearestLevel(above, brightness);
+            if (bucket >= 0) {
+                this.lookupTable[bucket] = lowerLevel == upperLevel ? (short) lowerLevel : AMBIGUOUS_BUCKET;
+            }
+            lowerLevel = upperLevel;
         }
     }
 
-    private boolean isLegalCharacter(char c) {
-        return (c <= MAX_ASCII && c >= MIN_ASCII);
+    private void createShapeMasks() {
+        int count = 0;
+        for (long word : this.charset) {
+            count += Long.bitCount(word);
+        }
+        this.shapeChars = new char[count];
+        long[] masks = null;
+        int index = 0;
+        // the bits are visited in the order of the characters, so the lower character comes first and
+        // wins a tie
+        for (int word = 0; word < CHARSET_WORDS; word++) {
+            for (long bits = this.charset[word]; bits != 0; bits &= bits - 1) {
+                char c = charAt(word, bits);
+                long[] mask = GlyphCache.getMask(c);
+                if (masks == null) {
+                    masks = new long[count * mask.length];
+                }
+                System.arraycopy(mask, 0, masks, index * mask.length, mask.length);
+                this.shapeChars[index++] = c;
+            }
+        }
+        this.shapeMasks = masks;
+    }
+
+    private int findNearestLevel(double brightness) {
+        int index = Arrays.binarySearch(this.levels, 0, this.levelCount, brightness);
+        return index >= 0 ? index : this.pickNearestLevel(-index - 1, brightness);
+    }
+
+    private int pickNearestLevel(int upper, double brightness) {
+        // same choice as looking up the floor and ceiling levels: the closer one wins, and a tie goes
+        // to the upper level
+        int lower = upper - 1;
+        if (lower < 0) {
+            return upper;
+        }
+        if (upper == this.levelCount) {
+            return lower;
+        }
+        double lowerDelta = Math.abs(this.levels[lower] - brightness);
+        double upperDelta = Math.abs(this.levels[upper] - brightness);
+        return lowerDelta < upperDelta ? lower : upper;
     }
 
 }
@@ -0,0 +1,43 @@
+package image;
+
+import jdk.incubator.vector.IntVector;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorSpecies;
+
+/**
+ * Converts pixels into their scaled luminance a whole SIMD register of them at a time, using the
+ * Vector API. The channels of every lane are unpacked with shifts and masks and weighted with integer
+ * multiplications, exactly like the scalar engine does, so the results are the same bit for bit.
+ * Requires the jdk.incubator.vector module, both to compile and to run
+ * (--add-modules jdk.incubator.vector).
+ */
+class VectorLuminanceEngine implements LuminanceEngine {
+    private static final VectorSpecies<Integer> SPECIES = IntVector.SPECIES_PREFERRED;
+    private static final String NAME = "vector (%d bits)";
+    private static final int RED_SHIFT = 16;
+    private static final int GREEN_SHIFT = 8;
+    private static final int CHANNEL_MASK = 0xFF;
+
+    @Override
+    public void luminanceRow(int[] pixels, int offset, int[] destination, int length) {
+        int col = 0;
+        for (int bound = SPECIES.loopBound(length); col < bound; col += SPECIES.length()) {
+            IntVector rgb = IntVector.fromArray(SPECIES, pixels, offset + col);
+            IntVector red = rgb.lanewise(VectorOperators.LSHR, RED_SHIFT).and(CHANNEL_MASK)
+                    .mul(LuminanceTable.RED_WEIGHT);
+            IntVector green = rgb.lanewise(VectorOperators.LSHR, GREEN_SHIFT).and(CHANNEL_MASK)
+                    .mul(LuminanceTable.GREEN_WEIGHT);
+            IntVector blue = rgb.and(CHANNEL_MASK).mul(LuminanceTable.BLUE_WEIGHT);
+            red.add(green).add(blue).intoArray(destination, col);
+        }
+        // the pixels that do not fill a whole register
+        for (; col < length; col++) {
+            destination[col] = LuminanceTable.scaledLuminance(pixels[offset + col]);
+        }
+    }
+
+    @Override
+    public String getName() {
+        return String.format(NAME, SPECIES.vectorBitSize());
+    }
+}